@@ -28,7 +28,7 @@ import net.reallifegames.atlas.listenable.properties.Matrix4fProperty;
 import net.reallifegames.atlas.listenable.properties.Vector3fProperty;
 import net.reallifegames.atlas.module.ModuleLoader;
 import net.reallifegames.atlas.module.atlas.AtlasModule;
-import net.reallifegames.atlas.module.atlas.ZipManager;
+import net.reallifegames.atlas.module.atlas.ExportSink;
 import net.reallifegames.atlas.module.csm.CSMModule;
 import net.reallifegames.atlas.module.fx.FxModule;
 import net.reallifegames.atlas.module.platform.PlatformModule;
@@ -47,8 +47,6 @@ import org.lwjgl.opengl.GL32;
 import javax.annotation.Nonnull;
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Objects;
 
 /**
  * Extracts texture files from a Minecrfat.jar file or a texture pack and compiles them into an atlas.
@@ -186,6 +184,11 @@ public class Atlas {
      */
     public static volatile boolean closed = false;
 
+    /**
+     * Receives the exported WebGL-Map files.
+     */
+    public static ExportSink exportSink;
+
     /**
      * Loads and helps manage modules.
      */
@@ -251,7 +254,7 @@ public class Atlas {
         }
         moduleLoader.registerModule(CameraModule.class, nullArray);
         moduleLoader.registerModule(FxModule.class, new String[]{args[0]});
-        moduleLoader.registerModule(AtlasModule.class, new String[]{args[1], args.length == 4 ? args[2] : "", args[0]});
+        moduleLoader.registerModule(AtlasModule.class, args);
 
         moduleLoader.prioritizeModules();
     }
@@ -415,6 +418,7 @@ public class Atlas {
                 return;
             }
         }
+        exportSink = new ExportSink("dataPack.zip");
         Atlas.preInitGL(args);
         if (Boolean.parseBoolean(args[0])) {
             Atlas.initGL();
@@ -426,10 +430,9 @@ public class Atlas {
             Atlas.gameStart();
             fxModule.getFxApplicationThread().join();
         }
-        System.out.println("Compressing exported WebGL-Map data.");
-        ZipManager.compressFiles(Arrays.asList(Objects.requireNonNull(new File(FULL_TEMP_FOLDER_DIR + "/export").listFiles())), "dataPack.zip");
-        System.out.println("Cleaning up temporary files.");
-        ZipManager.delete(new File(FULL_TEMP_FOLDER_DIR));
+        System.out.println("Finishing exported WebGL-Map data.");
+        exportSink.close();
+        atlasModule.getAssetFileSystem().close();
     }
 }
 
@@ -0,0 +1,134 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas;
+
+import java.io.File;
+import java.util.zip.Deflater;
+
+/**
+ * Tuning options for the atlas pipeline, read from system properties so they can be set with -D flags.
+ *
+ * @author Tyler Bucher
+ */
+public class AtlasOptions {
+
+    /**
+     * The amount of worker threads used by the parallel pipeline stages.
+     */
+    public static final int THREADS = Math.max(1, Integer.getInteger("atlas.threads", Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * States if decoded inputs should be kept in the persistent cache.
+     */
+    public static final boolean CACHE_ENABLED = Boolean.parseBoolean(System.getProperty("atlas.cache", "true"));
+
+    /**
+     * The persistent cache folder.
+     */
+    public static final File CACHE_DIR = new File(System.getProperty("atlas.cache.dir",
+            new File(System.getProperty("user.home"), ".atlasmaker" + File.separator + "cache").getPath()));
+
+    /**
+     * The maximum size of the persistent cache in bytes.
+     */
+    public static final long CACHE_MAX_BYTES = Long.getLong("atlas.cache.maxMegabytes", 2048) * 1024 * 1024;
+
+    /**
+     * The deflate level of the exported zip file, from 0 to 9 or -1 for the default level.
+     */
+    public static final int ZIP_LEVEL = Integer.getInteger("atlas.zip.level", Deflater.DEFAULT_COMPRESSION);
+
+    /**
+     * The texture packing strategy, either maxrects or skyline.
+     */
+    public static final String PACKER = System.getProperty("atlas.packer", "maxrects");
+
+    /**
+     * The deflate level of the atlas png, from 0 to 9 or -1 for the default level.
+     */
+    public static final int PNG_LEVEL = Integer.getInteger("atlas.png.level", Deflater.DEFAULT_COMPRESSION);
+
+    /**
+     * The scanline filter of the atlas png, one of none, sub, up, average, paeth or adaptive.
+     */
+    public static final String PNG_FILTER = System.getProperty("atlas.png.filter", "adaptive");
+
+    /**
+     * States if the atlas png should favour speed over size, overriding the level and filter.
+     */
+    public static final boolean PNG_FAST = Boolean.getBoolean("atlas.png.fast");
+
+    /**
+     * The largest atlas page side, rounded down to a power of two. Textures spill onto more pages past this size.
+     */
+    public static final int MAX_PAGE_SIZE = Integer.highestOneBit(Math.max(16, Math.min(1 << 15, Integer.getInteger("atlas.page.maxSize", 16384))));
+
+    /**
+     * The file the atlas layout is kept in between runs, so unchanged textures keep their place. Empty, the default,
+     * disables it so every run packs from scratch.
+     */
+    public static final String LAYOUT_FILE = System.getProperty("atlas.layout", "");
+
+    /**
+     * The width of the border around every atlas texture, filled with its extruded edge pixels. 0 packs the textures
+     * edge to edge.
+     */
+    public static final int GUTTER = Math.max(0, Integer.getInteger("atlas.gutter", 0));
+
+    /**
+     * States if a full mip chain is exported for every atlas page.
+     */
+    public static final boolean MIPMAPS = Boolean.getBoolean("atlas.mipmaps");
+
+    /**
+     * The comma separated gpu block formats the atlas is additionally exported in as KTX2, any of bc1, bc3, bc7 and etc2.
+     */
+    public static final String COMPRESS = System.getProperty("atlas.compress", "");
+
+    /**
+     * States if fully transparent borders are trimmed off of the block textures before they are packed.
+     */
+    public static final boolean TRIM = Boolean.getBoolean("atlas.trim");
+
+    /**
+     * The comma separated pixels per block of the additionally exported atlas variants, e.g. 16,32,64.
+     */
+    public static final String VARIANTS = System.getProperty("atlas.variants", "");
+
+    /**
+     * How atlas pngs are written as indexed pngs, page for a palette per image, atlas for one palette shared by all
+     * pages of a level or empty to always write rgba.
+     */
+    public static final String PALETTE = System.getProperty("atlas.palette", "");
+
+    /**
+     * The largest root mean square error in 8 bit channel steps a reduced palette may have, 0 for exact palettes only.
+     */
+    public static final double PALETTE_ERROR = Double.parseDouble(System.getProperty("atlas.palette.error", "0"));
+
+    /**
+     * States if opaque, cutout and translucent textures are packed into separate atlases.
+     */
+    public static final boolean LAYERS = Boolean.getBoolean("atlas.layers");
+}
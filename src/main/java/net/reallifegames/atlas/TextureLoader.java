@@ -123,4 +123,22 @@ public class TextureLoader {
                 width, height, components, channels
         );
     }
+
+    /**
+     * Converts argb pixels into rgba bytes.
+     *
+     * @param pixels the argb pixels.
+     * @param count  the amount of pixels to convert.
+     * @param buffer the buffer to write to, at least count * 4 bytes long.
+     * @return the flipped buffer.
+     */
+    public static ByteBuffer loadPixels(@Nonnull final int[] pixels, final int count, @Nonnull final ByteBuffer buffer) {
+        buffer.clear();
+        for (int i = 0; i < count; i++) {
+            final int pixel = pixels[i];
+            buffer.put((byte) (pixel >> 16)).put((byte) (pixel >> 8)).put((byte) pixel).put((byte) (pixel >>> 24));
+        }
+        buffer.flip();
+        return buffer;
+    }
 }
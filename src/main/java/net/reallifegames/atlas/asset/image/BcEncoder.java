@@ -0,0 +1,514 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.image;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Encodes 4x4 blocks of argb pixels into the BC1, BC3 and BC7 block formats. BC7 blocks are written in mode 6, a single
+ * subset with rgba endpoints and 4 bit indices, which suits the mostly flat colours of block textures.
+ *
+ * @author Tyler Bucher
+ */
+public class BcEncoder {
+
+    /**
+     * The interpolation weights of 4 bit BC7 indices, out of 64.
+     */
+    private static final int[] BC7_WEIGHTS = {0, 4, 9, 13, 17, 21, 26, 30, 34, 38, 43, 47, 51, 55, 60, 64};
+
+    /**
+     * Pixels with a lower alpha are transparent in a BC1 block.
+     */
+    private static final int BC1_ALPHA_THRESHOLD = 128;
+
+    /**
+     * Encodes a BC1 block. Blocks with transparent pixels use the 3 colour mode with a transparent index.
+     *
+     * @param block  the 16 argb pixels of the block, row by row.
+     * @param out    the array to write the 8 block bytes to.
+     * @param offset the offset of the block in the array.
+     */
+    public static void encodeBc1(@Nonnull final int[] block, @Nonnull final byte[] out, final int offset) {
+        boolean transparent = false;
+        for (final int pixel : block) {
+            if (pixel >>> 24 < BC1_ALPHA_THRESHOLD) {
+                transparent = true;
+                break;
+            }
+        }
+        encodeColor(block, out, offset, transparent, true);
+    }
+
+    /**
+     * Encodes a BC3 block, a BC4 alpha block followed by a 4 colour BC1 block.
+     *
+     * @param block  the 16 argb pixels of the block, row by row.
+     * @param out    the array to write the 16 block bytes to.
+     * @param offset the offset of the block in the array.
+     */
+    public static void encodeBc3(@Nonnull final int[] block, @Nonnull final byte[] out, final int offset) {
+        encodeAlpha(block, out, offset);
+        encodeColor(block, out, offset + 8, false, false);
+    }
+
+    /**
+     * Encodes a BC1 style colour block.
+     *
+     * @param block       the 16 argb pixels of the block, row by row.
+     * @param out         the array to write the 8 block bytes to.
+     * @param offset      the offset of the block in the array.
+     * @param transparent states if transparent pixels should use the transparent index.
+     * @param ordered     states if the decoder picks the mode from the endpoint order, which BC3 colour blocks do not.
+     */
+    private static void encodeColor(@Nonnull final int[] block,
+                                    @Nonnull final byte[] out,
+                                    final int offset,
+                                    final boolean transparent,
+                                    final boolean ordered) {
+        final int[] axis = new int[2];
+        principalEndpoints(block, 3, transparent, axis);
+        int color0 = to565(axis[1]);
+        int color1 = to565(axis[0]);
+        if (ordered) {
+            // The 4 colour mode needs color0 > color1, the 3 colour mode color0 <= color1
+            if ((transparent && color0 > color1) || (!transparent && color0 < color1)) {
+                final int swap = color0;
+                color0 = color1;
+                color1 = swap;
+            }
+            if (!transparent && color0 == color1) {
+                // Equal endpoints decode as the 3 colour mode, which still has color0 as index 0
+                writeColorBlock(out, offset, color0, color1, 0);
+                return;
+            }
+        }
+        final int c0 = from565(color0);
+        final int c1 = from565(color1);
+        final int[] palette = new int[4];
+        palette[0] = c0;
+        palette[1] = c1;
+        final int colors;
+        if (transparent) {
+            palette[2] = mix(c0, c1, 1, 1, 2);
+            colors = 3;
+        } else {
+            palette[2] = mix(c0, c1, 2, 1, 3);
+            palette[3] = mix(c0, c1, 1, 2, 3);
+            colors = 4;
+        }
+        int indices = 0;
+        for (int i = 0; i < 16; i++) {
+            final int index = transparent && block[i] >>> 24 < BC1_ALPHA_THRESHOLD ? 3 : closest(palette, colors, block[i]);
+            indices |= index << (i * 2);
+        }
+        writeColorBlock(out, offset, color0, color1, indices);
+    }
+
+    /**
+     * Encodes a BC4 alpha block.
+     *
+     * @param block  the 16 argb pixels of the block, row by row.
+     * @param out    the array to write the 8 block bytes to.
+     * @param offset the offset of the block in the array.
+     */
+    private static void encodeAlpha(@Nonnull final int[] block, @Nonnull final byte[] out, final int offset) {
+        int min = 255;
+        int max = 0;
+        for (final int pixel : block) {
+            min = Math.min(min, pixel >>> 24);
+            max = Math.max(max, pixel >>> 24);
+        }
+        out[offset] = (byte) max;
+        out[offset + 1] = (byte) min;
+        long indices = 0;
+        if (max != min) {
+            // The 8 value mode, code 0 is max, code 1 is min and codes 2 to 7 step from max to min
+            final int[] palette = new int[8];
+            palette[0] = max;
+            palette[1] = min;
+            for (int code = 2; code < 8; code++) {
+                palette[code] = ((8 - code) * max + (code - 1) * min) / 7;
+            }
+            for (int i = 0; i < 16; i++) {
+                final int alpha = block[i] >>> 24;
+                int best = 0;
+                int bestError = Integer.MAX_VALUE;
+                for (int code = 0; code < 8; code++) {
+                    final int error = Math.abs(palette[code] - alpha);
+                    if (error < bestError) {
+                        bestError = error;
+                        best = code;
+                    }
+                }
+                indices |= (long) best << (i * 3);
+            }
+        }
+        for (int i = 0; i < 6; i++) {
+            out[offset + 2 + i] = (byte) (indices >>> (i * 8));
+        }
+    }
+
+    /**
+     * Encodes a BC7 block in mode 6.
+     *
+     * @param block  the 16 argb pixels of the block, row by row.
+     * @param out    the array to write the 16 block bytes to.
+     * @param offset the offset of the block in the array.
+     */
+    public static void encodeBc7(@Nonnull final int[] block, @Nonnull final byte[] out, final int offset) {
+        final int[] axis = new int[2];
+        principalEndpoints(block, 4, false, axis);
+        final int[] endpoint0 = new int[4];
+        final int[] endpoint1 = new int[4];
+        final int p0 = quantizeBc7(axis[0], endpoint0);
+        final int p1 = quantizeBc7(axis[1], endpoint1);
+        final int[] palette = new int[16];
+        for (int index = 0; index < 16; index++) {
+            final int weight = BC7_WEIGHTS[index];
+            int color = 0;
+            for (int channel = 0; channel < 4; channel++) {
+                final int e0 = endpoint0[channel] << 1 | p0;
+                final int e1 = endpoint1[channel] << 1 | p1;
+                color |= (((64 - weight) * e0 + weight * e1 + 32) >> 6) << (channel * 8);
+            }
+            palette[index] = color;
+        }
+        final int[] indices = new int[16];
+        for (int i = 0; i < 16; i++) {
+            indices[i] = closest(palette, 16, abgr(block[i]), 4);
+        }
+        int[] e0 = endpoint0;
+        int[] e1 = endpoint1;
+        int pBit0 = p0;
+        int pBit1 = p1;
+        if (indices[0] >= 8) {
+            // The anchor index is stored without its top bit, so swap the endpoints to make it low
+            e0 = endpoint1;
+            e1 = endpoint0;
+            pBit0 = p1;
+            pBit1 = p0;
+            for (int i = 0; i < 16; i++) {
+                indices[i] = 15 - indices[i];
+            }
+        }
+        final BitWriter writer = new BitWriter(out, offset);
+        writer.write(1 << 6, 7);
+        for (int channel = 0; channel < 4; channel++) {
+            writer.write(e0[channel], 7);
+            writer.write(e1[channel], 7);
+        }
+        writer.write(pBit0, 1);
+        writer.write(pBit1, 1);
+        writer.write(indices[0], 3);
+        for (int i = 1; i < 16; i++) {
+            writer.write(indices[i], 4);
+        }
+    }
+
+    /**
+     * Quantizes an endpoint to 7 bits per channel and a shared p bit.
+     *
+     * @param color    the abgr endpoint.
+     * @param endpoint the array to write the 7 bit r, g, b and a values to.
+     * @return the p bit.
+     */
+    private static int quantizeBc7(final int color, @Nonnull final int[] endpoint) {
+        int bestError = Integer.MAX_VALUE;
+        int bestP = 0;
+        for (int p = 0; p < 2; p++) {
+            int error = 0;
+            for (int channel = 0; channel < 4; channel++) {
+                final int value = (color >> (channel * 8)) & 0xFF;
+                final int quantized = Math.min(127, Math.max(0, (value - p + 1) >> 1));
+                final int difference = value - (quantized << 1 | p);
+                error += difference * difference;
+            }
+            if (error < bestError) {
+                bestError = error;
+                bestP = p;
+            }
+        }
+        for (int channel = 0; channel < 4; channel++) {
+            final int value = (color >> (channel * 8)) & 0xFF;
+            endpoint[channel] = Math.min(127, Math.max(0, (value - bestP + 1) >> 1));
+        }
+        return bestP;
+    }
+
+    /**
+     * Finds the two endpoints of the line through the pixels along their principal axis.
+     *
+     * @param block     the 16 argb pixels of the block.
+     * @param channels  3 to fit the colour or 4 to fit colour and alpha.
+     * @param skipAlpha states if transparent BC1 pixels should be left out.
+     * @param endpoints the array to write the low and high abgr endpoint to.
+     */
+    private static void principalEndpoints(@Nonnull final int[] block,
+                                           final int channels,
+                                           final boolean skipAlpha,
+                                           @Nonnull final int[] endpoints) {
+        final float[] mean = new float[4];
+        int count = 0;
+        for (final int pixel : block) {
+            if (skipAlpha && pixel >>> 24 < BC1_ALPHA_THRESHOLD) {
+                continue;
+            }
+            final int color = abgr(pixel);
+            for (int channel = 0; channel < channels; channel++) {
+                mean[channel] += (color >> (channel * 8)) & 0xFF;
+            }
+            count++;
+        }
+        if (count == 0) {
+            endpoints[0] = 0;
+            endpoints[1] = 0;
+            return;
+        }
+        for (int channel = 0; channel < channels; channel++) {
+            mean[channel] /= count;
+        }
+        final float[] covariance = new float[16];
+        for (final int pixel : block) {
+            if (skipAlpha && pixel >>> 24 < BC1_ALPHA_THRESHOLD) {
+                continue;
+            }
+            final int color = abgr(pixel);
+            for (int a = 0; a < channels; a++) {
+                final float da = ((color >> (a * 8)) & 0xFF) - mean[a];
+                for (int b = 0; b < channels; b++) {
+                    covariance[a * 4 + b] += da * (((color >> (b * 8)) & 0xFF) - mean[b]);
+                }
+            }
+        }
+        // A few power iterations are enough to find the dominant direction
+        final float[] axis = {1, 1, 1, channels == 4 ? 1 : 0};
+        for (int iteration = 0; iteration < 8; iteration++) {
+            final float[] next = new float[4];
+            float length = 0;
+            for (int a = 0; a < channels; a++) {
+                for (int b = 0; b < channels; b++) {
+                    next[a] += covariance[a * 4 + b] * axis[b];
+                }
+                length = Math.max(length, Math.abs(next[a]));
+            }
+            if (length == 0) {
+                break;
+            }
+            for (int a = 0; a < channels; a++) {
+                axis[a] = next[a] / length;
+            }
+        }
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        for (final int pixel : block) {
+            if (skipAlpha && pixel >>> 24 < BC1_ALPHA_THRESHOLD) {
+                continue;
+            }
+            final int color = abgr(pixel);
+            float projection = 0;
+            for (int channel = 0; channel < channels; channel++) {
+                projection += (((color >> (channel * 8)) & 0xFF) - mean[channel]) * axis[channel];
+            }
+            min = Math.min(min, projection);
+            max = Math.max(max, projection);
+        }
+        float axisLength = 0;
+        for (int channel = 0; channel < channels; channel++) {
+            axisLength += axis[channel] * axis[channel];
+        }
+        if (axisLength == 0) {
+            axisLength = 1;
+        }
+        int low = channels == 3 ? 0xFF000000 : 0;
+        int high = low;
+        for (int channel = 0; channel < channels; channel++) {
+            low |= clamp(Math.round(mean[channel] + axis[channel] * min / axisLength)) << (channel * 8);
+            high |= clamp(Math.round(mean[channel] + axis[channel] * max / axisLength)) << (channel * 8);
+        }
+        endpoints[0] = low;
+        endpoints[1] = high;
+    }
+
+    /**
+     * Finds the closest palette colour of an argb pixel, comparing rgb.
+     *
+     * @param palette the abgr palette.
+     * @param colors  the amount of usable palette entries.
+     * @param pixel   the argb pixel.
+     * @return the palette index.
+     */
+    private static int closest(@Nonnull final int[] palette, final int colors, final int pixel) {
+        return closest(palette, colors, abgr(pixel), 3);
+    }
+
+    /**
+     * Finds the closest palette colour.
+     *
+     * @param palette  the abgr palette.
+     * @param colors   the amount of usable palette entries.
+     * @param color    the abgr colour.
+     * @param channels the amount of compared channels, starting with red.
+     * @return the palette index.
+     */
+    private static int closest(@Nonnull final int[] palette, final int colors, final int color, final int channels) {
+        int best = 0;
+        int bestError = Integer.MAX_VALUE;
+        for (int index = 0; index < colors; index++) {
+            int error = 0;
+            for (int channel = 0; channel < channels; channel++) {
+                final int difference = ((palette[index] >> (channel * 8)) & 0xFF) - ((color >> (channel * 8)) & 0xFF);
+                error += difference * difference;
+            }
+            if (error < bestError) {
+                bestError = error;
+                best = index;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Writes a BC1 colour block.
+     *
+     * @param out     the array to write to.
+     * @param offset  the offset of the block.
+     * @param color0  the first 565 endpoint.
+     * @param color1  the second 565 endpoint.
+     * @param indices the 2 bit indices, pixel 0 in the lowest bits.
+     */
+    private static void writeColorBlock(@Nonnull final byte[] out, final int offset, final int color0, final int color1, final int indices) {
+        out[offset] = (byte) color0;
+        out[offset + 1] = (byte) (color0 >> 8);
+        out[offset + 2] = (byte) color1;
+        out[offset + 3] = (byte) (color1 >> 8);
+        out[offset + 4] = (byte) indices;
+        out[offset + 5] = (byte) (indices >> 8);
+        out[offset + 6] = (byte) (indices >> 16);
+        out[offset + 7] = (byte) (indices >> 24);
+    }
+
+    /**
+     * Blends two abgr colours.
+     *
+     * @param c0      the first colour.
+     * @param c1      the second colour.
+     * @param weight0 the weight of the first colour.
+     * @param weight1 the weight of the second colour.
+     * @param total   the sum of the weights.
+     * @return the blended colour.
+     */
+    private static int mix(final int c0, final int c1, final int weight0, final int weight1, final int total) {
+        int color = 0xFF000000;
+        for (int channel = 0; channel < 3; channel++) {
+            final int value = (((c0 >> (channel * 8)) & 0xFF) * weight0 + ((c1 >> (channel * 8)) & 0xFF) * weight1) / total;
+            color |= value << (channel * 8);
+        }
+        return color;
+    }
+
+    /**
+     * @param color the abgr colour.
+     * @return the colour as 565.
+     */
+    private static int to565(final int color) {
+        final int r = color & 0xFF;
+        final int g = (color >> 8) & 0xFF;
+        final int b = (color >> 16) & 0xFF;
+        return ((r * 31 + 127) / 255) << 11 | ((g * 63 + 127) / 255) << 5 | (b * 31 + 127) / 255;
+    }
+
+    /**
+     * @param color the 565 colour.
+     * @return the colour as abgr the way a decoder expands it.
+     */
+    private static int from565(final int color) {
+        final int r = (color >> 11) & 0x1F;
+        final int g = (color >> 5) & 0x3F;
+        final int b = color & 0x1F;
+        return 0xFF000000 | ((b << 3 | b >> 2) << 16) | ((g << 2 | g >> 4) << 8) | (r << 3 | r >> 2);
+    }
+
+    /**
+     * @param pixel the argb pixel.
+     * @return the pixel as abgr, red in the lowest byte.
+     */
+    static int abgr(final int pixel) {
+        return (pixel & 0xFF00FF00) | ((pixel >> 16) & 0xFF) | ((pixel & 0xFF) << 16);
+    }
+
+    /**
+     * @param value the channel value.
+     * @return the value clamped to 0 to 255.
+     */
+    static int clamp(final int value) {
+        return Math.min(255, Math.max(0, value));
+    }
+
+    /**
+     * Writes values into a block least significant bit first.
+     *
+     * @author Tyler Bucher
+     */
+    private static class BitWriter {
+
+        /**
+         * The array to write to.
+         */
+        private final byte[] out;
+
+        /**
+         * The offset of the block.
+         */
+        private final int offset;
+
+        /**
+         * The next bit to write.
+         */
+        private int position;
+
+        /**
+         * @param out    the array to write to.
+         * @param offset the offset of the block.
+         */
+        BitWriter(@Nonnull final byte[] out, final int offset) {
+            this.out = out;
+            this.offset = offset;
+        }
+
+        /**
+         * @param value the value to write.
+         * @param bits  the amount of bits of the value.
+         */
+        void write(final int value, final int bits) {
+            for (int i = 0; i < bits; i++, position++) {
+                if ((value >> i & 1) != 0) {
+                    out[offset + (position >> 3)] |= 1 << (position & 7);
+                } else {
+                    out[offset + (position >> 3)] &= ~(1 << (position & 7));
+                }
+            }
+        }
+    }
+}
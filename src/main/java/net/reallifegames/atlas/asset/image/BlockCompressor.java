@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.image;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compresses images into a {@link BlockFormat}. Each row of blocks is encoded as a separate task, so the rows are spread
+ * over several threads. Images which are not a multiple of 4 pixels repeat their last row and column.
+ *
+ * @author Tyler Bucher
+ */
+public class BlockCompressor {
+
+    /**
+     * The amount of threads used to encode block rows.
+     */
+    private final int threads;
+
+    /**
+     * @param threads the amount of threads used to encode block rows.
+     */
+    public BlockCompressor(final int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Compresses an image.
+     *
+     * @param source the image to compress.
+     * @param format the block format.
+     * @return the blocks row by row.
+     *
+     * @throws IOException if the thread was interrupted or the blocks do not fit into one array.
+     */
+    public byte[] compress(@Nonnull final PixelSource source, @Nonnull final BlockFormat format) throws IOException {
+        final int blocksX = (source.getWidth() + 3) / 4;
+        final int blocksY = (source.getHeight() + 3) / 4;
+        final long size = (long) blocksX * blocksY * format.blockBytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("A " + source.getWidth() + "x" + source.getHeight() + " image is too large to " +
+                    "compress into a single " + format.name + " buffer.");
+        }
+        final byte[] blocks = new byte[(int) size];
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int blockY = 0; blockY < blocksY; blockY++) {
+                final int row = blockY;
+                futures.add(executorService.submit(()->compressRow(source, format, row, blocksX, blocks)));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Block compression was interrupted.");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+        return blocks;
+    }
+
+    /**
+     * Encodes one row of blocks.
+     *
+     * @param source  the image to compress.
+     * @param format  the block format.
+     * @param blockY  the block row.
+     * @param blocksX the amount of blocks in a row.
+     * @param blocks  the array to write the blocks to.
+     */
+    private static void compressRow(@Nonnull final PixelSource source,
+                                    @Nonnull final BlockFormat format,
+                                    final int blockY,
+                                    final int blocksX,
+                                    @Nonnull final byte[] blocks) {
+        final int width = source.getWidth();
+        final int top = blockY * 4;
+        final int rows = Math.min(4, source.getHeight() - top);
+        final int[] pixels = new int[rows * width];
+        source.readRows(top, rows, pixels);
+        final int[] block = new int[16];
+        for (int blockX = 0; blockX < blocksX; blockX++) {
+            for (int y = 0; y < 4; y++) {
+                final int row = Math.min(y, rows - 1) * width;
+                for (int x = 0; x < 4; x++) {
+                    block[y * 4 + x] = pixels[row + Math.min(blockX * 4 + x, width - 1)];
+                }
+            }
+            format.encode(block, blocks, (blockY * blocksX + blockX) * format.blockBytes);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.image;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The gpu block compression formats the atlas can be exported in. Every format encodes 4x4 pixel blocks.
+ *
+ * @author Tyler Bucher
+ */
+public enum BlockFormat {
+    /**
+     * BC1 with 1 bit alpha, 8 bytes per block.
+     */
+    BC1("bc1", 133, 8),
+    /**
+     * BC3, 16 bytes per block.
+     */
+    BC3("bc3", 137, 16),
+    /**
+     * BC7, 16 bytes per block.
+     */
+    BC7("bc7", 145, 16),
+    /**
+     * ETC2 RGBA8, 16 bytes per block.
+     */
+    ETC2("etc2", 151, 16);
+
+    /**
+     * The name of the format in options and file names.
+     */
+    public final String name;
+
+    /**
+     * The Vulkan format id written to KTX2 files.
+     */
+    public final int vkFormat;
+
+    /**
+     * The size of one block in bytes.
+     */
+    public final int blockBytes;
+
+    /**
+     * @param name       the name of the format in options and file names.
+     * @param vkFormat   the Vulkan format id written to KTX2 files.
+     * @param blockBytes the size of one block in bytes.
+     */
+    BlockFormat(@Nonnull final String name, final int vkFormat, final int blockBytes) {
+        this.name = name;
+        this.vkFormat = vkFormat;
+        this.blockBytes = blockBytes;
+    }
+
+    /**
+     * Encodes one block.
+     *
+     * @param block  the 16 argb pixels of the block, row by row.
+     * @param out    the array to write the block to.
+     * @param offset the offset of the block in the array.
+     */
+    public void encode(@Nonnull final int[] block, @Nonnull final byte[] out, final int offset) {
+        switch (this) {
+            case BC1:
+                BcEncoder.encodeBc1(block, out, offset);
+                break;
+            case BC3:
+                BcEncoder.encodeBc3(block, out, offset);
+                break;
+            case BC7:
+                BcEncoder.encodeBc7(block, out, offset);
+                break;
+            case ETC2:
+                EtcEncoder.encodeRgba8(block, out, offset);
+                break;
+        }
+    }
+
+    /**
+     * @param name the name of the format.
+     * @return the block format.
+     */
+    public static BlockFormat fromName(@Nonnull final String name) {
+        for (final BlockFormat format : values()) {
+            if (format.name.equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown block format " + name + ".");
+    }
+}
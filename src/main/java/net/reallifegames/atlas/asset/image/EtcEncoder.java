@@ -0,0 +1,252 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.image;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Encodes 4x4 blocks of argb pixels into the ETC2 RGBA8 block format, an EAC alpha block followed by an ETC2 colour
+ * block. Colour blocks use the individual and differential modes, which every ETC2 decoder supports.
+ *
+ * @author Tyler Bucher
+ */
+public class EtcEncoder {
+
+    /**
+     * The ETC colour modifier tables, indexed by the 2 bit pixel index.
+     */
+    private static final int[][] COLOR_TABLES = {
+            {2, 8, -2, -8}, {5, 17, -5, -17}, {9, 29, -9, -29}, {13, 42, -13, -42},
+            {18, 60, -18, -60}, {24, 80, -24, -80}, {33, 106, -33, -106}, {47, 183, -47, -183}
+    };
+
+    /**
+     * The EAC alpha modifier tables, indexed by the 3 bit pixel index.
+     */
+    private static final int[][] ALPHA_TABLES = {
+            {-3, -6, -9, -15, 2, 5, 8, 14}, {-3, -7, -10, -13, 2, 6, 9, 12}, {-2, -5, -8, -13, 1, 4, 7, 12},
+            {-2, -4, -6, -13, 1, 3, 5, 12}, {-3, -6, -8, -12, 2, 5, 7, 11}, {-3, -7, -9, -11, 2, 6, 8, 10},
+            {-4, -7, -8, -11, 3, 6, 7, 10}, {-3, -5, -8, -11, 2, 4, 7, 10}, {-2, -6, -8, -10, 1, 5, 7, 9},
+            {-2, -5, -8, -10, 1, 4, 7, 9}, {-2, -4, -8, -10, 1, 3, 7, 9}, {-2, -5, -7, -10, 1, 4, 6, 9},
+            {-3, -4, -7, -10, 2, 3, 6, 9}, {-1, -2, -3, -10, 0, 1, 2, 9}, {-4, -6, -8, -9, 3, 5, 7, 8},
+            {-3, -5, -7, -9, 2, 4, 6, 8}
+    };
+
+    /**
+     * Encodes an ETC2 RGBA8 block.
+     *
+     * @param block  the 16 argb pixels of the block, row by row.
+     * @param out    the array to write the 16 block bytes to.
+     * @param offset the offset of the block in the array.
+     */
+    public static void encodeRgba8(@Nonnull final int[] block, @Nonnull final byte[] out, final int offset) {
+        writeLong(out, offset, encodeAlpha(block));
+        writeLong(out, offset + 8, encodeColor(block));
+    }
+
+    /**
+     * Encodes an EAC alpha block.
+     *
+     * @param block the 16 argb pixels of the block, row by row.
+     * @return the 64 bit block.
+     */
+    private static long encodeAlpha(@Nonnull final int[] block) {
+        int min = 255;
+        int max = 0;
+        for (final int pixel : block) {
+            min = Math.min(min, pixel >>> 24);
+            max = Math.max(max, pixel >>> 24);
+        }
+        if (min == max) {
+            // Table 13 has a zero modifier at index 4
+            long bits = (long) max << 56 | 1L << 52 | 13L << 48;
+            for (int i = 0; i < 16; i++) {
+                bits |= 4L << ((15 - i) * 3);
+            }
+            return bits;
+        }
+        long bestBits = 0;
+        int bestError = Integer.MAX_VALUE;
+        final int[] alphas = new int[16];
+        for (int i = 0; i < 16; i++) {
+            // Etc pixels are numbered column by column
+            alphas[i] = block[(i & 3) * 4 + (i >> 2)] >>> 24;
+        }
+        for (int table = 0; table < 16; table++) {
+            final int[] modifiers = ALPHA_TABLES[table];
+            final int span = modifiers[7] - modifiers[3];
+            final int estimate = Math.max(1, Math.min(15, Math.round((max - min) / (float) span)));
+            for (int multiplier = Math.max(1, estimate - 1); multiplier <= Math.min(15, estimate + 1); multiplier++) {
+                final int base = BcEncoder.clamp(Math.round((min + max) / 2.0f - multiplier * (modifiers[7] + modifiers[3]) / 2.0f));
+                long bits = (long) base << 56 | (long) multiplier << 52 | (long) table << 48;
+                int error = 0;
+                for (int i = 0; i < 16 && error < bestError; i++) {
+                    int best = 0;
+                    int pixelError = Integer.MAX_VALUE;
+                    for (int index = 0; index < 8; index++) {
+                        final int difference = BcEncoder.clamp(base + modifiers[index] * multiplier) - alphas[i];
+                        if (difference * difference < pixelError) {
+                            pixelError = difference * difference;
+                            best = index;
+                        }
+                    }
+                    error += pixelError;
+                    bits |= (long) best << ((15 - i) * 3);
+                }
+                if (error < bestError) {
+                    bestError = error;
+                    bestBits = bits;
+                }
+            }
+        }
+        return bestBits;
+    }
+
+    /**
+     * Encodes an ETC2 colour block, trying both block splits and keeping the better one.
+     *
+     * @param block the 16 argb pixels of the block, row by row.
+     * @return the 64 bit block.
+     */
+    private static long encodeColor(@Nonnull final int[] block) {
+        final long[] result = new long[1];
+        final int error = encodeColor(block, false, result);
+        final long[] flipped = new long[1];
+        return encodeColor(block, true, flipped) < error ? flipped[0] : result[0];
+    }
+
+    /**
+     * Encodes an ETC2 colour block with one block split.
+     *
+     * @param block  the 16 argb pixels of the block, row by row.
+     * @param flip   false for two 2x4 halves side by side, true for two 4x2 halves on top of each other.
+     * @param result the array to write the 64 bit block to.
+     * @return the squared error of the block.
+     */
+    private static int encodeColor(@Nonnull final int[] block, final boolean flip, @Nonnull final long[] result) {
+        final int[] average0 = new int[3];
+        final int[] average1 = new int[3];
+        for (int i = 0; i < 16; i++) {
+            final int x = i & 3;
+            final int y = i >> 2;
+            final int[] average = (flip ? y : x) < 2 ? average0 : average1;
+            average[0] += (block[i] >> 16) & 0xFF;
+            average[1] += (block[i] >> 8) & 0xFF;
+            average[2] += block[i] & 0xFF;
+        }
+        final int[] base0 = new int[3];
+        final int[] base1 = new int[3];
+        final int[] quantized0 = new int[3];
+        final int[] quantized1 = new int[3];
+        boolean differential = true;
+        for (int channel = 0; channel < 3; channel++) {
+            quantized0[channel] = Math.round(average0[channel] / 8.0f * 31 / 255);
+            quantized1[channel] = Math.round(average1[channel] / 8.0f * 31 / 255);
+            final int difference = quantized1[channel] - quantized0[channel];
+            if (difference < -4 || difference > 3) {
+                differential = false;
+            }
+        }
+        long bits;
+        if (differential) {
+            bits = 1L << 33;
+            for (int channel = 0; channel < 3; channel++) {
+                base0[channel] = quantized0[channel] << 3 | quantized0[channel] >> 2;
+                base1[channel] = quantized1[channel] << 3 | quantized1[channel] >> 2;
+                bits |= (long) quantized0[channel] << (59 - channel * 8);
+                bits |= (long) ((quantized1[channel] - quantized0[channel]) & 7) << (56 - channel * 8);
+            }
+        } else {
+            bits = 0;
+            for (int channel = 0; channel < 3; channel++) {
+                final int individual0 = Math.round(average0[channel] / 8.0f * 15 / 255);
+                final int individual1 = Math.round(average1[channel] / 8.0f * 15 / 255);
+                base0[channel] = individual0 * 17;
+                base1[channel] = individual1 * 17;
+                bits |= (long) individual0 << (60 - channel * 8);
+                bits |= (long) individual1 << (56 - channel * 8);
+            }
+        }
+        if (flip) {
+            bits |= 1L << 32;
+        }
+        int error = 0;
+        for (int half = 0; half < 2; half++) {
+            final int[] base = half == 0 ? base0 : base1;
+            int bestError = Integer.MAX_VALUE;
+            long bestIndices = 0;
+            int bestTable = 0;
+            for (int table = 0; table < 8; table++) {
+                long indices = 0;
+                int tableError = 0;
+                for (int i = 0; i < 16 && tableError < bestError; i++) {
+                    final int x = i & 3;
+                    final int y = i >> 2;
+                    if (((flip ? y : x) < 2 ? 0 : 1) != half) {
+                        continue;
+                    }
+                    int best = 0;
+                    int pixelError = Integer.MAX_VALUE;
+                    for (int index = 0; index < 4; index++) {
+                        final int modifier = COLOR_TABLES[table][index];
+                        final int dr = BcEncoder.clamp(base[0] + modifier) - ((block[i] >> 16) & 0xFF);
+                        final int dg = BcEncoder.clamp(base[1] + modifier) - ((block[i] >> 8) & 0xFF);
+                        final int db = BcEncoder.clamp(base[2] + modifier) - (block[i] & 0xFF);
+                        final int distance = dr * dr + dg * dg + db * db;
+                        if (distance < pixelError) {
+                            pixelError = distance;
+                            best = index;
+                        }
+                    }
+                    tableError += pixelError;
+                    // Pixel j = x * 4 + y keeps its index msb in bit 16 + j and its lsb in bit j
+                    final int j = x * 4 + y;
+                    indices |= (long) (best >> 1) << (16 + j) | (long) (best & 1) << j;
+                }
+                if (tableError < bestError) {
+                    bestError = tableError;
+                    bestIndices = indices;
+                    bestTable = table;
+                }
+            }
+            error += bestError;
+            bits |= bestIndices | (long) bestTable << (half == 0 ? 37 : 34);
+        }
+        result[0] = bits;
+        return error;
+    }
+
+    /**
+     * Writes a 64 bit block big endian.
+     *
+     * @param out    the array to write to.
+     * @param offset the offset of the block.
+     * @param bits   the block.
+     */
+    private static void writeLong(@Nonnull final byte[] out, final int offset, final long bits) {
+        for (int i = 0; i < 8; i++) {
+            out[offset + i] = (byte) (bits >>> (56 - i * 8));
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.image;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Writes block compressed images with their mip levels into KTX2 containers.
+ *
+ * @author Tyler Bucher
+ */
+public class Ktx2Writer {
+
+    /**
+     * The KTX2 file identifier.
+     */
+    private static final byte[] IDENTIFIER = {(byte) 0xAB, 'K', 'T', 'X', ' ', '2', '0', (byte) 0xBB, '\r', '\n', 0x1A, '\n'};
+
+    /**
+     * The size of the header and the section index.
+     */
+    private static final int HEADER_SIZE = 80;
+
+    /**
+     * The size of one level index entry.
+     */
+    private static final int LEVEL_INDEX_SIZE = 24;
+
+    /**
+     * Writes a KTX2 file.
+     *
+     * @param outputStream the stream to write to.
+     * @param format       the block format of the levels.
+     * @param width        the width of level 0.
+     * @param height       the height of level 0.
+     * @param levels       the compressed levels, level 0 first.
+     * @throws IOException if the file could not be written.
+     */
+    public static void write(@Nonnull final OutputStream outputStream,
+                             @Nonnull final BlockFormat format,
+                             final int width,
+                             final int height,
+                             @Nonnull final List<byte[]> levels) throws IOException {
+        final byte[] dfd = createDataFormatDescriptor(format);
+        final int dfdOffset = HEADER_SIZE + LEVEL_INDEX_SIZE * levels.size();
+        // Level data is aligned to the block size and stored smallest level first
+        final long[] levelOffsets = new long[levels.size()];
+        long offset = dfdOffset + dfd.length;
+        for (int level = levels.size() - 1; level >= 0; level--) {
+            offset = (offset + format.blockBytes - 1) / format.blockBytes * format.blockBytes;
+            levelOffsets[level] = offset;
+            offset += levels.get(level).length;
+        }
+        final ByteBuffer header = ByteBuffer.allocate(dfdOffset).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(IDENTIFIER);
+        header.putInt(format.vkFormat);
+        header.putInt(1);
+        header.putInt(width);
+        header.putInt(height);
+        header.putInt(0);
+        header.putInt(0);
+        header.putInt(1);
+        header.putInt(levels.size());
+        header.putInt(0);
+        header.putInt(dfdOffset);
+        header.putInt(dfd.length);
+        header.putInt(0);
+        header.putInt(0);
+        header.putLong(0);
+        header.putLong(0);
+        for (int level = 0; level < levels.size(); level++) {
+            header.putLong(levelOffsets[level]);
+            header.putLong(levels.get(level).length);
+            header.putLong(levels.get(level).length);
+        }
+        outputStream.write(header.array());
+        outputStream.write(dfd);
+        long position = dfdOffset + dfd.length;
+        for (int level = levels.size() - 1; level >= 0; level--) {
+            while (position < levelOffsets[level]) {
+                outputStream.write(0);
+                position++;
+            }
+            outputStream.write(levels.get(level));
+            position += levels.get(level).length;
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * Creates the basic data format descriptor of a block format.
+     *
+     * @param format the block format.
+     * @return the descriptor including its total size.
+     */
+    private static byte[] createDataFormatDescriptor(@Nonnull final BlockFormat format) {
+        final int colorModel;
+        final int[][] samples;
+        // Samples are bit offset, bit length and channel id
+        switch (format) {
+            case BC1:
+                colorModel = 128;
+                samples = new int[][]{{0, 64, 1}};
+                break;
+            case BC3:
+                colorModel = 130;
+                samples = new int[][]{{0, 64, 15}, {64, 64, 0}};
+                break;
+            case BC7:
+                colorModel = 134;
+                samples = new int[][]{{0, 128, 0}};
+                break;
+            default:
+                colorModel = 161;
+                samples = new int[][]{{0, 64, 15}, {64, 64, 2}};
+                break;
+        }
+        final int blockSize = 24 + 16 * samples.length;
+        final ByteBuffer buffer = ByteBuffer.allocate(4 + blockSize).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(4 + blockSize);
+        buffer.putInt(0);
+        buffer.putShort((short) 2);
+        buffer.putShort((short) blockSize);
+        // Colour model, bt709 primaries, linear transfer and straight alpha
+        buffer.put((byte) colorModel).put((byte) 1).put((byte) 1).put((byte) 0);
+        buffer.put((byte) 3).put((byte) 3).put((byte) 0).put((byte) 0);
+        buffer.put((byte) format.blockBytes).put(new byte[7]);
+        for (final int[] sample : samples) {
+            buffer.putShort((short) sample[0]);
+            buffer.put((byte) (sample[1] - 1));
+            buffer.put((byte) sample[2]);
+            buffer.putInt(0);
+            buffer.putInt(0);
+            buffer.putInt(-1);
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.image;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds the levels of a mip chain. Every level halves the previous one with a 2x2 box filter, which weights the colours
+ * by their alpha so transparent pixels do not darken the edges of cutout textures. A level is filtered in bands of rows
+ * on several threads.
+ *
+ * @author Tyler Bucher
+ */
+public class MipmapGenerator {
+
+    /**
+     * The amount of output pixels filtered by one task.
+     */
+    private static final int BAND_SIZE = 1 << 16;
+
+    /**
+     * The amount of threads used to filter bands.
+     */
+    private final int threads;
+
+    /**
+     * @param threads the amount of threads used to filter bands.
+     */
+    public MipmapGenerator(final int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Gets the amount of levels of a full mip chain, including the image itself.
+     *
+     * @param width  the image width.
+     * @param height the image height.
+     * @return the amount of levels down to a 1x1 image.
+     */
+    public static int getLevelCount(final int width, final int height) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(1, Math.max(width, height)));
+    }
+
+    /**
+     * Builds the next level of a mip chain.
+     *
+     * @param source the previous level.
+     * @return the next level, half as wide and high but at least 1x1.
+     *
+     * @throws IOException if the thread was interrupted.
+     */
+    public PixelSource downsample(@Nonnull final PixelSource source) throws IOException {
+        final int width = Math.max(1, source.getWidth() / 2);
+        final int height = Math.max(1, source.getHeight() / 2);
+        final int[] pixels = new int[width * height];
+        final int bandRows = Math.max(1, BAND_SIZE / width);
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int bandStart = 0; bandStart < height; bandStart += bandRows) {
+                final int start = bandStart;
+                final int end = Math.min(height, bandStart + bandRows);
+                futures.add(executorService.submit(()->filterBand(source, pixels, width, start, end)));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Mipmap generation was interrupted.");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+        return PixelSource.of(pixels, width, height);
+    }
+
+    /**
+     * Filters a band of rows of the next level.
+     *
+     * @param source the previous level.
+     * @param pixels the pixels of the next level.
+     * @param width  the width of the next level.
+     * @param start  the first row of the band.
+     * @param end    the row after the last row of the band.
+     */
+    private static void filterBand(@Nonnull final PixelSource source,
+                                   @Nonnull final int[] pixels,
+                                   final int width,
+                                   final int start,
+                                   final int end) {
+        final int sourceWidth = source.getWidth();
+        final int sourceHeight = source.getHeight();
+        final int top = Math.min(start * 2, sourceHeight - 1);
+        final int rows = Math.min(end * 2, sourceHeight) - top;
+        final int[] sourcePixels = new int[rows * sourceWidth];
+        source.readRows(top, rows, sourcePixels);
+        for (int y = start; y < end; y++) {
+            // Images of odd or single pixel size repeat their last row and column
+            final int row0 = (Math.min(y * 2, sourceHeight - 1) - top) * sourceWidth;
+            final int row1 = (Math.min(y * 2 + 1, sourceHeight - 1) - top) * sourceWidth;
+            for (int x = 0; x < width; x++) {
+                final int column0 = Math.min(x * 2, sourceWidth - 1);
+                final int column1 = Math.min(x * 2 + 1, sourceWidth - 1);
+                pixels[y * width + x] = average(sourcePixels[row0 + column0], sourcePixels[row0 + column1],
+                        sourcePixels[row1 + column0], sourcePixels[row1 + column1]);
+            }
+        }
+    }
+
+    /**
+     * Averages four argb pixels, weighting their colours by alpha.
+     *
+     * @param p0 the first pixel.
+     * @param p1 the second pixel.
+     * @param p2 the third pixel.
+     * @param p3 the fourth pixel.
+     * @return the average pixel.
+     */
+    private static int average(final int p0, final int p1, final int p2, final int p3) {
+        final int a0 = p0 >>> 24;
+        final int a1 = p1 >>> 24;
+        final int a2 = p2 >>> 24;
+        final int a3 = p3 >>> 24;
+        final int alpha = a0 + a1 + a2 + a3;
+        if (alpha == 0) {
+            // Keep the plain colour average so texels revealed by filtering are not black
+            return (channel(p0, p1, p2, p3, 16, 1, 1, 1, 1, 4) << 16) | (channel(p0, p1, p2, p3, 8, 1, 1, 1, 1, 4) << 8) |
+                    channel(p0, p1, p2, p3, 0, 1, 1, 1, 1, 4);
+        }
+        return ((alpha + 2) >> 2) << 24 | (channel(p0, p1, p2, p3, 16, a0, a1, a2, a3, alpha) << 16) |
+                (channel(p0, p1, p2, p3, 8, a0, a1, a2, a3, alpha) << 8) | channel(p0, p1, p2, p3, 0, a0, a1, a2, a3, alpha);
+    }
+
+    /**
+     * Computes the weighted average of one colour channel.
+     *
+     * @param p0    the first pixel.
+     * @param p1    the second pixel.
+     * @param p2    the third pixel.
+     * @param p3    the fourth pixel.
+     * @param shift the bit offset of the channel.
+     * @param w0    the weight of the first pixel.
+     * @param w1    the weight of the second pixel.
+     * @param w2    the weight of the third pixel.
+     * @param w3    the weight of the fourth pixel.
+     * @param total the sum of the weights.
+     * @return the averaged channel value.
+     */
+    private static int channel(final int p0,
+                               final int p1,
+                               final int p2,
+                               final int p3,
+                               final int shift,
+                               final int w0,
+                               final int w1,
+                               final int w2,
+                               final int w3,
+                               final int total) {
+        final int sum = ((p0 >> shift) & 0xFF) * w0 + ((p1 >> shift) & 0xFF) * w1 + ((p2 >> shift) & 0xFF) * w2 +
+                ((p3 >> shift) & 0xFF) * w3;
+        return (sum + total / 2) / total;
+    }
+}
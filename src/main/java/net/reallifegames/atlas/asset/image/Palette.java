@@ -0,0 +1,417 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.image;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A palette of at most 256 argb colours for writing indexed pngs. Images with few enough colours get an exact palette,
+ * images with more colours are reduced with a median cut over their colour histogram, as long as the error stays below
+ * a limit.
+ *
+ * @author Tyler Bucher
+ */
+public class Palette {
+
+    /**
+     * The maximum amount of colours of a palette.
+     */
+    public static final int MAX_COLOURS = 256;
+
+    /**
+     * The amount of rows read at once while counting colours.
+     */
+    private static final int BAND_SIZE = 1 << 16;
+
+    /**
+     * The argb palette entries, translucent entries first so the png transparency chunk stays short.
+     */
+    private final int[] colours;
+
+    /**
+     * The sorted argb colours of the images.
+     */
+    private final int[] keys;
+
+    /**
+     * The palette index of every colour in keys.
+     */
+    private final byte[] indices;
+
+    /**
+     * The root mean square error of the palette over every channel of every pixel.
+     */
+    private final double error;
+
+    /**
+     * @param colours the argb palette entries.
+     * @param keys    the sorted argb colours of the images.
+     * @param indices the palette index of every colour in keys.
+     * @param error   the root mean square error of the palette.
+     */
+    private Palette(@Nonnull final int[] colours, @Nonnull final int[] keys, @Nonnull final byte[] indices, final double error) {
+        this.colours = colours;
+        this.keys = keys;
+        this.indices = indices;
+        this.error = error;
+    }
+
+    /**
+     * Builds one palette shared by several images.
+     *
+     * @param images   the images the palette has to cover.
+     * @param maxError the largest allowed root mean square error in 8 bit channel steps, 0 for exact palettes only.
+     * @return the palette or null if the images can not be indexed within the error limit.
+     */
+    @Nullable
+    public static Palette build(@Nonnull final List<? extends PixelSource> images, final double maxError) {
+        final ColourCounter counter = new ColourCounter();
+        for (final PixelSource image : images) {
+            final int width = image.getWidth();
+            final int bandRows = Math.max(1, BAND_SIZE / width);
+            final int[] pixels = new int[bandRows * width];
+            for (int y = 0; y < image.getHeight(); y += bandRows) {
+                final int rows = Math.min(bandRows, image.getHeight() - y);
+                image.readRows(y, rows, pixels);
+                for (int i = 0; i < rows * width; i++) {
+                    counter.add(pixels[i]);
+                }
+                if (maxError <= 0 && counter.size() > MAX_COLOURS) {
+                    return null;
+                }
+            }
+        }
+        final int[] keys = counter.getKeys();
+        final long[] counts = counter.getCounts(keys);
+        final byte[] indices = new byte[keys.length];
+        if (keys.length <= MAX_COLOURS) {
+            final int[] colours = sortColours(keys.clone());
+            for (int i = 0; i < keys.length; i++) {
+                indices[i] = (byte) indexOf(colours, keys[i]);
+            }
+            return new Palette(colours, keys, indices, 0);
+        }
+        final int[] colours = sortColours(medianCut(keys, counts));
+        // Map every colour to its closest palette entry and measure the error
+        double squaredError = 0;
+        long pixelCount = 0;
+        for (int i = 0; i < keys.length; i++) {
+            int best = 0;
+            int bestDistance = Integer.MAX_VALUE;
+            for (int j = 0; j < colours.length && bestDistance > 0; j++) {
+                final int distance = distance(keys[i], colours[j]);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = j;
+                }
+            }
+            indices[i] = (byte) best;
+            squaredError += (double) bestDistance * counts[i];
+            pixelCount += counts[i];
+        }
+        final double error = Math.sqrt(squaredError / (pixelCount * 4.0));
+        return error > maxError ? null : new Palette(colours, keys, indices, error);
+    }
+
+    /**
+     * Reduces a colour histogram to at most {@link #MAX_COLOURS} colours. The box with the largest pixel weighted
+     * channel range is split at the weighted median of that channel until there are enough boxes, every box then
+     * becomes the pixel weighted average of its colours.
+     *
+     * @param keys   the distinct argb colours.
+     * @param counts the amount of pixels of every colour.
+     * @return the argb palette entries.
+     */
+    private static int[] medianCut(@Nonnull final int[] keys, @Nonnull final long[] counts) {
+        final Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        // A box is a range of order, boxes hold start, end, the widest channel shift and its weighted range
+        final List<long[]> boxes = new ArrayList<>();
+        boxes.add(measure(keys, counts, order, 0, order.length));
+        while (boxes.size() < MAX_COLOURS) {
+            long[] widest = null;
+            for (final long[] box : boxes) {
+                if (box[1] - box[0] > 1 && (widest == null || box[3] > widest[3])) {
+                    widest = box;
+                }
+            }
+            if (widest == null || widest[3] == 0) {
+                break;
+            }
+            final int start = (int) widest[0];
+            final int end = (int) widest[1];
+            final int shift = (int) widest[2];
+            Arrays.sort(order, start, end, (i0, i1)->Integer.compare((keys[i0] >>> shift) & 0xFF, (keys[i1] >>> shift) & 0xFF));
+            long total = 0;
+            for (int i = start; i < end; i++) {
+                total += counts[order[i]];
+            }
+            int split = start + 1;
+            long sum = counts[order[start]];
+            while (split < end - 1 && sum * 2 < total) {
+                sum += counts[order[split++]];
+            }
+            boxes.remove(widest);
+            boxes.add(measure(keys, counts, order, start, split));
+            boxes.add(measure(keys, counts, order, split, end));
+        }
+        final int[] colours = new int[boxes.size()];
+        for (int b = 0; b < colours.length; b++) {
+            final long[] box = boxes.get(b);
+            final long[] sums = new long[4];
+            long total = 0;
+            for (int i = (int) box[0]; i < box[1]; i++) {
+                final int key = keys[order[i]];
+                for (int channel = 0; channel < 4; channel++) {
+                    sums[channel] += ((key >>> (channel * 8)) & 0xFF) * counts[order[i]];
+                }
+                total += counts[order[i]];
+            }
+            for (int channel = 0; channel < 4; channel++) {
+                colours[b] |= (int) ((sums[channel] + total / 2) / total) << (channel * 8);
+            }
+        }
+        return colours;
+    }
+
+    /**
+     * @param keys   the distinct argb colours.
+     * @param counts the amount of pixels of every colour.
+     * @param order  the colour indices, grouped into boxes.
+     * @param start  the first position of the box in order.
+     * @param end    the position after the last position of the box in order.
+     * @return start, end, the bit shift of the widest channel and its range weighted by the pixel count of the box.
+     */
+    private static long[] measure(@Nonnull final int[] keys,
+                                  @Nonnull final long[] counts,
+                                  @Nonnull final Integer[] order,
+                                  final int start,
+                                  final int end) {
+        final int[] min = {255, 255, 255, 255};
+        final int[] max = new int[4];
+        long total = 0;
+        for (int i = start; i < end; i++) {
+            final int key = keys[order[i]];
+            for (int channel = 0; channel < 4; channel++) {
+                final int value = (key >>> (channel * 8)) & 0xFF;
+                min[channel] = Math.min(min[channel], value);
+                max[channel] = Math.max(max[channel], value);
+            }
+            total += counts[order[i]];
+        }
+        int widest = 0;
+        for (int channel = 1; channel < 4; channel++) {
+            if (max[channel] - min[channel] > max[widest] - min[widest]) {
+                widest = channel;
+            }
+        }
+        return new long[]{start, end, widest * 8, (max[widest] - min[widest]) * total};
+    }
+
+    /**
+     * Orders palette entries with translucent entries first.
+     *
+     * @param colours the argb palette entries.
+     * @return the sorted entries.
+     */
+    private static int[] sortColours(@Nonnull final int[] colours) {
+        final List<Integer> colourList = new ArrayList<>(colours.length);
+        for (final int colour : colours) {
+            colourList.add(colour);
+        }
+        Collections.sort(colourList, (c0, c1)->(c0 >>> 24) == 0xFF ^ (c1 >>> 24) == 0xFF ?
+                ((c0 >>> 24) == 0xFF ? 1 : -1) : Integer.compareUnsigned(c0, c1));
+        for (int i = 0; i < colours.length; i++) {
+            colours[i] = colourList.get(i);
+        }
+        return colours;
+    }
+
+    /**
+     * @param colours the argb palette entries.
+     * @param colour  the argb colour to find.
+     * @return the index of the colour in the palette.
+     */
+    private static int indexOf(@Nonnull final int[] colours, final int colour) {
+        for (int i = 0; i < colours.length; i++) {
+            if (colours[i] == colour) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param c0 the first argb colour.
+     * @param c1 the second argb colour.
+     * @return the squared distance of the colours over all four channels.
+     */
+    private static int distance(final int c0, final int c1) {
+        int distance = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            final int difference = ((c0 >>> shift) & 0xFF) - ((c1 >>> shift) & 0xFF);
+            distance += difference * difference;
+        }
+        return distance;
+    }
+
+    /**
+     * Looks up the palette index of a colour of the images the palette was built for. Safe to call from several
+     * threads at once.
+     *
+     * @param colour the argb colour.
+     * @return the palette index.
+     */
+    public int getIndex(final int colour) {
+        final int position = Arrays.binarySearch(keys, colour);
+        return position < 0 ? 0 : indices[position] & 0xFF;
+    }
+
+    /**
+     * @return the argb palette entries, translucent entries first.
+     */
+    public int[] getColours() {
+        return colours;
+    }
+
+    /**
+     * @return the root mean square error of the palette in 8 bit channel steps.
+     */
+    public double getError() {
+        return error;
+    }
+
+    /**
+     * Counts the pixels of every argb colour in an open addressing hash table.
+     *
+     * @author Tyler Bucher
+     */
+    private static class ColourCounter {
+
+        /**
+         * The colours, slots whose count is 0 are empty.
+         */
+        private int[] keys = new int[1024];
+
+        /**
+         * The amount of pixels of every colour. A long, as one colour of several large pages can pass 2^31 pixels.
+         */
+        private long[] counts = new long[1024];
+
+        /**
+         * The amount of distinct colours.
+         */
+        private int size;
+
+        /**
+         * @param colour the argb colour of a pixel.
+         */
+        void add(final int colour) {
+            int slot = slot(colour, keys.length);
+            while (counts[slot] != 0 && keys[slot] != colour) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            if (counts[slot] == 0) {
+                keys[slot] = colour;
+                if (++size * 2 > keys.length) {
+                    counts[slot] = 1;
+                    grow();
+                    return;
+                }
+            }
+            counts[slot]++;
+        }
+
+        /**
+         * Doubles the size of the table.
+         */
+        private void grow() {
+            final int[] oldKeys = keys;
+            final long[] oldCounts = counts;
+            keys = new int[oldKeys.length * 2];
+            counts = new long[oldCounts.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldCounts[i] != 0) {
+                    int slot = slot(oldKeys[i], keys.length);
+                    while (counts[slot] != 0) {
+                        slot = (slot + 1) & (keys.length - 1);
+                    }
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        /**
+         * @param colour the argb colour.
+         * @param length the table size, a power of two.
+         * @return the preferred slot of the colour.
+         */
+        private static int slot(final int colour, final int length) {
+            return (colour * 0x9E3779B9 >>> 16 ^ colour * 0x9E3779B9) & (length - 1);
+        }
+
+        /**
+         * @return the amount of distinct colours.
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return the distinct colours, sorted.
+         */
+        int[] getKeys() {
+            final int[] sortedKeys = new int[size];
+            for (int i = 0, j = 0; i < keys.length; i++) {
+                if (counts[i] != 0) {
+                    sortedKeys[j++] = keys[i];
+                }
+            }
+            Arrays.sort(sortedKeys);
+            return sortedKeys;
+        }
+
+        /**
+         * @param sortedKeys the distinct colours returned by {@link #getKeys()}.
+         * @return the amount of pixels of every colour in the same order.
+         */
+        long[] getCounts(@Nonnull final int[] sortedKeys) {
+            final long[] sortedCounts = new long[sortedKeys.length];
+            for (int i = 0; i < keys.length; i++) {
+                if (counts[i] != 0) {
+                    sortedCounts[Arrays.binarySearch(sortedKeys, keys[i])] = counts[i];
+                }
+            }
+            return sortedCounts;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.image;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Provides the argb pixels of an image a band of rows at a time, so images can be streamed without holding them in
+ * memory as a whole.
+ *
+ * @author Tyler Bucher
+ */
+public interface PixelSource {
+
+    /**
+     * Wraps an array of argb pixels.
+     *
+     * @param pixels the argb pixels row by row.
+     * @param width  the image width.
+     * @param height the image height.
+     * @return the pixel source.
+     */
+    static PixelSource of(@Nonnull final int[] pixels, final int width, final int height) {
+        return new PixelSource() {
+            @Override
+            public int getWidth() {
+                return width;
+            }
+
+            @Override
+            public int getHeight() {
+                return height;
+            }
+
+            @Override
+            public void readRows(final int y, final int count, @Nonnull final int[] out) {
+                System.arraycopy(pixels, y * width, out, 0, count * width);
+            }
+        };
+    }
+
+    /**
+     * @return the image width.
+     */
+    int getWidth();
+
+    /**
+     * @return the image height.
+     */
+    int getHeight();
+
+    /**
+     * Reads a band of rows. Must be safe to call from several threads at once.
+     *
+     * @param y     the first row to read.
+     * @param count the amount of rows to read.
+     * @param out   the array to write the argb pixels to, row by row.
+     */
+    void readRows(final int y, final int count, @Nonnull final int[] out);
+}
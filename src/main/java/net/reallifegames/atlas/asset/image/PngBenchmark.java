@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.image;
+
+import net.reallifegames.atlas.asset.source.AssetFileSystem;
+import net.reallifegames.atlas.module.atlas.BlockTextureLoader;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the {@link PngDecoder} against {@link ImageIO} on the block textures of a Minecraft.jar or texture pack.
+ * Run with the archive paths as arguments.
+ *
+ * @author Tyler Bucher
+ */
+public class PngBenchmark {
+
+    /**
+     * The amount of timed rounds per decoder.
+     */
+    private static final int ROUNDS = 5;
+
+    /**
+     * @param args the paths of the archives or folders to read textures from.
+     * @throws IOException if a texture could not be read or decoded.
+     */
+    public static void main(final String[] args) throws IOException {
+        final List<byte[]> files = new ArrayList<>();
+        long bytes = 0;
+        try (final AssetFileSystem assets = new AssetFileSystem()) {
+            for (final String path : args) {
+                assets.mount(path);
+            }
+            for (final String fileName : assets.list(BlockTextureLoader.BLOCK_TEXTURE_DIR)) {
+                if (fileName.endsWith(".png")) {
+                    final byte[] data = assets.read(BlockTextureLoader.BLOCK_TEXTURE_DIR + "/" + fileName);
+                    files.add(data);
+                    bytes += data.length;
+                }
+            }
+        }
+        System.out.println(String.format("Decoding %d textures (%.2f MB).", files.size(), bytes / 1048576.0));
+        int mismatches = 0;
+        for (final byte[] data : files) {
+            final BufferedImage expected = ImageIO.read(new ByteArrayInputStream(data));
+            final BufferedImage actual = PngDecoder.decode(data);
+            if (!samePixels(expected, actual)) {
+                mismatches++;
+            }
+        }
+        System.out.println(mismatches + " textures differ from ImageIO, gray textures are expected to differ.");
+        for (int round = 0; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (final byte[] data : files) {
+                ImageIO.read(new ByteArrayInputStream(data));
+            }
+            final long imageIoNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (final byte[] data : files) {
+                PngDecoder.decode(data);
+            }
+            final long decoderNanos = System.nanoTime() - start;
+            // The first round only warms up the jit
+            if (round > 0) {
+                System.out.println(String.format("Round %d: ImageIO %d ms, PngDecoder %d ms, %.2fx faster.", round,
+                        imageIoNanos / 1000000, decoderNanos / 1000000, imageIoNanos / (double) decoderNanos));
+            }
+        }
+    }
+
+    /**
+     * @param expected the image decoded by ImageIO.
+     * @param actual   the image decoded by the PngDecoder.
+     * @return true if both images have the same argb pixels.
+     */
+    private static boolean samePixels(final BufferedImage expected, final BufferedImage actual) {
+        if (expected == null || expected.getWidth() != actual.getWidth() || expected.getHeight() != actual.getHeight()) {
+            return false;
+        }
+        final int[] expectedRow = new int[expected.getWidth()];
+        final int[] actualRow = new int[actual.getWidth()];
+        for (int y = 0; y < expected.getHeight(); y++) {
+            expected.getRGB(0, y, expectedRow.length, 1, expectedRow, 0, expectedRow.length);
+            actual.getRGB(0, y, actualRow.length, 1, actualRow, 0, actualRow.length);
+            for (int x = 0; x < expectedRow.length; x++) {
+                // Fully transparent pixels may keep any color
+                if (expectedRow[x] != actualRow[x] && (expectedRow[x] >>> 24 != 0 || actualRow[x] >>> 24 != 0)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
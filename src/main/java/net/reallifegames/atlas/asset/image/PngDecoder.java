@@ -0,0 +1,523 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.image;
+
+import javax.annotation.Nonnull;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decodes png images straight into argb pixels. Every color type, bit depth and interlace method of the png
+ * specification is supported. Gray samples are expanded to equal red, green and blue values and 16 bit samples are
+ * scaled to 8 bits with rounding, the way {@link javax.imageio.ImageIO} converts 16 bit rgb images.
+ *
+ * @author Tyler Bucher
+ */
+public class PngDecoder {
+
+    /**
+     * The png file signature.
+     */
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    /**
+     * The column start, row start, column step and row step of each Adam7 pass.
+     */
+    private static final int[][] ADAM7 = {
+            {0, 0, 8, 8}, {4, 0, 8, 8}, {0, 4, 4, 8}, {2, 0, 4, 4}, {0, 2, 2, 4}, {1, 0, 2, 2}, {0, 1, 1, 2}
+    };
+
+    /**
+     * @param data the file contents.
+     * @return true if the data starts with the png signature.
+     */
+    public static boolean isPng(@Nonnull final byte[] data) {
+        if (data.length < SIGNATURE.length) {
+            return false;
+        }
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            if (data[i] != SIGNATURE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a png image.
+     *
+     * @param data the encoded image.
+     * @return the decoded image of type {@link BufferedImage#TYPE_INT_ARGB}.
+     *
+     * @throws IOException if the image is not a valid png.
+     */
+    public static BufferedImage decode(@Nonnull final byte[] data) throws IOException {
+        if (!isPng(data)) {
+            throw new IOException("Missing png signature.");
+        }
+        int width = 0;
+        int height = 0;
+        int bitDepth = 0;
+        int colorType = -1;
+        int interlace = 0;
+        int[] palette = null;
+        byte[] transparency = null;
+        final Inflater inflater = new Inflater();
+        try {
+            byte[] raw = null;
+            int rawLength = 0;
+            int offset = SIGNATURE.length;
+            while (offset + 8 <= data.length) {
+                final int length = readInt(data, offset);
+                final int type = readInt(data, offset + 4);
+                final int start = offset + 8;
+                if (length < 0 || start + length > data.length) {
+                    throw new IOException("Truncated png chunk.");
+                }
+                if (type == 0x49484452) {
+                    // IHDR
+                    width = readInt(data, start);
+                    height = readInt(data, start + 4);
+                    bitDepth = data[start + 8] & 0xFF;
+                    colorType = data[start + 9] & 0xFF;
+                    interlace = data[start + 12] & 0xFF;
+                    if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE / 4) {
+                        throw new IOException("Invalid png size " + width + "x" + height + ".");
+                    }
+                    if (!isValidFormat(colorType, bitDepth)) {
+                        throw new IOException("Invalid png color type " + colorType + " with bit depth " + bitDepth + ".");
+                    }
+                    raw = new byte[rawSize(width, height, bitsPerPixel(colorType, bitDepth), interlace)];
+                } else if (type == 0x504C5445) {
+                    // PLTE
+                    palette = new int[256];
+                    for (int i = 0; i < length / 3 && i < 256; i++) {
+                        palette[i] = 0xFF000000 | (data[start + i * 3] & 0xFF) << 16 | (data[start + i * 3 + 1] & 0xFF) << 8
+                                | (data[start + i * 3 + 2] & 0xFF);
+                    }
+                } else if (type == 0x74524E53) {
+                    // tRNS
+                    transparency = new byte[length];
+                    System.arraycopy(data, start, transparency, 0, length);
+                } else if (type == 0x49444154) {
+                    // IDAT
+                    if (raw == null) {
+                        throw new IOException("Png data before header.");
+                    }
+                    inflater.setInput(data, start, length);
+                    while (!inflater.needsInput() && !inflater.finished() && rawLength < raw.length) {
+                        rawLength += inflater.inflate(raw, rawLength, raw.length - rawLength);
+                    }
+                } else if (type == 0x49454E44) {
+                    // IEND
+                    break;
+                }
+                offset = start + length + 4;
+            }
+            if (raw == null || rawLength < raw.length) {
+                throw new IOException("Truncated png image data.");
+            }
+            if (colorType == 3) {
+                if (palette == null) {
+                    throw new IOException("Missing png palette.");
+                }
+                if (transparency != null) {
+                    for (int i = 0; i < transparency.length && i < 256; i++) {
+                        palette[i] = (palette[i] & 0xFFFFFF) | (transparency[i] & 0xFF) << 24;
+                    }
+                }
+            }
+            final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            final Format format = new Format(colorType, bitDepth, palette, transparency);
+            if (interlace == 0) {
+                unfilterPass(raw, 0, width, height, format, pixels, width, 0, 0, 1, 1);
+            } else {
+                int passOffset = 0;
+                for (final int[] pass : ADAM7) {
+                    final int passWidth = (width - pass[0] + pass[2] - 1) / pass[2];
+                    final int passHeight = (height - pass[1] + pass[3] - 1) / pass[3];
+                    if (passWidth > 0 && passHeight > 0) {
+                        passOffset = unfilterPass(raw, passOffset, passWidth, passHeight, format, pixels, width,
+                                pass[0], pass[1], pass[2], pass[3]);
+                    }
+                }
+            }
+            return image;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt png image data.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * @param colorType the png color type.
+     * @param bitDepth  the png bit depth.
+     * @return true if the combination is allowed by the png specification.
+     */
+    private static boolean isValidFormat(final int colorType, final int bitDepth) {
+        switch (colorType) {
+            case 0:
+                return bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8 || bitDepth == 16;
+            case 3:
+                return bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8;
+            case 2:
+            case 4:
+            case 6:
+                return bitDepth == 8 || bitDepth == 16;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param colorType the png color type.
+     * @param bitDepth  the png bit depth.
+     * @return the amount of bits per pixel.
+     */
+    private static int bitsPerPixel(final int colorType, final int bitDepth) {
+        switch (colorType) {
+            case 2:
+                return bitDepth * 3;
+            case 4:
+                return bitDepth * 2;
+            case 6:
+                return bitDepth * 4;
+            default:
+                return bitDepth;
+        }
+    }
+
+    /**
+     * @param width        the image width.
+     * @param height       the image height.
+     * @param bitsPerPixel the amount of bits per pixel.
+     * @param interlace    the png interlace method.
+     * @return the size of the inflated image data including the filter bytes.
+     */
+    private static int rawSize(final int width, final int height, final int bitsPerPixel, final int interlace) throws IOException {
+        long size = 0;
+        if (interlace == 0) {
+            size = (long) height * (1 + ((long) width * bitsPerPixel + 7) / 8);
+        } else {
+            for (final int[] pass : ADAM7) {
+                final long passWidth = (width - pass[0] + pass[2] - 1) / pass[2];
+                final long passHeight = (height - pass[1] + pass[3] - 1) / pass[3];
+                if (passWidth > 0 && passHeight > 0) {
+                    size += passHeight * (1 + (passWidth * bitsPerPixel + 7) / 8);
+                }
+            }
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Png image is too large.");
+        }
+        return (int) size;
+    }
+
+    /**
+     * Unfilters the scanlines of one pass in place and writes its pixels.
+     *
+     * @param raw        the inflated image data.
+     * @param offset     the start of the pass in the image data.
+     * @param passWidth  the width of the pass.
+     * @param passHeight the height of the pass.
+     * @param format     the pixel format.
+     * @param pixels     the argb pixels of the image.
+     * @param width      the width of the image.
+     * @param x0         the first column of the pass.
+     * @param y0         the first row of the pass.
+     * @param dx         the column step of the pass.
+     * @param dy         the row step of the pass.
+     * @return the end of the pass in the image data.
+     *
+     * @throws IOException if a scanline uses an unknown filter.
+     */
+    private static int unfilterPass(@Nonnull final byte[] raw,
+                                    final int offset,
+                                    final int passWidth,
+                                    final int passHeight,
+                                    @Nonnull final Format format,
+                                    @Nonnull final int[] pixels,
+                                    final int width,
+                                    final int x0,
+                                    final int y0,
+                                    final int dx,
+                                    final int dy) throws IOException {
+        final int bpp = Math.max(1, format.bitsPerPixel / 8);
+        final int rowBytes = (passWidth * format.bitsPerPixel + 7) / 8;
+        int rowStart = offset;
+        for (int y = 0; y < passHeight; y++) {
+            final int filter = raw[rowStart];
+            final int line = rowStart + 1;
+            final int previous = y == 0 ? -1 : line - rowBytes - 1;
+            switch (filter) {
+                case 0:
+                    break;
+                case 1:
+                    for (int i = bpp; i < rowBytes; i++) {
+                        raw[line + i] += raw[line + i - bpp];
+                    }
+                    break;
+                case 2:
+                    if (previous != -1) {
+                        for (int i = 0; i < rowBytes; i++) {
+                            raw[line + i] += raw[previous + i];
+                        }
+                    }
+                    break;
+                case 3:
+                    for (int i = 0; i < rowBytes; i++) {
+                        final int left = i < bpp ? 0 : raw[line + i - bpp] & 0xFF;
+                        final int up = previous == -1 ? 0 : raw[previous + i] & 0xFF;
+                        raw[line + i] += (left + up) >>> 1;
+                    }
+                    break;
+                case 4:
+                    for (int i = 0; i < rowBytes; i++) {
+                        final int left = i < bpp ? 0 : raw[line + i - bpp] & 0xFF;
+                        final int up = previous == -1 ? 0 : raw[previous + i] & 0xFF;
+                        final int upLeft = i < bpp || previous == -1 ? 0 : raw[previous + i - bpp] & 0xFF;
+                        raw[line + i] += paeth(left, up, upLeft);
+                    }
+                    break;
+                default:
+                    throw new IOException("Unknown png filter " + filter + ".");
+            }
+            format.convertRow(raw, line, passWidth, pixels, (y0 + y * dy) * width + x0, dx);
+            rowStart = line + rowBytes;
+        }
+        return rowStart;
+    }
+
+    /**
+     * @param a the left byte.
+     * @param b the upper byte.
+     * @param c the upper left byte.
+     * @return the paeth predictor.
+     */
+    private static int paeth(final int a, final int b, final int c) {
+        final int p = a + b - c;
+        final int pa = Math.abs(p - a);
+        final int pb = Math.abs(p - b);
+        final int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    /**
+     * @param data   the byte array.
+     * @param offset the start of the big endian int.
+     * @return the int value.
+     */
+    private static int readInt(@Nonnull final byte[] data, final int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16 | (data[offset + 2] & 0xFF) << 8
+                | (data[offset + 3] & 0xFF);
+    }
+
+    /**
+     * Converts unfiltered scanlines into argb pixels.
+     *
+     * @author Tyler Bucher
+     */
+    private static class Format {
+
+        /**
+         * The png color type.
+         */
+        final int colorType;
+
+        /**
+         * The png bit depth.
+         */
+        final int bitDepth;
+
+        /**
+         * The amount of bits per pixel.
+         */
+        final int bitsPerPixel;
+
+        /**
+         * The argb palette or null if the image does not use a palette.
+         */
+        final int[] palette;
+
+        /**
+         * The transparent gray sample or -1 if there is none.
+         */
+        final int transparentGray;
+
+        /**
+         * The transparent rgb sample, as 48 bits, or -1 if there is none.
+         */
+        final long transparentRgb;
+
+        /**
+         * @param colorType    the png color type.
+         * @param bitDepth     the png bit depth.
+         * @param palette      the argb palette or null if the image does not use a palette.
+         * @param transparency the contents of the tRNS chunk or null if there is none.
+         */
+        Format(final int colorType, final int bitDepth, final int[] palette, final byte[] transparency) {
+            this.colorType = colorType;
+            this.bitDepth = bitDepth;
+            this.bitsPerPixel = bitsPerPixel(colorType, bitDepth);
+            this.palette = palette;
+            this.transparentGray = colorType == 0 && transparency != null && transparency.length >= 2 ?
+                    (transparency[0] & 0xFF) << 8 | (transparency[1] & 0xFF) : -1;
+            this.transparentRgb = colorType == 2 && transparency != null && transparency.length >= 6 ?
+                    ((long) ((transparency[0] & 0xFF) << 8 | (transparency[1] & 0xFF)) << 32)
+                            | (long) ((transparency[2] & 0xFF) << 8 | (transparency[3] & 0xFF)) << 16
+                            | ((transparency[4] & 0xFF) << 8 | (transparency[5] & 0xFF)) : -1;
+        }
+
+        /**
+         * @param raw    the unfiltered image data.
+         * @param line   the start of the scanline.
+         * @param count  the amount of pixels in the scanline.
+         * @param pixels the argb pixels of the image.
+         * @param index  the pixel index of the first pixel.
+         * @param step   the distance between pixels of the scanline.
+         */
+        void convertRow(@Nonnull final byte[] raw, final int line, final int count, @Nonnull final int[] pixels, int index, final int step) {
+            switch (colorType) {
+                case 0:
+                    if (bitDepth == 16) {
+                        for (int i = 0, p = line; i < count; i++, p += 2, index += step) {
+                            final int sample = (raw[p] & 0xFF) << 8 | (raw[p + 1] & 0xFF);
+                            pixels[index] = gray(sample == transparentGray ? 0 : 0xFF, scale16(sample));
+                        }
+                    } else {
+                        final int mask = (1 << bitDepth) - 1;
+                        final int scale = 255 / mask;
+                        for (int i = 0; i < count; i++, index += step) {
+                            final int sample = unpack(raw, line, i, mask);
+                            pixels[index] = gray(sample == transparentGray ? 0 : 0xFF, sample * scale);
+                        }
+                    }
+                    break;
+                case 2:
+                    if (bitDepth == 16) {
+                        for (int i = 0, p = line; i < count; i++, p += 6, index += step) {
+                            final long sample = ((long) ((raw[p] & 0xFF) << 8 | (raw[p + 1] & 0xFF)) << 32)
+                                    | (long) ((raw[p + 2] & 0xFF) << 8 | (raw[p + 3] & 0xFF)) << 16
+                                    | ((raw[p + 4] & 0xFF) << 8 | (raw[p + 5] & 0xFF));
+                            pixels[index] = (sample == transparentRgb ? 0 : 0xFF000000) | sample16(raw, p) << 16
+                                    | sample16(raw, p + 2) << 8 | sample16(raw, p + 4);
+                        }
+                    } else {
+                        for (int i = 0, p = line; i < count; i++, p += 3, index += step) {
+                            final int rgb = (raw[p] & 0xFF) << 16 | (raw[p + 1] & 0xFF) << 8 | (raw[p + 2] & 0xFF);
+                            pixels[index] = (transparentRgb != -1 && rgbSample8(rgb) == transparentRgb ? 0 : 0xFF000000) | rgb;
+                        }
+                    }
+                    break;
+                case 3:
+                    final int mask = (1 << bitDepth) - 1;
+                    for (int i = 0; i < count; i++, index += step) {
+                        pixels[index] = palette[unpack(raw, line, i, mask)];
+                    }
+                    break;
+                case 4:
+                    if (bitDepth == 16) {
+                        for (int i = 0, p = line; i < count; i++, p += 4, index += step) {
+                            pixels[index] = gray(sample16(raw, p + 2), sample16(raw, p));
+                        }
+                    } else {
+                        for (int i = 0, p = line; i < count; i++, p += 2, index += step) {
+                            pixels[index] = gray(raw[p + 1] & 0xFF, raw[p] & 0xFF);
+                        }
+                    }
+                    break;
+                default:
+                    if (bitDepth == 16) {
+                        for (int i = 0, p = line; i < count; i++, p += 8, index += step) {
+                            pixels[index] = sample16(raw, p + 6) << 24 | sample16(raw, p) << 16 | sample16(raw, p + 2) << 8
+                                    | sample16(raw, p + 4);
+                        }
+                    } else {
+                        for (int i = 0, p = line; i < count; i++, p += 4, index += step) {
+                            pixels[index] = (raw[p + 3] & 0xFF) << 24 | (raw[p] & 0xFF) << 16 | (raw[p + 1] & 0xFF) << 8
+                                    | (raw[p + 2] & 0xFF);
+                        }
+                    }
+                    break;
+            }
+        }
+
+        /**
+         * @param raw   the unfiltered image data.
+         * @param line  the start of the scanline.
+         * @param i     the index of the sample in the scanline.
+         * @param mask  the sample bit mask.
+         * @return the sample of a pixel with less than 8 bits.
+         */
+        private int unpack(@Nonnull final byte[] raw, final int line, final int i, final int mask) {
+            if (bitDepth == 8) {
+                return raw[line + i] & 0xFF;
+            }
+            final int bit = i * bitDepth;
+            return (raw[line + (bit >> 3)] >> (8 - bitDepth - (bit & 7))) & mask;
+        }
+
+        /**
+         * @param raw    the unfiltered image data.
+         * @param offset the offset of the big endian 16 bit sample.
+         * @return the sample scaled to 8 bits.
+         */
+        private static int sample16(@Nonnull final byte[] raw, final int offset) {
+            return scale16((raw[offset] & 0xFF) << 8 | (raw[offset + 1] & 0xFF));
+        }
+
+        /**
+         * @param sample the 16 bit sample.
+         * @return the sample scaled to 8 bits, rounded to the nearest value.
+         */
+        private static int scale16(final int sample) {
+            return (sample * 255 + 32767) / 65535;
+        }
+
+        /**
+         * @param rgb the 8 bit rgb sample.
+         * @return the sample in the layout of {@link #transparentRgb}.
+         */
+        private static long rgbSample8(final int rgb) {
+            return ((long) (rgb >> 16 & 0xFF) << 32) | (rgb >> 8 & 0xFF) << 16 | (rgb & 0xFF);
+        }
+
+        /**
+         * @param alpha the alpha value.
+         * @param value the gray value.
+         * @return the argb pixel.
+         */
+        private static int gray(final int alpha, final int value) {
+            return alpha << 24 | value << 16 | value << 8 | value;
+        }
+    }
+}
@@ -0,0 +1,481 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.image;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes argb pixels as an 8 bit rgba or indexed png. The image is split into bands of rows which are filtered and deflated in
+ * parallel. Every band is primed with the data preceding it and ends on a byte boundary, so the bands are simply
+ * concatenated into a single zlib stream and written as one IDAT chunk each.
+ *
+ * @author Tyler Bucher
+ */
+public class PngEncoder {
+
+    /**
+     * The png file signature.
+     */
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    /**
+     * The approximate amount of filtered bytes per band.
+     */
+    private static final int BAND_SIZE = 1 << 18;
+
+    /**
+     * The amount of history each band is primed with.
+     */
+    private static final int DICTIONARY_SIZE = 1 << 15;
+
+    /**
+     * The deflate compression level.
+     */
+    private final int level;
+
+    /**
+     * The scanline filter strategy.
+     */
+    private final Filter filter;
+
+    /**
+     * The amount of threads used to compress bands.
+     */
+    private final int threads;
+
+    /**
+     * @param level   the deflate compression level.
+     * @param filter  the scanline filter strategy.
+     * @param threads the amount of threads used to compress bands.
+     */
+    public PngEncoder(final int level, @Nonnull final Filter filter, final int threads) {
+        this.level = level;
+        this.filter = filter;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Encodes an image.
+     *
+     * @param pixels       the argb pixels row by row.
+     * @param width        the image width.
+     * @param height       the image height.
+     * @param outputStream the stream to write the png to.
+     * @throws IOException if the png could not be written.
+     */
+    public void encode(@Nonnull final int[] pixels, final int width, final int height, @Nonnull final OutputStream outputStream) throws IOException {
+        encode(PixelSource.of(pixels, width, height), outputStream);
+    }
+
+    /**
+     * Encodes an image which is read one band of rows at a time, so only the bands being compressed are held in
+     * memory.
+     *
+     * @param source       the pixels of the image.
+     * @param outputStream the stream to write the png to.
+     * @throws IOException if the png could not be written.
+     */
+    public void encode(@Nonnull final PixelSource source, @Nonnull final OutputStream outputStream) throws IOException {
+        encode(source, null, outputStream);
+    }
+
+    /**
+     * Encodes an image as an indexed png if a palette is given, one byte per pixel instead of four. Indexed rows are
+     * not filtered, as the png specification recommends for palette images.
+     *
+     * @param source       the pixels of the image.
+     * @param palette      the palette covering every colour of the image or null to write rgba.
+     * @param outputStream the stream to write the png to.
+     * @throws IOException if the png could not be written.
+     */
+    public void encode(@Nonnull final PixelSource source, @Nullable final Palette palette, @Nonnull final OutputStream outputStream)
+            throws IOException {
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        final int rowBytes = width * (palette == null ? 4 : 1) + 1;
+        final int bandRows = Math.max(1, BAND_SIZE / rowBytes);
+        final int dictionaryRows = (DICTIONARY_SIZE + rowBytes - 1) / rowBytes;
+        outputStream.write(SIGNATURE);
+        final byte[] header = new byte[13];
+        writeInt(header, 0, width);
+        writeInt(header, 4, height);
+        header[8] = 8;
+        header[9] = (byte) (palette == null ? 6 : 3);
+        writeChunk(outputStream, 0x49484452, header, header.length);
+        if (palette != null) {
+            writePalette(outputStream, palette);
+        }
+        // The zlib header, the level bits only serve as a hint
+        final int levelBits = level == Deflater.DEFAULT_COMPRESSION ? 2 : level < 2 ? 0 : level < 6 ? 1 : level == 6 ? 2 : 3;
+        final int cmf = 0x78;
+        final int flg = (levelBits << 6) + 31 - ((cmf << 8) + (levelBits << 6)) % 31;
+        writeChunk(outputStream, 0x49444154, new byte[]{(byte) cmf, (byte) flg}, 2);
+        final Adler32 adler32 = new Adler32();
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            final Deque<Future<byte[][]>> pending = new ArrayDeque<>();
+            for (int bandStart = 0; bandStart < height; bandStart += bandRows) {
+                final int start = bandStart;
+                final int end = Math.min(height, bandStart + bandRows);
+                pending.addLast(executorService.submit(()->compressBand(source, palette, start, end, dictionaryRows, end == height)));
+                // Keep the amount of finished bands waiting in memory bounded
+                while (!pending.isEmpty() && (pending.size() > threads * 4 || pending.peekFirst().isDone())) {
+                    writeBand(outputStream, await(pending.pollFirst()), adler32);
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeBand(outputStream, await(pending.pollFirst()), adler32);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        final byte[] checksum = new byte[4];
+        writeInt(checksum, 0, (int) adler32.getValue());
+        writeChunk(outputStream, 0x49444154, checksum, checksum.length);
+        writeChunk(outputStream, 0x49454E44, new byte[0], 0);
+        outputStream.flush();
+    }
+
+    /**
+     * Writes the PLTE chunk of a palette and the tRNS chunk if any entry is translucent.
+     *
+     * @param outputStream the stream to write to.
+     * @param palette      the palette of the image.
+     * @throws IOException if the chunks could not be written.
+     */
+    private static void writePalette(@Nonnull final OutputStream outputStream, @Nonnull final Palette palette) throws IOException {
+        final int[] colours = palette.getColours();
+        final byte[] plte = new byte[colours.length * 3];
+        final byte[] trns = new byte[colours.length];
+        int trnsLength = 0;
+        for (int i = 0; i < colours.length; i++) {
+            plte[i * 3] = (byte) (colours[i] >> 16);
+            plte[i * 3 + 1] = (byte) (colours[i] >> 8);
+            plte[i * 3 + 2] = (byte) colours[i];
+            trns[i] = (byte) (colours[i] >>> 24);
+            if ((colours[i] >>> 24) != 0xFF) {
+                trnsLength = i + 1;
+            }
+        }
+        writeChunk(outputStream, 0x504C5445, plte, plte.length);
+        if (trnsLength > 0) {
+            writeChunk(outputStream, 0x74524E53, trns, trnsLength);
+        }
+    }
+
+    /**
+     * Filters and deflates a band of rows.
+     *
+     * @param source         the pixels of the image.
+     * @param palette        the palette of the image or null for rgba.
+     * @param start          the first row of the band.
+     * @param end            the row after the last row of the band.
+     * @param dictionaryRows the amount of preceding rows used to prime the band.
+     * @param last           states if this is the last band of the image.
+     * @return the filtered band and the raw deflated band.
+     */
+    private byte[][] compressBand(@Nonnull final PixelSource source,
+                                  @Nullable final Palette palette,
+                                  final int start,
+                                  final int end,
+                                  final int dictionaryRows,
+                                  final boolean last) {
+        final int width = source.getWidth();
+        final int rowBytes = width * (palette == null ? 4 : 1) + 1;
+        final int first = Math.max(0, start - dictionaryRows);
+        // Filter the preceding rows again so the band does not depend on the other tasks
+        final byte[] filtered = new byte[(end - first) * rowBytes];
+        final byte[] current = new byte[rowBytes - 1];
+        final byte[] previous = new byte[rowBytes - 1];
+        final byte[] scratch = new byte[rowBytes - 1];
+        // Read the row above the first row as well, so it can be filtered against it
+        final int top = Math.max(0, first - 1);
+        final int[] pixels = new int[(end - top) * width];
+        source.readRows(top, end - top, pixels);
+        if (palette != null) {
+            for (int y = first; y < end; y++) {
+                final int offset = (y - top) * width;
+                final int rowOffset = (y - first) * rowBytes;
+                for (int x = 0; x < width; x++) {
+                    filtered[rowOffset + 1 + x] = (byte) palette.getIndex(pixels[offset + x]);
+                }
+            }
+        } else {
+            if (first > 0) {
+                toRgba(pixels, 0, width, previous);
+            }
+            for (int y = first; y < end; y++) {
+                toRgba(pixels, (y - top) * width, width, current);
+                filterRow(current, y == 0 ? null : previous, filtered, (y - first) * rowBytes, scratch);
+                System.arraycopy(current, 0, previous, 0, current.length);
+            }
+        }
+        final int bandOffset = (start - first) * rowBytes;
+        final Deflater deflater = new Deflater(level, true);
+        try {
+            if (bandOffset > 0) {
+                final int dictionaryStart = Math.max(0, bandOffset - DICTIONARY_SIZE);
+                deflater.setDictionary(filtered, dictionaryStart, bandOffset - dictionaryStart);
+            }
+            deflater.setInput(filtered, bandOffset, filtered.length - bandOffset);
+            final ByteArrayOutputStream bandStream = new ByteArrayOutputStream((filtered.length - bandOffset) / 2 + 64);
+            final byte[] buffer = new byte[65536];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    bandStream.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    bandStream.write(buffer, 0, count);
+                } while (count == buffer.length || !deflater.needsInput());
+            }
+            final byte[] band = new byte[filtered.length - bandOffset];
+            System.arraycopy(filtered, bandOffset, band, 0, band.length);
+            return new byte[][]{band, bandStream.toByteArray()};
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Converts a row of argb pixels into rgba bytes.
+     *
+     * @param pixels the argb pixels.
+     * @param offset the index of the first pixel of the row.
+     * @param width  the amount of pixels in the row.
+     * @param row    the rgba bytes.
+     */
+    private static void toRgba(@Nonnull final int[] pixels, final int offset, final int width, @Nonnull final byte[] row) {
+        for (int x = 0, i = 0; x < width; x++) {
+            final int pixel = pixels[offset + x];
+            row[i++] = (byte) (pixel >> 16);
+            row[i++] = (byte) (pixel >> 8);
+            row[i++] = (byte) pixel;
+            row[i++] = (byte) (pixel >>> 24);
+        }
+    }
+
+    /**
+     * Filters a row with the configured strategy.
+     *
+     * @param current  the rgba bytes of the row.
+     * @param previous the rgba bytes of the row above or null for the first row.
+     * @param out      the filtered image data.
+     * @param offset   the position of the filter type byte in the filtered data.
+     * @param scratch  a row sized buffer used by the adaptive strategy.
+     */
+    private void filterRow(@Nonnull final byte[] current,
+                           final byte[] previous,
+                           @Nonnull final byte[] out,
+                           final int offset,
+                           @Nonnull final byte[] scratch) {
+        if (filter != Filter.ADAPTIVE) {
+            out[offset] = (byte) filter.ordinal();
+            applyFilter(filter.ordinal(), current, previous, out, offset + 1);
+            return;
+        }
+        // Pick the filter with the smallest sum of absolute differences
+        int bestType = 0;
+        long bestSum = Long.MAX_VALUE;
+        for (int type = 0; type < 5; type++) {
+            applyFilter(type, current, previous, scratch, 0);
+            long sum = 0;
+            for (final byte b : scratch) {
+                sum += Math.abs((int) b);
+            }
+            if (sum < bestSum) {
+                bestSum = sum;
+                bestType = type;
+            }
+        }
+        out[offset] = (byte) bestType;
+        applyFilter(bestType, current, previous, out, offset + 1);
+    }
+
+    /**
+     * @param type     the png filter type.
+     * @param current  the rgba bytes of the row.
+     * @param previous the rgba bytes of the row above or null for the first row.
+     * @param out      the array to write the filtered row to.
+     * @param offset   the position to write the filtered row to.
+     */
+    private static void applyFilter(final int type,
+                                    @Nonnull final byte[] current,
+                                    final byte[] previous,
+                                    @Nonnull final byte[] out,
+                                    final int offset) {
+        final int length = current.length;
+        switch (type) {
+            case 0:
+                System.arraycopy(current, 0, out, offset, length);
+                break;
+            case 1:
+                for (int i = 0; i < length; i++) {
+                    out[offset + i] = (byte) (current[i] - (i < 4 ? 0 : current[i - 4]));
+                }
+                break;
+            case 2:
+                for (int i = 0; i < length; i++) {
+                    out[offset + i] = (byte) (current[i] - (previous == null ? 0 : previous[i]));
+                }
+                break;
+            case 3:
+                for (int i = 0; i < length; i++) {
+                    final int left = i < 4 ? 0 : current[i - 4] & 0xFF;
+                    final int up = previous == null ? 0 : previous[i] & 0xFF;
+                    out[offset + i] = (byte) (current[i] - ((left + up) >>> 1));
+                }
+                break;
+            default:
+                for (int i = 0; i < length; i++) {
+                    final int left = i < 4 ? 0 : current[i - 4] & 0xFF;
+                    final int up = previous == null ? 0 : previous[i] & 0xFF;
+                    final int upLeft = i < 4 || previous == null ? 0 : previous[i - 4] & 0xFF;
+                    out[offset + i] = (byte) (current[i] - paeth(left, up, upLeft));
+                }
+                break;
+        }
+    }
+
+    /**
+     * @param a the left byte.
+     * @param b the upper byte.
+     * @param c the upper left byte.
+     * @return the paeth predictor.
+     */
+    private static int paeth(final int a, final int b, final int c) {
+        final int p = a + b - c;
+        final int pa = Math.abs(p - a);
+        final int pb = Math.abs(p - b);
+        final int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    /**
+     * Writes a compressed band as an IDAT chunk.
+     *
+     * @param outputStream the stream to write to.
+     * @param band         the filtered band and the raw deflated band.
+     * @param adler32      the checksum of the filtered image data.
+     * @throws IOException if the chunk could not be written.
+     */
+    private static void writeBand(@Nonnull final OutputStream outputStream, @Nonnull final byte[][] band, @Nonnull final Adler32 adler32) throws IOException {
+        adler32.update(band[0]);
+        if (band[1].length > 0) {
+            writeChunk(outputStream, 0x49444154, band[1], band[1].length);
+        }
+    }
+
+    /**
+     * @param future the task to wait for.
+     * @return the compressed band.
+     *
+     * @throws IOException if the band could not be compressed or the thread was interrupted.
+     */
+    private static byte[][] await(@Nonnull final Future<byte[][]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Png encoding was interrupted.");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * @param outputStream the stream to write to.
+     * @param type         the chunk type.
+     * @param data         the chunk data.
+     * @param length       the length of the chunk data.
+     * @throws IOException if the chunk could not be written.
+     */
+    private static void writeChunk(@Nonnull final OutputStream outputStream, final int type, @Nonnull final byte[] data, final int length) throws IOException {
+        final byte[] header = new byte[8];
+        writeInt(header, 0, length);
+        writeInt(header, 4, type);
+        outputStream.write(header);
+        outputStream.write(data, 0, length);
+        final CRC32 crc32 = new CRC32();
+        crc32.update(header, 4, 4);
+        crc32.update(data, 0, length);
+        final byte[] crc = new byte[4];
+        writeInt(crc, 0, (int) crc32.getValue());
+        outputStream.write(crc);
+    }
+
+    /**
+     * @param data   the byte array.
+     * @param offset the start of the big endian int.
+     * @param value  the int value.
+     */
+    private static void writeInt(@Nonnull final byte[] data, final int offset, final int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+
+    /**
+     * The scanline filter strategies, in png filter type order.
+     *
+     * @author Tyler Bucher
+     */
+    public enum Filter {
+        NONE, SUB, UP, AVERAGE, PAETH,
+        /**
+         * Picks the filter with the smallest sum of absolute differences for every row.
+         */
+        ADAPTIVE;
+
+        /**
+         * @param name the case insensitive name of the strategy.
+         * @return the strategy.
+         */
+        public static Filter fromName(@Nonnull final String name) {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+}
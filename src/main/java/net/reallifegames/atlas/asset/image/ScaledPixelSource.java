@@ -0,0 +1,80 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.image;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Enlarges an image by a whole factor with nearest neighbour sampling, which keeps the hard edges of pixel art. Rows are
+ * scaled as they are read, so the enlarged image is never held in memory.
+ *
+ * @author Tyler Bucher
+ */
+public class ScaledPixelSource implements PixelSource {
+
+    /**
+     * The image to enlarge.
+     */
+    private final PixelSource source;
+
+    /**
+     * The amount of times every pixel is repeated along x and y.
+     */
+    private final int factor;
+
+    /**
+     * @param source the image to enlarge.
+     * @param factor the amount of times every pixel is repeated along x and y.
+     */
+    public ScaledPixelSource(@Nonnull final PixelSource source, final int factor) {
+        this.source = source;
+        this.factor = Math.max(1, factor);
+    }
+
+    @Override
+    public int getWidth() {
+        return source.getWidth() * factor;
+    }
+
+    @Override
+    public int getHeight() {
+        return source.getHeight() * factor;
+    }
+
+    @Override
+    public void readRows(final int y, final int count, @Nonnull final int[] out) {
+        final int sourceWidth = source.getWidth();
+        final int width = sourceWidth * factor;
+        final int top = y / factor;
+        final int rows = (y + count - 1) / factor - top + 1;
+        final int[] sourcePixels = new int[rows * sourceWidth];
+        source.readRows(top, rows, sourcePixels);
+        for (int row = 0; row < count; row++) {
+            final int sourceRow = ((y + row) / factor - top) * sourceWidth;
+            for (int x = 0; x < width; x++) {
+                out[row * width + x] = sourcePixels[sourceRow + x / factor];
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.source;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent cache of artefacts derived from input archives. Artefacts are stored in a folder named after the SHA-256
+ * of the archive they were derived from, so unchanged inputs can be reused across runs. The cache is kept under a size
+ * limit by deleting the least recently used artefacts.
+ *
+ * @author Tyler Bucher
+ */
+public class AssetCache {
+
+    /**
+     * Archive path to archive hash map, so an archive is only hashed once per run.
+     */
+    private static final Map<String, String> hashMap = new ConcurrentHashMap<>();
+
+    /**
+     * The root folder of the cache.
+     */
+    private final File directory;
+
+    /**
+     * The maximum size of all cached artefacts in bytes.
+     */
+    private final long maxBytes;
+
+    /**
+     * @param directory the root folder of the cache.
+     * @param maxBytes  the maximum size of all cached artefacts in bytes.
+     */
+    public AssetCache(@Nonnull final File directory, final long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Computes the SHA-256 of a file.
+     *
+     * @param file the file to hash.
+     * @return the lower case hex digest.
+     *
+     * @throws IOException if the file could not be read.
+     */
+    public static String hash(@Nonnull final File file) throws IOException {
+        final String path = file.getCanonicalPath();
+        final String cachedHash = hashMap.get(path);
+        if (cachedHash != null) {
+            return cachedHash;
+        }
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        final StringBuilder builder = new StringBuilder(64);
+        for (final byte b : digest.digest()) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        final String hash = builder.toString();
+        hashMap.put(path, hash);
+        return hash;
+    }
+
+    /**
+     * Looks up a cached artefact and marks it as recently used.
+     *
+     * @param key  the hash of the input the artefact was derived from.
+     * @param name the name of the artefact.
+     * @return the cached artefact file or null if it is not cached.
+     */
+    @Nullable
+    public File get(@Nonnull final String key, @Nonnull final String name) {
+        final File file = new File(new File(directory, key), name);
+        if (!file.isFile()) {
+            return null;
+        }
+        if (!file.setLastModified(System.currentTimeMillis())) {
+            System.out.println("Unable to touch cache entry.");
+        }
+        return file;
+    }
+
+    /**
+     * Stores an artefact and evicts old artefacts if the cache grew past its size limit.
+     *
+     * @param key    the hash of the input the artefact was derived from.
+     * @param name   the name of the artefact.
+     * @param writer writes the artefact contents.
+     * @throws IOException if the artefact could not be written.
+     */
+    public void put(@Nonnull final String key, @Nonnull final String name, @Nonnull final Writer writer) throws IOException {
+        final File keyDirectory = new File(directory, key);
+        Files.createDirectories(keyDirectory.toPath());
+        // Write to a temporary file first so other runs never see a partial artefact
+        final File temp = File.createTempFile(name, ".tmp", keyDirectory);
+        try {
+            try (final OutputStream outputStream = Files.newOutputStream(temp.toPath())) {
+                writer.write(outputStream);
+            }
+            Files.move(temp.toPath(), new File(keyDirectory, name).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+        evict();
+    }
+
+    /**
+     * Deletes the least recently used artefacts until the cache fits into its size limit.
+     */
+    public void evict() {
+        final File[] keyDirectories = directory.listFiles(File::isDirectory);
+        if (keyDirectories == null) {
+            return;
+        }
+        final List<File> artefacts = new ArrayList<>();
+        long totalBytes = 0;
+        for (final File keyDirectory : keyDirectories) {
+            final File[] files = keyDirectory.listFiles(File::isFile);
+            if (files != null) {
+                for (final File file : files) {
+                    artefacts.add(file);
+                    totalBytes += file.length();
+                }
+            }
+        }
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+        artefacts.sort(Comparator.comparingLong(File::lastModified));
+        for (final File file : artefacts) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            final long length = file.length();
+            if (file.delete()) {
+                totalBytes -= length;
+                // Remove the key folder once its last artefact is gone
+                final String[] remaining = file.getParentFile().list();
+                if (remaining != null && remaining.length == 0 && !file.getParentFile().delete()) {
+                    System.out.println("Unable to delete dir.");
+                }
+            } else {
+                System.out.println("Unable to delete file.");
+            }
+        }
+    }
+
+    /**
+     * Writes the contents of a cached artefact.
+     *
+     * @author Tyler Bucher
+     */
+    public interface Writer {
+
+        /**
+         * @param outputStream the stream to write the artefact to.
+         * @throws IOException if the artefact could not be written.
+         */
+        void write(@Nonnull final OutputStream outputStream) throws IOException;
+    }
+}
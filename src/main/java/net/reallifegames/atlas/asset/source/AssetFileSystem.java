@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.source;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * A read only, layered view of the game assets. The Minecraft.jar is mounted first and resource packs are mounted on top
+ * of it in priority order. A lookup returns the file from the top-most source that contains it, so any combination of
+ * packs can be read without copying or extracting anything.
+ *
+ * @author Tyler Bucher
+ */
+public class AssetFileSystem implements Closeable {
+
+    /**
+     * Only entries under this prefix are indexed.
+     */
+    public static final String ASSETS_PREFIX = "assets";
+
+    /**
+     * The mounted sources, lowest priority first.
+     */
+    private final List<AssetSource> sources = new ArrayList<>();
+
+    /**
+     * Mounts a zip file or resource pack folder on top of the already mounted sources.
+     *
+     * @param path the path to the zip file or folder.
+     * @throws IOException if the source could not be indexed.
+     */
+    public void mount(@Nonnull final String path) throws IOException {
+        final File file = new File(path);
+        if (file.isDirectory()) {
+            push(new DirectoryAssetSource(file));
+        } else {
+            push(new ZipAssetSource(path, ASSETS_PREFIX));
+        }
+    }
+
+    /**
+     * Mounts a source on top of the already mounted sources.
+     *
+     * @param source the source to mount.
+     */
+    public void push(@Nonnull final AssetSource source) {
+        sources.add(source);
+    }
+
+    /**
+     * @return the mounted sources, lowest priority first.
+     */
+    public List<AssetSource> getSources() {
+        return Collections.unmodifiableList(sources);
+    }
+
+    /**
+     * @param path the full path of a file.
+     * @return the top-most source containing the file or null if no source contains it.
+     */
+    @Nullable
+    public AssetSource getSource(@Nonnull final String path) {
+        for (int i = sources.size() - 1; i >= 0; i--) {
+            if (sources.get(i).exists(path)) {
+                return sources.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param path the full path of a file.
+     * @return true if a mounted source contains the file.
+     */
+    public boolean exists(@Nonnull final String path) {
+        return getSource(path) != null;
+    }
+
+    /**
+     * Reads a file from the top-most source containing it.
+     *
+     * @param path the full path of a file.
+     * @return the file contents.
+     *
+     * @throws IOException if the file does not exist or could not be read.
+     */
+    public byte[] read(@Nonnull final String path) throws IOException {
+        final AssetSource source = getSource(path);
+        if (source == null) {
+            throw new FileNotFoundException(path);
+        }
+        return source.read(path);
+    }
+
+    /**
+     * Lists the files directly inside a directory of any mounted source.
+     *
+     * @param directory the full path of the directory without a trailing separator.
+     * @return the sorted file names, empty if the directory does not exist.
+     */
+    public List<String> list(@Nonnull final String directory) {
+        final SortedSet<String> names = new TreeSet<>();
+        for (final AssetSource source : sources) {
+            names.addAll(source.list(directory));
+        }
+        return new ArrayList<>(names);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (final AssetSource source : sources) {
+            source.close();
+        }
+        sources.clear();
+    }
+}
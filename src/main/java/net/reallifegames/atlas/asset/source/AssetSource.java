@@ -0,0 +1,66 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.source;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * A read only provider of game assets such as the Minecraft.jar or a resource pack.
+ *
+ * @author Tyler Bucher
+ */
+public interface AssetSource extends Closeable {
+
+    /**
+     * @return the name of the source, usually its path.
+     */
+    String getName();
+
+    /**
+     * @param path the full path of a file.
+     * @return true if this source contains the file.
+     */
+    boolean exists(@Nonnull final String path);
+
+    /**
+     * Reads a file from this source.
+     *
+     * @param path the full path of a file.
+     * @return the file contents.
+     *
+     * @throws IOException if the file does not exist or could not be read.
+     */
+    byte[] read(@Nonnull final String path) throws IOException;
+
+    /**
+     * Lists the files directly inside a directory.
+     *
+     * @param directory the full path of the directory without a trailing separator.
+     * @return the file names, empty if the directory does not exist.
+     */
+    Collection<String> list(@Nonnull final String directory);
+}
@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.source;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An {@link AssetSource} backed by an unpacked resource pack folder.
+ *
+ * @author Tyler Bucher
+ */
+public class DirectoryAssetSource implements AssetSource {
+
+    /**
+     * The root folder of the resource pack.
+     */
+    private final File root;
+
+    /**
+     * @param root the root folder of the resource pack.
+     */
+    public DirectoryAssetSource(@Nonnull final File root) {
+        this.root = root;
+    }
+
+    @Override
+    public String getName() {
+        return root.getPath();
+    }
+
+    @Override
+    public boolean exists(@Nonnull final String path) {
+        return new File(root, path).isFile();
+    }
+
+    @Override
+    public byte[] read(@Nonnull final String path) throws IOException {
+        final File file = new File(root, path);
+        if (!file.isFile()) {
+            throw new FileNotFoundException(path + " in " + root);
+        }
+        return Files.readAllBytes(file.toPath());
+    }
+
+    @Override
+    public Collection<String> list(@Nonnull final String directory) {
+        final File[] fileList = new File(root, directory).listFiles();
+        if (fileList == null) {
+            return Collections.emptyList();
+        }
+        final List<String> names = new ArrayList<>(fileList.length);
+        for (final File file : fileList) {
+            if (file.isFile()) {
+                names.add(file.getName());
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.source;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An {@link AssetSource} backed by the indexed central directory of a zip file.
+ *
+ * @author Tyler Bucher
+ */
+public class ZipAssetSource implements AssetSource {
+
+    /**
+     * The indexed archive.
+     */
+    private final ZipIndex zipIndex;
+
+    /**
+     * Directory path to the names of the files directly inside of it.
+     */
+    private final Map<String, Set<String>> directoryMap = new HashMap<>();
+
+    /**
+     * Indexes the entries of an archive which start with the given prefix.
+     *
+     * @param archivePath the path to the zip file.
+     * @param prefix      only entries starting with this prefix are indexed.
+     * @throws IOException if the archive could not be indexed.
+     */
+    public ZipAssetSource(@Nonnull final String archivePath, @Nonnull final String prefix) throws IOException {
+        zipIndex = new ZipIndex(archivePath, prefix);
+        for (final ZipIndex.Entry entry : zipIndex.getEntries()) {
+            final int separator = entry.name.lastIndexOf('/');
+            final String directory = separator == -1 ? "" : entry.name.substring(0, separator);
+            directoryMap.computeIfAbsent(directory, k->new HashSet<>()).add(entry.name.substring(separator + 1));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return zipIndex.getPath();
+    }
+
+    @Override
+    public boolean exists(@Nonnull final String path) {
+        return zipIndex.getEntry(path) != null;
+    }
+
+    @Override
+    public byte[] read(@Nonnull final String path) throws IOException {
+        return zipIndex.read(path);
+    }
+
+    @Override
+    public Collection<String> list(@Nonnull final String directory) {
+        final Set<String> names = directoryMap.get(directory);
+        return names == null ? Collections.emptySet() : Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * @return the indexed archive.
+     */
+    public ZipIndex getZipIndex() {
+        return zipIndex;
+    }
+
+    @Override
+    public void close() throws IOException {
+        zipIndex.close();
+    }
+}
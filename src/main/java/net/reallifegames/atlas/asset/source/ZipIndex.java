@@ -0,0 +1,452 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.source;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * An in-memory index of a zip file's central directory. Entries are read straight from the archive through positional
+ * {@link FileChannel} reads so nothing has to be extracted to disk, and several threads may read at the same time.
+ *
+ * @author Tyler Bucher
+ */
+public class ZipIndex implements Closeable {
+
+    /**
+     * End of central directory record signature.
+     */
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+
+    /**
+     * Zip64 end of central directory locator signature.
+     */
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+    /**
+     * Zip64 end of central directory record signature.
+     */
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+
+    /**
+     * Central directory file header signature.
+     */
+    private static final int CEN_SIGNATURE = 0x02014b50;
+
+    /**
+     * Local file header signature.
+     */
+    private static final int LOC_SIGNATURE = 0x04034b50;
+
+    /**
+     * Size of the fixed part of the end of central directory record.
+     */
+    private static final int EOCD_SIZE = 22;
+
+    /**
+     * Size of the fixed part of a local file header.
+     */
+    private static final int LOC_SIZE = 30;
+
+    /**
+     * Size of the fixed part of a central directory file header.
+     */
+    private static final int CEN_SIZE = 46;
+
+    /**
+     * The path of the indexed archive.
+     */
+    private final String path;
+
+    /**
+     * The channel used to read the archive.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Entry name to entry information map.
+     */
+    private final Map<String, Entry> entries;
+
+    /**
+     * Indexes every entry in the archive.
+     *
+     * @param path the path to the zip file.
+     * @throws IOException if the archive could not be read or is not a zip file.
+     */
+    public ZipIndex(@Nonnull final String path) throws IOException {
+        this(path, "");
+    }
+
+    /**
+     * Indexes the entries in the archive which start with the given prefix.
+     *
+     * @param path   the path to the zip file.
+     * @param prefix only entries starting with this prefix are indexed.
+     * @throws IOException if the archive could not be read or is not a zip file.
+     */
+    public ZipIndex(@Nonnull final String path, @Nonnull final String prefix) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        try {
+            this.entries = readCentralDirectory(prefix);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Locates and parses the central directory.
+     *
+     * @param prefix only entries starting with this prefix are indexed.
+     * @return the entry map.
+     *
+     * @throws IOException if the central directory could not be read.
+     */
+    private Map<String, Entry> readCentralDirectory(@Nonnull final String prefix) throws IOException {
+        final long fileSize = channel.size();
+        // The end record is followed by a comment of at most 65535 bytes
+        final int tailSize = (int) Math.min(fileSize, EOCD_SIZE + 0xFFFF);
+        final ByteBuffer tail = read(fileSize - tailSize, tailSize);
+        int eocd = -1;
+        for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIGNATURE) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd == -1) {
+            throw new ZipException("End of central directory not found in " + path);
+        }
+        long entryCount = tail.getShort(eocd + 10) & 0xFFFF;
+        long cenSize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+        long cenOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+        if (entryCount == 0xFFFF || cenSize == 0xFFFFFFFFL || cenOffset == 0xFFFFFFFFL) {
+            final long eocdPosition = fileSize - tailSize + eocd;
+            final ByteBuffer locator = read(eocdPosition - 20, 20);
+            if (locator.getInt(0) != ZIP64_LOCATOR_SIGNATURE) {
+                throw new ZipException("Zip64 locator not found in " + path);
+            }
+            final ByteBuffer zip64 = read(locator.getLong(8), 56);
+            if (zip64.getInt(0) != ZIP64_EOCD_SIGNATURE) {
+                throw new ZipException("Zip64 end of central directory not found in " + path);
+            }
+            entryCount = zip64.getLong(32);
+            cenSize = zip64.getLong(40);
+            cenOffset = zip64.getLong(48);
+        }
+        if (cenSize > Integer.MAX_VALUE) {
+            throw new ZipException("Central directory too large in " + path);
+        }
+        final ByteBuffer cen = read(cenOffset, (int) cenSize);
+        final Map<String, Entry> entryMap = new HashMap<>((int) Math.min(entryCount * 2, Integer.MAX_VALUE));
+        int position = 0;
+        for (long i = 0; i < entryCount; i++) {
+            if (cen.getInt(position) != CEN_SIGNATURE) {
+                throw new ZipException("Invalid central directory header in " + path);
+            }
+            final int flags = cen.getShort(position + 8) & 0xFFFF;
+            final int method = cen.getShort(position + 10) & 0xFFFF;
+            final int crc = cen.getInt(position + 16);
+            long compressedSize = cen.getInt(position + 20) & 0xFFFFFFFFL;
+            long size = cen.getInt(position + 24) & 0xFFFFFFFFL;
+            final int nameLength = cen.getShort(position + 28) & 0xFFFF;
+            final int extraLength = cen.getShort(position + 30) & 0xFFFF;
+            final int commentLength = cen.getShort(position + 32) & 0xFFFF;
+            long localOffset = cen.getInt(position + 42) & 0xFFFFFFFFL;
+            final Charset charset = (flags & 0x800) != 0 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
+            final byte[] nameBytes = new byte[nameLength];
+            cen.position(position + CEN_SIZE);
+            cen.get(nameBytes);
+            final String name = new String(nameBytes, charset);
+            // Resolve zip64 sizes and offsets from the extended information extra field
+            if (size == 0xFFFFFFFFL || compressedSize == 0xFFFFFFFFL || localOffset == 0xFFFFFFFFL) {
+                int extra = position + CEN_SIZE + nameLength;
+                final int extraEnd = extra + extraLength;
+                while (extra + 4 <= extraEnd) {
+                    final int tag = cen.getShort(extra) & 0xFFFF;
+                    final int tagSize = cen.getShort(extra + 2) & 0xFFFF;
+                    if (tag == 0x0001) {
+                        int field = extra + 4;
+                        if (size == 0xFFFFFFFFL) {
+                            size = cen.getLong(field);
+                            field += 8;
+                        }
+                        if (compressedSize == 0xFFFFFFFFL) {
+                            compressedSize = cen.getLong(field);
+                            field += 8;
+                        }
+                        if (localOffset == 0xFFFFFFFFL) {
+                            localOffset = cen.getLong(field);
+                        }
+                        break;
+                    }
+                    extra += 4 + tagSize;
+                }
+            }
+            position += CEN_SIZE + nameLength + extraLength + commentLength;
+            // Skip directories and encrypted entries
+            if (!name.startsWith(prefix) || name.endsWith("/") || (flags & 0x1) != 0) {
+                continue;
+            }
+            entryMap.put(name, new Entry(name, method, crc, compressedSize, size, localOffset));
+        }
+        return entryMap;
+    }
+
+    /**
+     * Reads a section of the archive.
+     *
+     * @param position the position in the archive to start reading from.
+     * @param length   the amount of bytes to read.
+     * @return a little endian buffer with the read bytes.
+     *
+     * @throws IOException if the section could not be read.
+     */
+    private ByteBuffer read(final long position, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of " + path);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @param name the full name of the entry.
+     * @return the entry or null if the archive does not contain it.
+     */
+    @Nullable
+    public Entry getEntry(@Nonnull final String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * @return all indexed entries.
+     */
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * Reads and inflates an entry.
+     *
+     * @param name the full name of the entry.
+     * @return the uncompressed entry data.
+     *
+     * @throws IOException if the entry does not exist or could not be read.
+     */
+    public byte[] read(@Nonnull final String name) throws IOException {
+        final Entry entry = entries.get(name);
+        if (entry == null) {
+            throw new FileNotFoundException(name + " in " + path);
+        }
+        return read(entry);
+    }
+
+    /**
+     * Reads and inflates an entry.
+     *
+     * @param entry the entry to read.
+     * @return the uncompressed entry data.
+     *
+     * @throws IOException if the entry could not be read.
+     */
+    public byte[] read(@Nonnull final Entry entry) throws IOException {
+        if (entry.size > Integer.MAX_VALUE || entry.compressedSize > Integer.MAX_VALUE) {
+            throw new ZipException("Entry too large: " + entry.name);
+        }
+        final ByteBuffer data = read(getDataOffset(entry), (int) entry.compressedSize);
+        if (entry.method == 0) {
+            if (entry.compressedSize != entry.size) {
+                throw new ZipException("Stored entry " + entry.name + " has differing sizes.");
+            }
+            return checkCrc(entry, data.array());
+        } else if (entry.method != 8) {
+            throw new ZipException("Unsupported compression method " + entry.method + " for " + entry.name);
+        }
+        final byte[] output = new byte[(int) entry.size];
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data.array(), 0, data.limit());
+            int offset = 0;
+            while (offset < output.length) {
+                final int count = inflater.inflate(output, offset, output.length - offset);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += count;
+            }
+            if (offset != output.length) {
+                throw new ZipException("Truncated entry: " + entry.name);
+            }
+            if (!inflater.finished() && inflater.inflate(new byte[1]) > 0) {
+                throw new ZipException("Entry " + entry.name + " inflates to more than its size of " + entry.size + " bytes.");
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupt entry " + entry.name + ": " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        return checkCrc(entry, output);
+    }
+
+    /**
+     * Verifies the uncompressed data of an entry against the crc of its central directory header.
+     *
+     * @param entry the read entry.
+     * @param data  the uncompressed entry data.
+     * @return the data.
+     *
+     * @throws ZipException if the crc does not match.
+     */
+    private byte[] checkCrc(@Nonnull final Entry entry, @Nonnull final byte[] data) throws ZipException {
+        final CRC32 crc32 = new CRC32();
+        crc32.update(data, 0, data.length);
+        if ((int) crc32.getValue() != entry.crc) {
+            throw new ZipException("Crc mismatch for " + entry.name + " in " + path + ".");
+        }
+        return data;
+    }
+
+    /**
+     * Resolves the start of an entry's data from its local file header.
+     *
+     * @param entry the entry to resolve.
+     * @return the offset of the entry data in the archive.
+     *
+     * @throws IOException if the local header could not be read.
+     */
+    private long getDataOffset(@Nonnull final Entry entry) throws IOException {
+        long dataOffset = entry.dataOffset;
+        if (dataOffset == -1) {
+            final ByteBuffer header = read(entry.localHeaderOffset, LOC_SIZE);
+            if (header.getInt(0) != LOC_SIGNATURE) {
+                throw new ZipException("Invalid local header for " + entry.name);
+            }
+            dataOffset = entry.localHeaderOffset + LOC_SIZE + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+            entry.dataOffset = dataOffset;
+        }
+        return dataOffset;
+    }
+
+    /**
+     * @return the path of the indexed archive.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Central directory information about a single zip entry.
+     *
+     * @author Tyler Bucher
+     */
+    public static class Entry {
+
+        /**
+         * The full name of the entry.
+         */
+        public final String name;
+
+        /**
+         * The compression method, 0 for stored and 8 for deflated.
+         */
+        public final int method;
+
+        /**
+         * The crc-32 of the uncompressed data.
+         */
+        public final int crc;
+
+        /**
+         * The size of the compressed data.
+         */
+        public final long compressedSize;
+
+        /**
+         * The size of the uncompressed data.
+         */
+        public final long size;
+
+        /**
+         * The offset of the local file header in the archive.
+         */
+        public final long localHeaderOffset;
+
+        /**
+         * The offset of the entry data in the archive or -1 if not yet resolved.
+         */
+        private volatile long dataOffset = -1;
+
+        /**
+         * @param name              the full name of the entry.
+         * @param method            the compression method.
+         * @param crc               the crc-32 of the uncompressed data.
+         * @param compressedSize    the size of the compressed data.
+         * @param size              the size of the uncompressed data.
+         * @param localHeaderOffset the offset of the local file header in the archive.
+         */
+        Entry(@Nonnull final String name,
+              final int method,
+              final int crc,
+              final long compressedSize,
+              final long size,
+              final long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+    }
+}
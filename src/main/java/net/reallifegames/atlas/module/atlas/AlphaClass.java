@@ -0,0 +1,67 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.module.atlas;
+
+import javax.annotation.Nonnull;
+
+/**
+ * How a texture uses its alpha channel, which decides how a renderer has to draw the faces using it. The ordinal is
+ * the value exported per face.
+ *
+ * @author Tyler Bucher
+ */
+public enum AlphaClass {
+    /**
+     * Every pixel is fully opaque, faces can be drawn without blending or sorting.
+     */
+    OPAQUE,
+    /**
+     * Every pixel is either fully opaque or fully transparent, faces only need an alpha test.
+     */
+    CUTOUT,
+    /**
+     * Some pixels are partially transparent, faces need blending and back to front sorting.
+     */
+    TRANSLUCENT;
+
+    /**
+     * Classifies the pixels of a texture.
+     *
+     * @param pixels the argb pixels row by row.
+     * @param count  the amount of pixels of the texture.
+     * @return the alpha class of the texture.
+     */
+    public static AlphaClass of(@Nonnull final int[] pixels, final int count) {
+        AlphaClass alphaClass = OPAQUE;
+        for (int i = 0; i < count; i++) {
+            final int alpha = pixels[i] >>> 24;
+            if (alpha == 0) {
+                alphaClass = CUTOUT;
+            } else if (alpha != 0xFF) {
+                return TRANSLUCENT;
+            }
+        }
+        return alphaClass;
+    }
+}
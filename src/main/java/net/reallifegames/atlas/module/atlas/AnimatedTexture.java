@@ -0,0 +1,191 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.module.atlas;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.annotation.Nonnull;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An animated block texture. The frames are kept as a vertical strip together with the frame order and timing of its
+ * {@code .mcmeta} file.
+ *
+ * @author Tyler Bucher
+ */
+public class AnimatedTexture {
+
+    /**
+     * The id of the texture.
+     */
+    public final String id;
+
+    /**
+     * The width of a frame.
+     */
+    public final int frameWidth;
+
+    /**
+     * The height of a frame.
+     */
+    public final int frameHeight;
+
+    /**
+     * The amount of frames in the strip.
+     */
+    public final int frameCount;
+
+    /**
+     * The frame sequence as strip frame index and duration in ticks pairs.
+     */
+    public final int[] sequence;
+
+    /**
+     * States if the client should blend between frames.
+     */
+    public final boolean interpolate;
+
+    /**
+     * The argb pixels of the frames, top to bottom.
+     */
+    private final int[] strip;
+
+    /**
+     * @param id          the id of the texture.
+     * @param frameWidth  the width of a frame.
+     * @param frameHeight the height of a frame.
+     * @param frameCount  the amount of frames in the strip.
+     * @param sequence    the frame sequence as strip frame index and duration in ticks pairs.
+     * @param interpolate states if the client should blend between frames.
+     * @param strip       the argb pixels of the frames, top to bottom.
+     */
+    private AnimatedTexture(@Nonnull final String id,
+                            final int frameWidth,
+                            final int frameHeight,
+                            final int frameCount,
+                            @Nonnull final int[] sequence,
+                            final boolean interpolate,
+                            @Nonnull final int[] strip) {
+        this.id = id;
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        this.frameCount = frameCount;
+        this.sequence = sequence;
+        this.interpolate = interpolate;
+        this.strip = strip;
+    }
+
+    /**
+     * Parses the animation of a texture.
+     *
+     * @param id     the id of the texture.
+     * @param image  the texture image holding every frame.
+     * @param mcmeta the contents of the {@code .mcmeta} file.
+     * @return the animated texture.
+     *
+     * @throws IOException if the {@code .mcmeta} file is not valid.
+     */
+    public static AnimatedTexture parse(@Nonnull final String id, @Nonnull final BufferedImage image, @Nonnull final byte[] mcmeta)
+            throws IOException {
+        final JsonNode animationNode = new ObjectMapper().readTree(mcmeta).path("animation");
+        final int frameWidth = animationNode.path("width").asInt(image.getWidth());
+        final int frameHeight = animationNode.path("height").asInt(frameWidth);
+        if (frameWidth <= 0 || frameHeight <= 0 || frameWidth > image.getWidth() || frameHeight > image.getHeight()) {
+            throw new IOException("Invalid animation frame size " + frameWidth + "x" + frameHeight + " for " + id + ".");
+        }
+        // Frames are read row by row, left to right
+        final int columns = image.getWidth() / frameWidth;
+        final int frameCount = columns * (image.getHeight() / frameHeight);
+        final int[] strip = new int[frameWidth * frameHeight * frameCount];
+        for (int i = 0; i < frameCount; i++) {
+            image.getRGB((i % columns) * frameWidth, (i / columns) * frameHeight, frameWidth, frameHeight, strip,
+                    i * frameWidth * frameHeight, frameWidth);
+        }
+        final int frameTime = Math.max(1, animationNode.path("frametime").asInt(1));
+        final List<Integer> sequence = new ArrayList<>();
+        final JsonNode framesNode = animationNode.path("frames");
+        if (framesNode.isArray() && framesNode.size() > 0) {
+            for (final JsonNode frameNode : framesNode) {
+                final int index = frameNode.isObject() ? frameNode.path("index").asInt(-1) : frameNode.asInt(-1);
+                if (index < 0 || index >= frameCount) {
+                    System.out.println("Ignoring missing animation frame " + index + " of " + id + ".");
+                    continue;
+                }
+                sequence.add(index);
+                sequence.add(frameNode.isObject() ? Math.max(1, frameNode.path("time").asInt(frameTime)) : frameTime);
+            }
+        }
+        if (sequence.isEmpty()) {
+            for (int i = 0; i < frameCount; i++) {
+                sequence.add(i);
+                sequence.add(frameTime);
+            }
+        }
+        final int[] sequenceArray = new int[sequence.size()];
+        for (int i = 0; i < sequenceArray.length; i++) {
+            sequenceArray[i] = sequence.get(i);
+        }
+        return new AnimatedTexture(id, frameWidth, frameHeight, frameCount, sequenceArray,
+                animationNode.path("interpolate").asBoolean(false), strip);
+    }
+
+    /**
+     * @return the argb pixels of the frames, top to bottom.
+     */
+    public int[] getStrip() {
+        return strip;
+    }
+
+    /**
+     * @param index the strip index of the frame.
+     * @return the argb pixels of the frame.
+     */
+    public int[] getFrame(final int index) {
+        final int[] frame = new int[frameWidth * frameHeight];
+        System.arraycopy(strip, index * frame.length, frame, 0, frame.length);
+        return frame;
+    }
+
+    /**
+     * @return the height of the frame strip.
+     */
+    public int getStripHeight() {
+        return frameHeight * frameCount;
+    }
+
+    /**
+     * @return the length of one animation cycle in ticks.
+     */
+    public int getCycleTicks() {
+        int ticks = 0;
+        for (int i = 1; i < sequence.length; i += 2) {
+            ticks += sequence[i];
+        }
+        return ticks;
+    }
+}
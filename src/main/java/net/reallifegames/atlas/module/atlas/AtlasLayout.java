@@ -0,0 +1,541 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.module.atlas;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.reallifegames.atlas.asset.image.MipmapGenerator;
+import net.reallifegames.atlas.module.atlas.packer.TexturePacker;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where every texture of the atlas is placed. A layout is saved after each run and the next run keeps the placement of
+ * every texture whose size did not change, so only new or resized textures move.
+ *
+ * @author Tyler Bucher
+ */
+public class AtlasLayout {
+
+    /**
+     * The side length of every page.
+     */
+    private final int pageSize;
+
+    /**
+     * The width of the border kept free around every texture.
+     */
+    private final int gutter;
+
+    /**
+     * Every packed rectangle, the texture and its gutter, is a multiple of this size.
+     */
+    private final int alignment;
+
+    /**
+     * The amount of pages.
+     */
+    private int pageCount;
+
+    /**
+     * Texture id to placement, in packing order.
+     */
+    private final Map<String, Entry> entryMap = new LinkedHashMap<>();
+
+    /**
+     * Duplicate texture id to the id of the placed texture with the same pixels.
+     */
+    private final Map<String, String> aliasMap = new LinkedHashMap<>();
+
+    /**
+     * Texture id to the left and top trimmed off and the untrimmed width and height, for textures whose transparent
+     * border was trimmed.
+     */
+    private final Map<String, int[]> trimMap = new HashMap<>();
+
+    /**
+     * The textures which are larger than a page.
+     */
+    private final List<Entry> skipped = new ArrayList<>();
+
+    /**
+     * The amount of placements kept from the previous layout.
+     */
+    private int reusedCount;
+
+    /**
+     * @param pageSize  the side length of every page.
+     * @param gutter    the width of the border kept free around every texture.
+     * @param alignment every packed rectangle, the texture and its gutter, is a multiple of this size.
+     */
+    private AtlasLayout(final int pageSize, final int gutter, final int alignment) {
+        this.pageSize = pageSize;
+        this.gutter = gutter;
+        this.alignment = Math.max(1, alignment);
+    }
+
+    /**
+     * Lays out textures, keeping the placements of a previous layout where possible.
+     *
+     * @param textures    the textures to place, largest first. Their page and position are ignored.
+     * @param minPageSize the smallest page size a new layout starts from.
+     * @param maxPageSize the largest page size.
+     * @param strategy    the packing strategy.
+     * @param gutter      the width of the border kept free around every texture.
+     * @param alignment   every packed rectangle, the texture and its gutter, is a multiple of this size. Packing only
+     *                    multiples of a size onto a page which is a multiple of it keeps every rectangle aligned to it.
+     * @param previous    the layout of the previous run or null to pack from scratch.
+     * @return the new layout.
+     */
+    public static AtlasLayout pack(@Nonnull final List<Entry> textures,
+                                   final int minPageSize,
+                                   final int maxPageSize,
+                                   @Nonnull final String strategy,
+                                   final int gutter,
+                                   final int alignment,
+                                   @Nullable final AtlasLayout previous) {
+        if (previous != null && previous.pageSize <= maxPageSize && previous.gutter == gutter &&
+                previous.alignment == Math.max(1, alignment)) {
+            boolean fits = true;
+            for (final Entry texture : textures) {
+                if ((previous.padded(texture.width) > previous.pageSize || previous.padded(texture.height) > previous.pageSize) &&
+                        previous.pageSize < maxPageSize) {
+                    fits = false;
+                    break;
+                }
+            }
+            if (fits) {
+                return packIncremental(textures, strategy, previous);
+            }
+        }
+        // Grow the pages up to the maximum size before spilling to more pages
+        int pageSize = Math.min(minPageSize, maxPageSize);
+        while (true) {
+            final AtlasLayout layout = new AtlasLayout(pageSize, gutter, alignment);
+            layout.place(textures, new ArrayList<>(), strategy);
+            if ((layout.pageCount <= 1 && layout.skipped.isEmpty()) || pageSize >= maxPageSize) {
+                return layout;
+            }
+            pageSize <<= 1;
+        }
+    }
+
+    /**
+     * Keeps the placements of unchanged textures and places the others into the free space. A texture is unchanged when
+     * its size and pixel hash match the previous run.
+     *
+     * @param textures the textures to place, largest first.
+     * @param strategy the packing strategy.
+     * @param previous the layout of the previous run.
+     * @return the new layout.
+     */
+    private static AtlasLayout packIncremental(@Nonnull final List<Entry> textures,
+                                               @Nonnull final String strategy,
+                                               @Nonnull final AtlasLayout previous) {
+        final AtlasLayout layout = new AtlasLayout(previous.pageSize, previous.gutter, previous.alignment);
+        final int gutter = layout.gutter;
+        final List<TexturePacker> packers = new ArrayList<>();
+        final List<Entry> remaining = new ArrayList<>();
+        for (final Entry texture : textures) {
+            final Entry old = previous.entryMap.get(texture.id);
+            if (old != null && old.hash.equals(texture.hash) && old.width == texture.width && old.height == texture.height &&
+                    old.page >= 0 && old.x >= gutter && old.y >= gutter && old.x - gutter + layout.padded(old.width) <= layout.pageSize &&
+                    old.y - gutter + layout.padded(old.height) <= layout.pageSize) {
+                while (packers.size() <= old.page) {
+                    packers.add(TexturePacker.create(strategy, layout.pageSize, layout.pageSize));
+                }
+                packers.get(old.page).reserve(old.x - gutter, old.y - gutter, layout.padded(old.width), layout.padded(old.height));
+                layout.entryMap.put(texture.id, new Entry(texture.id, texture.hash, old.page, old.x, old.y, old.width, old.height));
+                layout.reusedCount++;
+            } else {
+                remaining.add(texture);
+            }
+        }
+        layout.place(remaining, packers, strategy);
+        return layout;
+    }
+
+    /**
+     * Places textures first fit onto the pages, adding pages as needed.
+     *
+     * @param textures the textures to place.
+     * @param packers  the packers of the existing pages.
+     * @param strategy the packing strategy.
+     */
+    private void place(@Nonnull final List<Entry> textures, @Nonnull final List<TexturePacker> packers, @Nonnull final String strategy) {
+        for (final Entry texture : textures) {
+            if (padded(texture.width) > pageSize || padded(texture.height) > pageSize) {
+                skipped.add(texture);
+                continue;
+            }
+            Point position = null;
+            int page = 0;
+            while (position == null) {
+                if (page == packers.size()) {
+                    packers.add(TexturePacker.create(strategy, pageSize, pageSize));
+                }
+                position = packers.get(page).pack(padded(texture.width), padded(texture.height));
+                if (position == null) {
+                    page++;
+                }
+            }
+            entryMap.put(texture.id, new Entry(texture.id, texture.hash, page, position.x + gutter, position.y + gutter,
+                    texture.width, texture.height));
+        }
+        pageCount = Math.max(1, packers.size());
+    }
+
+    /**
+     * Reads a layout written by {@link #write(OutputStream, List, int, int, Map)}.
+     *
+     * @param file the layout file.
+     * @return the layout.
+     *
+     * @throws IOException if the layout could not be read.
+     */
+    public static AtlasLayout read(@Nonnull final File file) throws IOException {
+        final JsonNode rootNode = new ObjectMapper().readTree(file);
+        final AtlasLayout layout = new AtlasLayout(rootNode.path("pageSize").asInt(), rootNode.path("gutter").asInt(),
+                rootNode.path("alignment").asInt(1));
+        layout.pageCount = rootNode.path("pages").size();
+        for (final JsonNode node : rootNode.path("textures")) {
+            // Duplicates share the slot of another texture and never own space of their own
+            if (node.has("alias")) {
+                continue;
+            }
+            final Entry entry = new Entry(node.path("id").asText(), node.path("hash").asText(), node.path("page").asInt(),
+                    node.path("x").asInt(), node.path("y").asInt(), node.path("width").asInt(), node.path("height").asInt());
+            layout.entryMap.put(entry.id, entry);
+        }
+        if (layout.pageSize <= 0) {
+            throw new IOException("Invalid atlas layout " + file + ".");
+        }
+        return layout;
+    }
+
+    /**
+     * Writes the layout as json.
+     *
+     * @param outputStream the stream to write to.
+     * @param pageNames    the file names of the pages in page order.
+     * @param mipLevels    the amount of exported mip levels of every page.
+     * @param resolution   the pixels per block of the packed textures.
+     * @param variantMap   pixels per block to the page file names of the atlas variant at that resolution.
+     * @throws IOException if the layout could not be written.
+     */
+    public void write(@Nonnull final OutputStream outputStream,
+                      @Nonnull final List<String> pageNames,
+                      final int mipLevels,
+                      final int resolution,
+                      @Nonnull final Map<Integer, List<String>> variantMap) throws IOException {
+        final JsonGenerator generator = new JsonFactory().createGenerator(outputStream);
+        generator.writeStartObject();
+        generator.writeNumberField("pageSize", pageSize);
+        generator.writeNumberField("gutter", gutter);
+        generator.writeNumberField("alignment", alignment);
+        generator.writeNumberField("mipLevels", mipLevels);
+        generator.writeArrayFieldStart("pages");
+        for (final String pageName : pageNames) {
+            generator.writeString(pageName);
+        }
+        generator.writeEndArray();
+        if (!variantMap.isEmpty()) {
+            // Variants scale the whole page, so the uvs of the textures below hold for all of them
+            generator.writeNumberField("resolution", resolution);
+            generator.writeArrayFieldStart("variants");
+            for (final Map.Entry<Integer, List<String>> variant : variantMap.entrySet()) {
+                final int variantSize = (int) ((long) pageSize * variant.getKey() / resolution);
+                generator.writeStartObject();
+                generator.writeNumberField("resolution", variant.getKey());
+                generator.writeNumberField("pageSize", variantSize);
+                generator.writeNumberField("mipLevels", mipLevels > 1 ? MipmapGenerator.getLevelCount(variantSize, variantSize) : 1);
+                generator.writeArrayFieldStart("pages");
+                for (final String pageName : variant.getValue()) {
+                    generator.writeString(pageName);
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        generator.writeArrayFieldStart("textures");
+        for (final Entry entry : entryMap.values()) {
+            generator.writeStartObject();
+            generator.writeStringField("id", entry.id);
+            generator.writeStringField("hash", entry.hash);
+            generator.writeNumberField("page", entry.page);
+            generator.writeNumberField("x", entry.x);
+            generator.writeNumberField("y", entry.y);
+            generator.writeNumberField("width", entry.width);
+            generator.writeNumberField("height", entry.height);
+            writeTrim(generator, entry.id);
+            generator.writeEndObject();
+        }
+        for (final Map.Entry<String, String> alias : aliasMap.entrySet()) {
+            final Entry entry = entryMap.get(alias.getValue());
+            generator.writeStartObject();
+            generator.writeStringField("id", alias.getKey());
+            generator.writeStringField("alias", entry.id);
+            generator.writeStringField("hash", entry.hash);
+            generator.writeNumberField("page", entry.page);
+            generator.writeNumberField("x", entry.x);
+            generator.writeNumberField("y", entry.y);
+            generator.writeNumberField("width", entry.width);
+            generator.writeNumberField("height", entry.height);
+            writeTrim(generator, entry.id);
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    /**
+     * Writes the trim of a texture as left, top, untrimmed width and untrimmed height if it was trimmed.
+     *
+     * @param generator the generator to write to.
+     * @param id        the id of the placed texture.
+     * @throws IOException if the trim could not be written.
+     */
+    private void writeTrim(@Nonnull final JsonGenerator generator, @Nonnull final String id) throws IOException {
+        final int[] trim = trimMap.get(id);
+        if (trim != null) {
+            generator.writeFieldName("trim");
+            generator.writeArray(trim, 0, trim.length);
+        }
+    }
+
+    /**
+     * @param length the width or height of a texture.
+     * @return the width or height of the packed rectangle holding the texture and its gutter.
+     */
+    private int padded(final int length) {
+        return (length + 2 * gutter + alignment - 1) / alignment * alignment;
+    }
+
+    /**
+     * Hashes the pixels of a texture.
+     *
+     * @param pixels the argb pixels.
+     * @param count  the amount of pixels to hash.
+     * @return the 64 bit hash as hex.
+     */
+    public static String hash(@Nonnull final int[] pixels, final int count) {
+        long hash = 0xCBF29CE484222325L ^ count;
+        for (int i = 0; i < count; i++) {
+            hash = (hash ^ pixels[i]) * 0x100000001B3L;
+            hash ^= hash >>> 29;
+        }
+        return String.format("%016x", hash);
+    }
+
+    /**
+     * @return the side length of every page.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return the width of the border kept free around every texture.
+     */
+    public int getGutter() {
+        return gutter;
+    }
+
+    /**
+     * @return the amount of pages.
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * @return the placed textures in packing order.
+     */
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(entryMap.values());
+    }
+
+    /**
+     * Lets a texture share the placement of another texture with the same pixels.
+     *
+     * @param id       the id of the duplicate texture.
+     * @param targetId the id of the placed texture.
+     */
+    public void addAlias(@Nonnull final String id, @Nonnull final String targetId) {
+        if (entryMap.containsKey(targetId)) {
+            aliasMap.put(id, targetId);
+        }
+    }
+
+    /**
+     * @param id the id of the texture.
+     * @return the placement of the texture or null if it was not placed.
+     */
+    @Nullable
+    public Entry getEntry(@Nonnull final String id) {
+        final String targetId = aliasMap.get(id);
+        return entryMap.get(targetId == null ? id : targetId);
+    }
+
+    /**
+     * Records that the transparent border of a texture was trimmed off before it was packed.
+     *
+     * @param id           the id of the texture.
+     * @param left         the amount of columns trimmed off the left.
+     * @param top          the amount of rows trimmed off the top.
+     * @param sourceWidth  the untrimmed width of the texture.
+     * @param sourceHeight the untrimmed height of the texture.
+     */
+    public void setTrim(@Nonnull final String id, final int left, final int top, final int sourceWidth, final int sourceHeight) {
+        trimMap.put(id, new int[]{left, top, sourceWidth, sourceHeight});
+    }
+
+    /**
+     * @return duplicate texture id to the id of the placed texture with the same pixels.
+     */
+    public Map<String, String> getAliases() {
+        return Collections.unmodifiableMap(aliasMap);
+    }
+
+    /**
+     * @return the textures which are larger than a page.
+     */
+    public List<Entry> getSkipped() {
+        return Collections.unmodifiableList(skipped);
+    }
+
+    /**
+     * @return the amount of placements kept from the previous layout.
+     */
+    public int getReusedCount() {
+        return reusedCount;
+    }
+
+    /**
+     * @return the fraction of the pages covered by textures.
+     */
+    public double getEfficiency() {
+        long usedArea = 0;
+        for (final Entry entry : entryMap.values()) {
+            usedArea += (long) entry.width * entry.height;
+        }
+        return usedArea / ((double) pageSize * pageSize * pageCount);
+    }
+
+    /**
+     * The placement of one texture.
+     *
+     * @author Tyler Bucher
+     */
+    public static class Entry {
+
+        /**
+         * The id of the texture.
+         */
+        public final String id;
+
+        /**
+         * The hash of the texture pixels.
+         */
+        public final String hash;
+
+        /**
+         * The page of the texture or -1 if it is not placed.
+         */
+        public final int page;
+
+        /**
+         * The left column of the texture on the page.
+         */
+        public final int x;
+
+        /**
+         * The top row of the texture on the page.
+         */
+        public final int y;
+
+        /**
+         * The width of the texture.
+         */
+        public final int width;
+
+        /**
+         * The height of the texture.
+         */
+        public final int height;
+
+        /**
+         * Creates an entry for a texture which still has to be placed.
+         *
+         * @param id     the id of the texture.
+         * @param hash   the hash of the texture pixels.
+         * @param width  the width of the texture.
+         * @param height the height of the texture.
+         */
+        public Entry(@Nonnull final String id, @Nonnull final String hash, final int width, final int height) {
+            this(id, hash, -1, -1, -1, width, height);
+        }
+
+        /**
+         * @param id     the id of the texture.
+         * @param hash   the hash of the texture pixels.
+         * @param page   the page of the texture.
+         * @param x      the left column of the texture on the page.
+         * @param y      the top row of the texture on the page.
+         * @param width  the width of the texture.
+         * @param height the height of the texture.
+         */
+        Entry(@Nonnull final String id,
+              @Nonnull final String hash,
+              final int page,
+              final int x,
+              final int y,
+              final int width,
+              final int height) {
+            this.id = id;
+            this.hash = hash;
+            this.page = page;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
@@ -23,26 +23,45 @@
  */
 package net.reallifegames.atlas.module.atlas;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import net.reallifegames.atlas.Atlas;
+import net.reallifegames.atlas.AtlasOptions;
 import net.reallifegames.atlas.TextureLoader;
 import net.reallifegames.atlas.TextureManager;
+import net.reallifegames.atlas.asset.image.BlockCompressor;
+import net.reallifegames.atlas.asset.image.BlockFormat;
+import net.reallifegames.atlas.asset.image.Ktx2Writer;
+import net.reallifegames.atlas.asset.image.MipmapGenerator;
+import net.reallifegames.atlas.asset.image.Palette;
+import net.reallifegames.atlas.asset.image.PixelSource;
+import net.reallifegames.atlas.asset.image.PngEncoder;
+import net.reallifegames.atlas.asset.image.ScaledPixelSource;
+import net.reallifegames.atlas.asset.source.AssetCache;
+import net.reallifegames.atlas.asset.source.AssetFileSystem;
 import net.reallifegames.atlas.module.Module;
 import net.reallifegames.atlas.module.ModuleInfo;
 import org.joml.Vector4f;
+import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
 import org.lwjgl.opengl.GL13;
 
 import javax.annotation.Nonnull;
-import javax.imageio.ImageIO;
+import javax.annotation.Nullable;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.util.*;
+import java.util.List;
+import java.util.zip.Deflater;
 
 /**
  * Creates a new atlas and holds the object.
@@ -52,99 +71,262 @@ import java.util.*;
 @ModuleInfo ("")
 public class AtlasModule implements Module {
 
+    /**
+     * The amount of pixels uploaded to OpenGL at once.
+     */
+    private static final int UPLOAD_BAND_SIZE = 1 << 20;
+
     /**
      * The global block texture atlas.
      */
     private TextureAtlas textureAtlas;
 
+    /**
+     * The atlas of animation frame strips.
+     */
+    private TextureAtlas animationAtlas;
+
+    /**
+     * The indexed Minecraft.jar and texture pack assets.
+     */
+    private final AssetFileSystem assetFileSystem = new AssetFileSystem();
+
     /**
      * @param args constructor arguments.
      */
     public AtlasModule(@Nonnull final String[] args) {
-        setup(args[0], args[1], args[2]);
+        setup(args[1], Arrays.copyOfRange(args, 2, args.length), args[0]);
     }
 
     /**
      * Setup code for creating the texture atlas.
      *
-     * @param name the name of the file to extract.
+     * @param name             the path of the Minecraft.jar file.
+     * @param texturePackNames the paths of the texture packs, lowest priority first.
+     * @param useOpenGL        states if we should use OpenGL.
      */
-    private void setup(@Nonnull final String name, @Nonnull final String texturePackName, @Nonnull final String useOpenGL) {
+    private void setup(@Nonnull final String name, @Nonnull final String[] texturePackNames, @Nonnull final String useOpenGL) {
         try {
-            // Unzip
-            System.out.println("Extracting Minecraft.jar assets.");
-            ZipManager.extractZip(name, Atlas.FULL_TEMP_FOLDER_DIR + File.separator);
-            if (!texturePackName.isEmpty()) {
-                System.out.println("Extracting TexturePack assets.");
-                ZipManager.extractZip(texturePackName, Atlas.FULL_TEMP_FOLDER_DIR + File.separator);
+            // Index archives
+            System.out.println("Indexing Minecraft.jar assets.");
+            assetFileSystem.mount(name);
+            for (final String texturePackName : texturePackNames) {
+                if (!texturePackName.isEmpty()) {
+                    System.out.println("Indexing TexturePack assets from " + texturePackName + ".");
+                    assetFileSystem.mount(texturePackName);
+                }
             }
             // Create atlas
             System.out.println("Creating TextureAtlas from asset images.");
-            final File texturesDir = new File(Atlas.FULL_TEMP_FOLDER_DIR + "/assets/minecraft/textures/blocks");
-            final File[] textureFileList = texturesDir.listFiles();
+            final String texturesDir = BlockTextureLoader.BLOCK_TEXTURE_DIR;
+            final List<String> textureFileList = assetFileSystem.list(texturesDir);
             final SortedMap<SortedTexture, BufferedImage> textureMap = new TreeMap<>((sortedTexture, t1)->
                     t1.area - sortedTexture.area == 0 ? 1 : t1.area - sortedTexture.area);
 
-            if (textureFileList != null) {
-                final ArrayList<String> subFinal = new ArrayList<>();
-                for (File f : textureFileList) {
-                    subFinal.add(f.getName());
-                }
-                Arrays.sort(textureFileList);
+            if (!textureFileList.isEmpty()) {
+                final AssetCache assetCache = AtlasOptions.CACHE_ENABLED ? new AssetCache(AtlasOptions.CACHE_DIR, AtlasOptions.CACHE_MAX_BYTES) : null;
                 int area = 0;
                 int lWidth = 0;
                 int lHeight = 0;
-                for (final File file : textureFileList) {
-                    if (!file.getName().endsWith("png") || subFinal.contains(file.getName() + ".mcmeta")) {
-                        if (!file.isDirectory() && !file.getName().endsWith("mcmeta")) {
-                            BufferedImage img = ImageIO.read(file);
-                            img = img.getSubimage(0, 0, img.getWidth(), img.getWidth());
-                            textureMap.put(new SortedTexture(file.getName().substring(0, file.getName().length() - 4),
-                                    img.getWidth(), img.getHeight()), img);
-                            area += img.getWidth() * img.getHeight();
-                            if (img.getWidth() > lWidth) {
-                                lWidth = img.getWidth();
-                            }
-                            if (img.getHeight() > lHeight) {
-                                lHeight = img.getHeight();
-                            }
-                        }
-                    } else {
-                        BufferedImage img = ImageIO.read(file);
-                        textureMap.put(new SortedTexture(file.getName().substring(0, file.getName().length() - 4),
-                                img.getWidth(), img.getHeight()), img);
-                        area += img.getWidth() * img.getHeight();
-                        if (img.getWidth() > lWidth) {
-                            lWidth = img.getWidth();
+                final SortedMap<String, BufferedImage> blockTextures = BlockTextureLoader.load(assetFileSystem, assetCache);
+                final List<AnimatedTexture> animations = new ArrayList<>();
+                // Texture id to the left and top trimmed off and the untrimmed width and height
+                final Map<String, int[]> trimMap = new HashMap<>();
+                // Texture width to the amount of textures that wide, the most common width is the pack resolution
+                final Map<Integer, Integer> resolutionMap = new HashMap<>();
+                long trimmedArea = 0;
+                if (assetCache != null) {
+                    assetCache.evict();
+                }
+                for (final Map.Entry<String, BufferedImage> entry : blockTextures.entrySet()) {
+                    final String fileName = entry.getKey();
+                    BufferedImage img = entry.getValue();
+                    final boolean animated = textureFileList.contains(fileName + ".mcmeta");
+                    if (animated) {
+                        final String id = fileName.substring(0, fileName.length() - 4);
+                        try {
+                            // The block atlas holds the first frame, the whole strip goes to the animation atlas
+                            final AnimatedTexture animation = AnimatedTexture.parse(id, img,
+                                    assetFileSystem.read(texturesDir + "/" + fileName + ".mcmeta"));
+                            animations.add(animation);
+                            img = new BufferedImage(animation.frameWidth, animation.frameHeight, BufferedImage.TYPE_INT_ARGB);
+                            img.setRGB(0, 0, animation.frameWidth, animation.frameHeight, animation.getFrame(animation.sequence[0]),
+                                    0, animation.frameWidth);
+                        } catch (IOException e) {
+                            System.out.println("Unable to read the animation of " + id + ", only its first frame is used.");
+                            img = img.getSubimage(0, 0, img.getWidth(), Math.min(img.getWidth(), img.getHeight()));
                         }
-                        if (img.getHeight() > lHeight) {
-                            lHeight = img.getHeight();
+                    }
+                    resolutionMap.merge(img.getWidth(), 1, Integer::sum);
+                    if (AtlasOptions.TRIM && !animated) {
+                        final int[] bounds = getOpaqueBounds(img);
+                        if (bounds[2] - bounds[0] != img.getWidth() || bounds[3] - bounds[1] != img.getHeight()) {
+                            trimMap.put(fileName.substring(0, fileName.length() - 4),
+                                    new int[]{bounds[0], bounds[1], img.getWidth(), img.getHeight()});
+                            trimmedArea += (long) img.getWidth() * img.getHeight() -
+                                    (long) (bounds[2] - bounds[0]) * (bounds[3] - bounds[1]);
+                            img = img.getSubimage(bounds[0], bounds[1], bounds[2] - bounds[0], bounds[3] - bounds[1]);
                         }
                     }
+                    textureMap.put(new SortedTexture(fileName.substring(0, fileName.length() - 4),
+                            img.getWidth(), img.getHeight()), img);
+                    area += (img.getWidth() + 2 * AtlasOptions.GUTTER) * (img.getHeight() + 2 * AtlasOptions.GUTTER);
+                    if (img.getWidth() + 2 * AtlasOptions.GUTTER > lWidth) {
+                        lWidth = img.getWidth() + 2 * AtlasOptions.GUTTER;
+                    }
+                    if (img.getHeight() + 2 * AtlasOptions.GUTTER > lHeight) {
+                        lHeight = img.getHeight() + 2 * AtlasOptions.GUTTER;
+                    }
                 }
                 area = (int) Math.ceil(Math.sqrt(area));
                 int wh = closestPow2(area, lWidth, lHeight);
-                boolean[][] setArray = new boolean[wh][wh];
-                textureAtlas = new TextureAtlas(new BufferedImage(wh, wh, BufferedImage.TYPE_INT_ARGB), wh);
-                final Graphics raster = textureAtlas.getAtlas().getGraphics();
-                for (Map.Entry<SortedTexture, BufferedImage> entry : textureMap.entrySet()) {
-                    if (!packImage(setArray, raster, entry.getValue(), entry.getKey())) {
-                        System.out.println("missed a texture error.");
+                if (wh == -1 || wh > AtlasOptions.MAX_PAGE_SIZE) {
+                    wh = AtlasOptions.MAX_PAGE_SIZE;
+                }
+                // Lay out the textures, keeping the placements of the previous run where possible
+                final Map<String, int[]> pixelMap = new HashMap<>();
+                final List<AtlasLayout.Entry> entries = new ArrayList<>();
+                // Pixel identical textures share the slot of the first one, animated textures always get their own slot
+                final Set<String> animationIds = new HashSet<>();
+                for (final AnimatedTexture animation : animations) {
+                    animationIds.add(animation.id);
+                }
+                final Map<String, String> uniqueMap = new HashMap<>();
+                final Map<String, String> duplicateMap = new LinkedHashMap<>();
+                long savedArea = 0;
+                for (final Map.Entry<SortedTexture, BufferedImage> entry : textureMap.entrySet()) {
+                    final SortedTexture texture = entry.getKey();
+                    final int[] pixels = getPixels(entry.getValue());
+                    final String hash = AtlasLayout.hash(pixels, texture.area);
+                    final int[] trim = trimMap.get(texture.id);
+                    // Textures only share a slot if they were trimmed the same way
+                    final String key = hash + ":" + texture.width + "x" + texture.height +
+                            (trim == null ? "" : ":" + Arrays.toString(trim));
+                    final String original = animationIds.contains(texture.id) ? null : uniqueMap.get(key);
+                    if (original != null && samePixels(pixelMap.get(original), pixels, texture.area)) {
+                        duplicateMap.put(texture.id, original);
+                        savedArea += (long) (texture.width + 2 * AtlasOptions.GUTTER) * (texture.height + 2 * AtlasOptions.GUTTER);
+                        continue;
+                    }
+                    if (!animationIds.contains(texture.id)) {
+                        uniqueMap.putIfAbsent(key, texture.id);
+                    }
+                    pixelMap.put(texture.id, pixels);
+                    entries.add(new AtlasLayout.Entry(texture.id, hash, texture.width, texture.height));
+                }
+                if (!trimMap.isEmpty()) {
+                    System.out.println(String.format("Trimmed the transparent border of %d textures, saving %d pixels.",
+                            trimMap.size(), trimmedArea));
+                }
+                // Split the textures into render layers if requested, every layer is packed into its own pages
+                final Map<String, List<AtlasLayout.Entry>> layerMap = new LinkedHashMap<>();
+                if (AtlasOptions.LAYERS) {
+                    for (final AlphaClass alphaClass : AlphaClass.values()) {
+                        layerMap.put(alphaClass.name().toLowerCase(Locale.ROOT), new ArrayList<>());
+                    }
+                    for (final AtlasLayout.Entry entry : entries) {
+                        final AlphaClass alphaClass = AlphaClass.of(pixelMap.get(entry.id), entry.width * entry.height);
+                        layerMap.get(alphaClass.name().toLowerCase(Locale.ROOT)).add(entry);
+                    }
+                    layerMap.values().removeIf(List::isEmpty);
+                }
+                if (layerMap.isEmpty()) {
+                    layerMap.put("", entries);
+                }
+                final Map<String, AtlasLayout> layoutMap = new LinkedHashMap<>();
+                long atlasArea = 0;
+                for (final Map.Entry<String, List<AtlasLayout.Entry>> layer : layerMap.entrySet()) {
+                    final String suffix = layer.getKey().isEmpty() ? "" : "_" + layer.getKey();
+                    final String layerName = layer.getKey().isEmpty() ? "atlas" : layer.getKey() + " atlas";
+                    final List<AtlasLayout.Entry> layerEntries = layer.getValue();
+                    final AtlasLayout previousLayout = readLayout(suffix);
+                    final AtlasLayout layout = AtlasLayout.pack(layerEntries, layer.getKey().isEmpty() ? wh : getPageSize(layerEntries),
+                            AtlasOptions.MAX_PAGE_SIZE, AtlasOptions.PACKER, AtlasOptions.GUTTER, getBlockAlignment(), previousLayout);
+                    for (final Map.Entry<String, String> entry : duplicateMap.entrySet()) {
+                        layout.addAlias(entry.getKey(), entry.getValue());
+                    }
+                    for (final Map.Entry<String, int[]> entry : trimMap.entrySet()) {
+                        final int[] trim = entry.getValue();
+                        layout.setTrim(entry.getKey(), trim[0], trim[1], trim[2], trim[3]);
+                    }
+                    if (previousLayout != null) {
+                        System.out.println(String.format("Kept %d of %d %s placements, placed %d new, changed or resized textures.",
+                                layout.getReusedCount(), layerEntries.size(), layerName, layout.getEntries().size() - layout.getReusedCount()));
+                    }
+                    System.out.println(String.format("Packed %d textures into %d %dx%d %s page(s) with the %s packer, %.1f%% efficiency.",
+                            layout.getEntries().size(), layout.getPageCount(), layout.getPageSize(), layout.getPageSize(), layerName,
+                            AtlasOptions.PACKER, layout.getEfficiency() * 100.0));
+                    for (final AtlasLayout.Entry texture : layout.getSkipped()) {
+                        System.out.println("Texture " + texture.id + " (" + texture.width + "x" + texture.height +
+                                ") is larger than the maximum atlas page size " + layout.getPageSize() + " and was skipped.");
+                    }
+                    layoutMap.put(layer.getKey(), layout);
+                    atlasArea += (long) layout.getPageSize() * layout.getPageSize() * layout.getPageCount();
+                }
+                if (!duplicateMap.isEmpty()) {
+                    System.out.println(String.format("Merged %d duplicate textures into existing atlas slots, saving %d pixels (%.1f%% of the atlas area).",
+                            duplicateMap.size(), savedArea, savedArea * 100.0 / atlasArea));
+                }
+                // The pages of all layers share one atlas, so a face page identifies the layer as well
+                final Map<String, Integer> firstPageMap = new HashMap<>();
+                for (final Map.Entry<String, AtlasLayout> layer : layoutMap.entrySet()) {
+                    final AtlasLayout layout = layer.getValue();
+                    final int firstPage;
+                    if (textureAtlas == null) {
+                        textureAtlas = new TextureAtlas(layout.getPageSize(), layout.getPageCount(), layout.getGutter());
+                        firstPage = 0;
+                    } else {
+                        firstPage = textureAtlas.addPages(layout.getPageSize(), layout.getPageCount());
+                    }
+                    firstPageMap.put(layer.getKey(), firstPage);
+                    for (final AtlasLayout.Entry texture : layout.getEntries()) {
+                        textureAtlas.place(texture.id, firstPage + texture.page, pixelMap.get(texture.id), texture.x, texture.y,
+                                texture.width, texture.height);
+                        final int[] trim = trimMap.get(texture.id);
+                        if (trim != null) {
+                            textureAtlas.trim(texture.id, trim[0] / (float) trim[2], trim[1] / (float) trim[3],
+                                    (trim[0] + texture.width) / (float) trim[2], (trim[1] + texture.height) / (float) trim[3]);
+                        }
+                    }
+                    for (final Map.Entry<String, String> entry : layout.getAliases().entrySet()) {
+                        textureAtlas.alias(entry.getKey(), entry.getValue());
+                    }
+                }
+                textureAtlas.freeze();
+                final PngEncoder pngEncoder = AtlasOptions.PNG_FAST ?
+                        new PngEncoder(Deflater.BEST_SPEED, PngEncoder.Filter.SUB, AtlasOptions.THREADS) :
+                        new PngEncoder(AtlasOptions.PNG_LEVEL, PngEncoder.Filter.fromName(AtlasOptions.PNG_FILTER), AtlasOptions.THREADS);
+                final int resolution = Collections.max(resolutionMap.entrySet(), Map.Entry.comparingByValue()).getKey();
+                // Animation id to the page, x and y of its first frame in the block atlas
+                final Map<String, int[]> targetMap = new HashMap<>();
+                final Map<String, List<String>> layerPageMap = new LinkedHashMap<>();
+                for (final Map.Entry<String, AtlasLayout> layer : layoutMap.entrySet()) {
+                    final AtlasLayout layout = layer.getValue();
+                    final int firstPage = firstPageMap.get(layer.getKey());
+                    final String suffix = layer.getKey().isEmpty() ? "" : "_" + layer.getKey();
+                    final List<AtlasPage> pages = textureAtlas.getPages().subList(firstPage, firstPage + layout.getPageCount());
+                    // The first page keeps the single page name so existing clients still find it
+                    final List<String> pageNames = writePages(pages, layout.getPageSize(), "atlas" + suffix, pngEncoder);
+                    writeLayout(layout, suffix, pageNames, resolution,
+                            writeVariants(pages, layout.getPageSize(), "atlas" + suffix, resolution, pageNames, pngEncoder));
+                    layerPageMap.put(layer.getKey(), pageNames);
+                    for (final AnimatedTexture animation : animations) {
+                        final AtlasLayout.Entry target = layout.getEntry(animation.id);
+                        if (target != null) {
+                            targetMap.put(animation.id, new int[]{firstPage + target.page, target.x, target.y});
+                        }
                     }
                 }
-                raster.dispose();
-                final File atlas = new File(Atlas.FULL_TEMP_FOLDER_DIR + "/export/textures", "atlas.png");
-                if (!atlas.getParentFile().exists()) {
-                    Files.createDirectories(atlas.toPath());
+                if (!layoutMap.containsKey("")) {
+                    writeLayers(layerPageMap, firstPageMap);
+                }
+                writeColors(textureAtlas);
+                if (!animations.isEmpty()) {
+                    writeAnimations(animations, targetMap, pngEncoder);
                 }
-                ImageIO.write(textureAtlas.getAtlas(), "png", atlas);
-                final File colorDir = new File(Atlas.FULL_TEMP_FOLDER_DIR + "/assets/minecraft/textures/colormap");
-                for (final File file : Objects.requireNonNull(colorDir.listFiles())) {
-                    FileChannel sourceChannel = new FileInputStream(file).getChannel();
-                    FileChannel destChannel = new FileOutputStream(new File(Atlas.FULL_TEMP_FOLDER_DIR + "/export/textures", file.getName())).getChannel();
-                    destChannel.transferFrom(sourceChannel, 0, sourceChannel.size());
-                    sourceChannel.close();
-                    destChannel.close();
+                final String colorDir = "assets/minecraft/textures/colormap";
+                for (final String fileName : assetFileSystem.list(colorDir)) {
+                    Atlas.exportSink.write("textures/" + fileName, assetFileSystem.read(colorDir + "/" + fileName));
                 }
             }
             if (Boolean.parseBoolean(useOpenGL)) {
@@ -155,22 +337,310 @@ public class AtlasModule implements Module {
         }
     }
 
+    /**
+     * Packs the frame strips of the animated textures into their own atlas and exports it together with a table of
+     * frame timings. A client advances an animation by copying the current frame over the first frame in the block atlas.
+     *
+     * @param animations the animated textures.
+     * @param targetMap  texture id to the page, x and y of the first frame in the block atlas.
+     * @param pngEncoder encodes the atlas pages.
+     * @throws IOException if the atlas could not be exported.
+     */
+    private void writeAnimations(@Nonnull final List<AnimatedTexture> animations,
+                                 @Nonnull final Map<String, int[]> targetMap,
+                                 @Nonnull final PngEncoder pngEncoder) throws IOException {
+        final List<AnimatedTexture> sortedAnimations = new ArrayList<>(animations);
+        sortedAnimations.sort((animation, a1)->Integer.compare(a1.frameWidth * a1.getStripHeight(),
+                animation.frameWidth * animation.getStripHeight()));
+        final Map<String, AnimatedTexture> animationMap = new HashMap<>();
+        final List<AtlasLayout.Entry> entries = new ArrayList<>();
+        long area = 0;
+        int lWidth = 0;
+        int lHeight = 0;
+        for (final AnimatedTexture animation : sortedAnimations) {
+            animationMap.put(animation.id, animation);
+            entries.add(new AtlasLayout.Entry(animation.id, AtlasLayout.hash(animation.getStrip(), animation.getStrip().length),
+                    animation.frameWidth, animation.getStripHeight()));
+            area += (long) (animation.frameWidth + 2 * AtlasOptions.GUTTER) * (animation.getStripHeight() + 2 * AtlasOptions.GUTTER);
+            lWidth = Math.max(lWidth, animation.frameWidth + 2 * AtlasOptions.GUTTER);
+            lHeight = Math.max(lHeight, animation.getStripHeight() + 2 * AtlasOptions.GUTTER);
+        }
+        int wh = closestPow2((int) Math.min(Integer.MAX_VALUE, (long) Math.ceil(Math.sqrt(area))), lWidth, lHeight);
+        if (wh == -1 || wh > AtlasOptions.MAX_PAGE_SIZE) {
+            wh = AtlasOptions.MAX_PAGE_SIZE;
+        }
+        final AtlasLayout animationLayout = AtlasLayout.pack(entries, wh, AtlasOptions.MAX_PAGE_SIZE, AtlasOptions.PACKER,
+                AtlasOptions.GUTTER, getBlockAlignment(), null);
+        System.out.println(String.format("Packed %d animated textures into %d %dx%d animation atlas page(s).",
+                animationLayout.getEntries().size(), animationLayout.getPageCount(), animationLayout.getPageSize(),
+                animationLayout.getPageSize()));
+        for (final AtlasLayout.Entry texture : animationLayout.getSkipped()) {
+            System.out.println("Animated texture " + texture.id + " (" + texture.width + "x" + texture.height +
+                    ") is larger than the maximum atlas page size " + animationLayout.getPageSize() + " and was skipped.");
+        }
+        animationAtlas = new TextureAtlas(animationLayout.getPageSize(), animationLayout.getPageCount(), animationLayout.getGutter());
+        for (final AtlasLayout.Entry texture : animationLayout.getEntries()) {
+            animationAtlas.place(texture.id, texture.page, animationMap.get(texture.id).getStrip(), texture.x, texture.y,
+                    texture.width, texture.height);
+        }
+        animationAtlas.freeze();
+        final List<String> pageNames = writePages(animationAtlas.getPages(), animationAtlas.getLength(), "animation", pngEncoder);
+        // Frame n of a strip starts at y + n * height, the sequence holds frame index and duration in ticks pairs
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final JsonGenerator generator = new JsonFactory().createGenerator(outputStream);
+        generator.writeStartObject();
+        generator.writeNumberField("pageSize", animationLayout.getPageSize());
+        generator.writeNumberField("gutter", animationLayout.getGutter());
+        generator.writeNumberField("mipLevels", getMipLevels(animationAtlas));
+        generator.writeArrayFieldStart("pages");
+        for (final String pageName : pageNames) {
+            generator.writeString(pageName);
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("textures");
+        for (final AtlasLayout.Entry texture : animationLayout.getEntries()) {
+            final int[] target = targetMap.get(texture.id);
+            if (target == null) {
+                continue;
+            }
+            final AnimatedTexture animation = animationMap.get(texture.id);
+            generator.writeStartObject();
+            generator.writeStringField("id", texture.id);
+            generator.writeNumberField("page", texture.page);
+            generator.writeNumberField("x", texture.x);
+            generator.writeNumberField("y", texture.y);
+            generator.writeNumberField("width", animation.frameWidth);
+            generator.writeNumberField("height", animation.frameHeight);
+            generator.writeFieldName("target");
+            generator.writeArray(target, 0, 3);
+            generator.writeBooleanField("interpolate", animation.interpolate);
+            generator.writeNumberField("ticks", animation.getCycleTicks());
+            generator.writeFieldName("sequence");
+            generator.writeArray(animation.sequence, 0, animation.sequence.length);
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.flush();
+        Atlas.exportSink.write("textures/animation.json", outputStream.toByteArray());
+    }
+
+    /**
+     * Encodes and exports every page of an atlas together with its mip levels. The levels of a page are named after
+     * the page with a {@code _mip<level>} suffix. Each requested block format gets one KTX2 file per page holding all
+     * of its levels.
+     *
+     * @param pages      the pages to export.
+     * @param length     the side length of every page.
+     * @param baseName   the file name of the first page without extension.
+     * @param pngEncoder encodes the pages.
+     * @return the file names of the pages in page order.
+     *
+     * @throws IOException if a page could not be exported.
+     */
+    private static List<String> writePages(@Nonnull final List<? extends PixelSource> pages,
+                                           final int length,
+                                           @Nonnull final String baseName,
+                                           @Nonnull final PngEncoder pngEncoder) throws IOException {
+        final MipmapGenerator mipmapGenerator = new MipmapGenerator(AtlasOptions.THREADS);
+        final BlockCompressor blockCompressor = new BlockCompressor(AtlasOptions.THREADS);
+        final List<BlockFormat> blockFormats = getBlockFormats();
+        final List<String> pageNames = new ArrayList<>();
+        // The shared palette covers the first level of every page, mip levels get their own palette
+        final Palette atlasPalette = "atlas".equals(AtlasOptions.PALETTE) ? Palette.build(pages, AtlasOptions.PALETTE_ERROR) : null;
+        int indexedCount = 0;
+        for (int i = 0; i < pages.size(); i++) {
+            final String pageName = i == 0 ? baseName : baseName + "_" + i;
+            final Map<BlockFormat, List<byte[]>> compressedMap = new EnumMap<>(BlockFormat.class);
+            PixelSource level = pages.get(i);
+            for (int mipLevel = 0; mipLevel < getMipLevels(length); mipLevel++) {
+                if (mipLevel > 0) {
+                    level = mipmapGenerator.downsample(level);
+                }
+                Palette palette = null;
+                if (mipLevel == 0 && atlasPalette != null) {
+                    palette = atlasPalette;
+                } else if (!AtlasOptions.PALETTE.isEmpty()) {
+                    palette = Palette.build(Collections.singletonList(level), AtlasOptions.PALETTE_ERROR);
+                }
+                // Tiny levels save less pixel data than the palette costs
+                if (palette != null && (long) level.getWidth() * level.getHeight() * 3 <= palette.getColours().length * 4) {
+                    palette = null;
+                }
+                if (palette != null) {
+                    indexedCount++;
+                }
+                final ByteArrayOutputStream atlasStream = new ByteArrayOutputStream();
+                pngEncoder.encode(level, palette, atlasStream);
+                Atlas.exportSink.write("textures/" + pageName + (mipLevel == 0 ? "" : "_mip" + mipLevel) + ".png",
+                        atlasStream.toByteArray());
+                for (final BlockFormat blockFormat : blockFormats) {
+                    compressedMap.computeIfAbsent(blockFormat, k->new ArrayList<>()).add(blockCompressor.compress(level, blockFormat));
+                }
+            }
+            for (final Map.Entry<BlockFormat, List<byte[]>> entry : compressedMap.entrySet()) {
+                final ByteArrayOutputStream ktxStream = new ByteArrayOutputStream();
+                Ktx2Writer.write(ktxStream, entry.getKey(), length, length, entry.getValue());
+                Atlas.exportSink.write("textures/" + pageName + "." + entry.getKey().name + ".ktx2", ktxStream.toByteArray());
+            }
+            pageNames.add(pageName + ".png");
+        }
+        if (!AtlasOptions.PALETTE.isEmpty()) {
+            System.out.println(String.format("Wrote %d of %d %s images as indexed png.", indexedCount,
+                    pages.size() * getMipLevels(length), baseName));
+        }
+        return pageNames;
+    }
+
+    /**
+     * Exports the atlas variants at the requested block resolutions. Every variant scales the whole pages of the packed
+     * atlas by a power of two, pages are halved with the mip filter or enlarged with nearest neighbour sampling, so the
+     * uvs of the packed atlas hold for every variant.
+     *
+     * @param atlasPages the pages of the packed atlas.
+     * @param length     the side length of every packed page.
+     * @param baseName   the file name of the first packed page without extension.
+     * @param resolution the pixels per block of the packed atlas.
+     * @param pageNames  the file names of the packed atlas pages.
+     * @param pngEncoder encodes the pages.
+     * @return pixels per block to the file names of the variant pages in page order.
+     *
+     * @throws IOException if a variant could not be exported.
+     */
+    private static Map<Integer, List<String>> writeVariants(@Nonnull final List<AtlasPage> atlasPages,
+                                                            final int length,
+                                                            @Nonnull final String baseName,
+                                                            final int resolution,
+                                                            @Nonnull final List<String> pageNames,
+                                                            @Nonnull final PngEncoder pngEncoder) throws IOException {
+        final MipmapGenerator mipmapGenerator = new MipmapGenerator(AtlasOptions.THREADS);
+        final Map<Integer, List<String>> variantMap = new TreeMap<>();
+        for (final String name : AtlasOptions.VARIANTS.split(",")) {
+            if (name.trim().isEmpty()) {
+                continue;
+            }
+            final int variant = Integer.parseInt(name.trim());
+            if (variant == resolution) {
+                variantMap.put(variant, pageNames);
+                continue;
+            }
+            if (variant <= 0 || Integer.bitCount(variant) != 1 || Integer.bitCount(resolution) != 1 ||
+                    length * (long) variant / resolution == 0) {
+                System.out.println("Skipping the " + variant + "x atlas variant, it is not a power of two scale of the " +
+                        resolution + "x atlas.");
+                continue;
+            }
+            final int scale = Math.max(variant, resolution) / Math.min(variant, resolution);
+            if (variant > resolution && (long) length * scale > AtlasOptions.MAX_PAGE_SIZE) {
+                System.out.println("Skipping the " + variant + "x atlas variant, its " + (long) length * scale +
+                        " pixel pages would exceed the maximum atlas page size " + AtlasOptions.MAX_PAGE_SIZE + ".");
+                continue;
+            }
+            final List<PixelSource> pages = new ArrayList<>();
+            for (final AtlasPage page : atlasPages) {
+                PixelSource scaled = page;
+                if (variant > resolution) {
+                    scaled = new ScaledPixelSource(page, scale);
+                } else {
+                    for (int i = scale; i > 1; i /= 2) {
+                        scaled = mipmapGenerator.downsample(scaled);
+                    }
+                }
+                pages.add(scaled);
+            }
+            final int variantLength = variant > resolution ? length * scale : length / scale;
+            variantMap.put(variant, writePages(pages, variantLength, baseName + "_" + variant + "x", pngEncoder));
+        }
+        if (!variantMap.isEmpty()) {
+            System.out.println("Exported the " + resolution + "x " + baseName + " at " + variantMap.keySet() + " pixels per block.");
+        }
+        return variantMap;
+    }
+
+    /**
+     * @return the gpu block formats the atlas is exported in.
+     */
+    private static List<BlockFormat> getBlockFormats() {
+        final List<BlockFormat> blockFormats = new ArrayList<>();
+        for (final String name : AtlasOptions.COMPRESS.split(",")) {
+            if (!name.trim().isEmpty()) {
+                blockFormats.add(BlockFormat.fromName(name.trim()));
+            }
+        }
+        return blockFormats;
+    }
+
+    /**
+     * Block compressed atlases align every texture with its gutter to the 4x4 blocks, so no block of level 0 holds
+     * pixels of two textures.
+     *
+     * @return the size every packed rectangle is a multiple of.
+     */
+    private static int getBlockAlignment() {
+        return getBlockFormats().isEmpty() ? 1 : 4;
+    }
+
+    /**
+     * @param atlas the exported atlas.
+     * @return the amount of exported levels of every page, including the page itself.
+     */
+    private static int getMipLevels(@Nonnull final TextureAtlas atlas) {
+        return getMipLevels(atlas.getLength());
+    }
+
+    /**
+     * @param length the side length of every exported page.
+     * @return the amount of exported levels of every page, including the page itself.
+     */
+    private static int getMipLevels(final int length) {
+        return AtlasOptions.MIPMAPS ? MipmapGenerator.getLevelCount(length, length) : 1;
+    }
+
     /**
      * Creates the texture atlas for OpenGL to use.
      */
     public void textureSetup() {
-        TextureManager.registerTexture("atlas", Atlas.FULL_TEMP_FOLDER_DIR + "/export/textures/atlas.png", ((integer, imgPath)->{
-            try {
-                GL11.glBindTexture(GL11.GL_TEXTURE_2D, integer);
-                GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, textureAtlas.getLength(), textureAtlas.getLength(), 0,
-                        GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, TextureLoader.loadImage(imgPath, 4));
-                GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
-                GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
-                GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL13.GL_CLAMP_TO_BORDER);
-                GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL13.GL_CLAMP_TO_BORDER);
-            } catch (IOException e) {
-                e.printStackTrace();
+        TextureManager.registerTexture("atlas", "atlas", ((integer, imgPath)->{
+            final int length = textureAtlas.getLength();
+            if (textureAtlas.getPages().size() > 1) {
+                System.out.println("The preview only shows the first of " + textureAtlas.getPages().size() + " atlas pages.");
             }
+            GL11.glBindTexture(GL11.GL_TEXTURE_2D, integer);
+            GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, length, length, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE,
+                    (ByteBuffer) null);
+            // Upload the atlas a band at a time so it is never held in memory as a whole
+            final int bandRows = Math.max(1, UPLOAD_BAND_SIZE / length);
+            final int[] pixels = new int[bandRows * length];
+            final ByteBuffer buffer = BufferUtils.createByteBuffer(pixels.length * 4);
+            for (int y = 0; y < length; y += bandRows) {
+                final int count = Math.min(bandRows, length - y);
+                textureAtlas.getPages().get(0).readRows(y, count, pixels);
+                GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, 0, y, length, count, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE,
+                        TextureLoader.loadPixels(pixels, count * length, buffer));
+            }
+            // Upload the same mip levels that are exported
+            final int mipLevels = getMipLevels(textureAtlas);
+            final MipmapGenerator mipmapGenerator = new MipmapGenerator(AtlasOptions.THREADS);
+            PixelSource level = textureAtlas.getPages().get(0);
+            for (int mipLevel = 1; mipLevel < mipLevels; mipLevel++) {
+                try {
+                    level = mipmapGenerator.downsample(level);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    break;
+                }
+                final int[] levelPixels = new int[level.getWidth() * level.getHeight()];
+                level.readRows(0, level.getHeight(), levelPixels);
+                GL11.glTexImage2D(GL11.GL_TEXTURE_2D, mipLevel, GL11.GL_RGBA, level.getWidth(), level.getHeight(), 0,
+                        GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE,
+                        TextureLoader.loadPixels(levelPixels, levelPixels.length, BufferUtils.createByteBuffer(levelPixels.length * 4)));
+            }
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL12.GL_TEXTURE_MAX_LEVEL, mipLevels - 1);
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER,
+                    mipLevels > 1 ? GL11.GL_NEAREST_MIPMAP_LINEAR : GL11.GL_NEAREST);
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL13.GL_CLAMP_TO_BORDER);
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL13.GL_CLAMP_TO_BORDER);
         }));
     }
 
@@ -181,6 +651,21 @@ public class AtlasModule implements Module {
         return textureAtlas;
     }
 
+    /**
+     * @return the atlas of animation frame strips or null if no texture is animated.
+     */
+    @Nullable
+    public TextureAtlas getAnimationAtlas() {
+        return animationAtlas;
+    }
+
+    /**
+     * @return the indexed Minecraft.jar and texture pack assets.
+     */
+    public AssetFileSystem getAssetFileSystem() {
+        return assetFileSystem;
+    }
+
     @Override
     public void input(double displacement) {
 
@@ -258,81 +743,196 @@ public class AtlasModule implements Module {
     }
 
     /**
-     * Attempts to write a texture to the file.
+     * @param suffix the render layer suffix of the layout, empty if the atlas is not split into layers.
+     * @return the file the layout is kept in between runs.
+     */
+    private static File getLayoutFile(@Nonnull final String suffix) {
+        final String path = AtlasOptions.LAYOUT_FILE;
+        final int dot = path.lastIndexOf('.');
+        return new File(dot > path.lastIndexOf(File.separatorChar) ? path.substring(0, dot) + suffix + path.substring(dot) :
+                path + suffix);
+    }
+
+    /**
+     * Reads the layout of the previous run.
+     *
+     * @param suffix the render layer suffix of the layout, empty if the atlas is not split into layers.
+     * @return the previous layout or null if there is none or it could not be read.
+     */
+    @Nullable
+    private static AtlasLayout readLayout(@Nonnull final String suffix) {
+        if (AtlasOptions.LAYOUT_FILE.isEmpty()) {
+            return null;
+        }
+        final File layoutFile = getLayoutFile(suffix);
+        if (!layoutFile.isFile()) {
+            return null;
+        }
+        try {
+            return AtlasLayout.read(layoutFile);
+        } catch (IOException e) {
+            System.out.println("Ignoring unreadable atlas layout " + layoutFile + ".");
+            return null;
+        }
+    }
+
+    /**
+     * Exports the atlas layout so a client can bind the pages as a texture array and keeps it for the next run.
      *
-     * @param setArray the array of texture slots which have been used.
-     * @param graphics the system graphics writer.
-     * @param image    the image to write into.
-     * @param texture  the texture to pack or write.
-     * @return true if the image was written false otherwise.
+     * @param layout     the atlas layout.
+     * @param suffix     the render layer suffix of the layout, empty if the atlas is not split into layers.
+     * @param pageNames  the file names of the pages in layer order.
+     * @param resolution the pixels per block of the packed atlas.
+     * @param variantMap pixels per block to the file names of the atlas variant pages.
+     * @throws IOException if the layout could not be written.
      */
-    private boolean packImage(@Nonnull final boolean[][] setArray,
-                              @Nonnull final Graphics graphics,
-                              @Nonnull final BufferedImage image,
-                              @Nonnull final SortedTexture texture) {
-        for (int i = 0; i < setArray[0].length; i++) {
-            for (int j = 0; j < setArray.length; j++) {
-                if (checkBounds(setArray, j, i, image.getWidth(), image.getHeight())) {
-                    setBounds(setArray, j, i, image.getWidth(), image.getHeight());
-                    graphics.drawImage(image, j, i, null);
-                    textureAtlas.getUvMap().put(texture.id, new Vector4f(
-                            j / (float) textureAtlas.getLength(), i / (float) textureAtlas.getLength(),
-                            (j + image.getWidth()) / (float) textureAtlas.getLength(),
-                            (i + image.getHeight()) / (float) textureAtlas.getLength()));
-                    return true;
-                }
+    private static void writeLayout(@Nonnull final AtlasLayout layout,
+                                    @Nonnull final String suffix,
+                                    @Nonnull final List<String> pageNames,
+                                    final int resolution,
+                                    @Nonnull final Map<Integer, List<String>> variantMap) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        layout.write(outputStream, pageNames, getMipLevels(layout.getPageSize()), resolution, variantMap);
+        Atlas.exportSink.write("textures/atlas" + suffix + ".json", outputStream.toByteArray());
+        if (!AtlasOptions.LAYOUT_FILE.isEmpty()) {
+            Files.write(getLayoutFile(suffix).toPath(), outputStream.toByteArray());
+        }
+    }
+
+    /**
+     * Exports the index of the render layer atlases. The pages of the layers are numbered in layer order, so the page
+     * of a face tells which layer it is drawn in.
+     *
+     * @param layerPageMap render layer name to the file names of its pages in page order.
+     * @param firstPageMap render layer name to the index of its first page.
+     * @throws IOException if the index could not be written.
+     */
+    private static void writeLayers(@Nonnull final Map<String, List<String>> layerPageMap,
+                                    @Nonnull final Map<String, Integer> firstPageMap) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final JsonGenerator generator = new JsonFactory().createGenerator(outputStream);
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("layers");
+        for (final Map.Entry<String, List<String>> layer : layerPageMap.entrySet()) {
+            generator.writeStartObject();
+            generator.writeStringField("alpha", layer.getKey());
+            generator.writeStringField("layout", "atlas_" + layer.getKey() + ".json");
+            generator.writeNumberField("firstPage", firstPageMap.get(layer.getKey()));
+            generator.writeArrayFieldStart("pages");
+            for (final String pageName : layer.getValue()) {
+                generator.writeString(pageName);
             }
+            generator.writeEndArray();
+            generator.writeEndObject();
         }
-        return false;
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.flush();
+        Atlas.exportSink.write("textures/atlas.json", outputStream.toByteArray());
     }
 
     /**
-     * Makes sure the texture is within the bounds of the image.
+     * Exports the mean and dominant colour of every texture, so map tiles and distant terrain can be coloured without
+     * reading the atlas back. Texture names map to texture ids and the colours of id n are at 2n and 2n + 1 as
+     * unsigned argb.
      *
-     * @param setArray the array of texture slots which have been used.
-     * @param x        the x coordinate to check.
-     * @param y        the y coordinate to check.
-     * @param width    the maximum width.
-     * @param height   the maximum height.
-     * @return true if the texture is within the bounds false otherwise.
+     * @param atlas the packed block atlas.
+     * @throws IOException if the table could not be written.
      */
-    private boolean checkBounds(@Nonnull final boolean[][] setArray,
-                                final int x,
-                                final int y,
-                                final int width,
-                                final int height) {
-        for (int i = y; i < y + height; i++) {
-            for (int j = x; j < x + width; j++) {
-                if (j < setArray.length && i < setArray[0].length) {
-                    if (setArray[j][i]) {
-                        return false;
-                    }
-                } else {
-                    return false;
+    private static void writeColors(@Nonnull final TextureAtlas atlas) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final JsonGenerator generator = new JsonFactory().createGenerator(outputStream);
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("ids");
+        for (final Map.Entry<String, Integer> entry : new TreeMap<>(atlas.getTextureIds()).entrySet()) {
+            generator.writeNumberField(entry.getKey(), entry.getValue());
+        }
+        generator.writeEndObject();
+        generator.writeArrayFieldStart("colors");
+        for (int i = 0; i < atlas.getTextureCount(); i++) {
+            generator.writeNumber(atlas.getMeanColor(i) & 0xFFFFFFFFL);
+            generator.writeNumber(atlas.getDominantColor(i) & 0xFFFFFFFFL);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.flush();
+        Atlas.exportSink.write("textures/colors.json", outputStream.toByteArray());
+    }
+
+    /**
+     * @param entries the textures of one render layer.
+     * @return the side length of the first page the textures are packed into.
+     */
+    private static int getPageSize(@Nonnull final List<AtlasLayout.Entry> entries) {
+        long area = 0;
+        int lWidth = 0;
+        int lHeight = 0;
+        for (final AtlasLayout.Entry entry : entries) {
+            area += (long) (entry.width + 2 * AtlasOptions.GUTTER) * (entry.height + 2 * AtlasOptions.GUTTER);
+            lWidth = Math.max(lWidth, entry.width + 2 * AtlasOptions.GUTTER);
+            lHeight = Math.max(lHeight, entry.height + 2 * AtlasOptions.GUTTER);
+        }
+        final int wh = closestPow2((int) Math.min(Integer.MAX_VALUE, (long) Math.ceil(Math.sqrt(area))), lWidth, lHeight);
+        return wh == -1 || wh > AtlasOptions.MAX_PAGE_SIZE ? AtlasOptions.MAX_PAGE_SIZE : wh;
+    }
+
+    /**
+     * Finds the smallest rectangle holding every pixel of an image which is not fully transparent.
+     *
+     * @param image the image to search.
+     * @return the left, top, right and bottom edge of the rectangle, a single pixel if the image is fully transparent.
+     */
+    private static int[] getOpaqueBounds(@Nonnull final BufferedImage image) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int[] pixels = getPixels(image);
+        int left = width;
+        int top = height;
+        int right = 0;
+        int bottom = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if ((pixels[y * width + x] >>> 24) != 0) {
+                    left = Math.min(left, x);
+                    top = Math.min(top, y);
+                    right = Math.max(right, x + 1);
+                    bottom = Math.max(bottom, y + 1);
                 }
             }
         }
-        return true;
+        return left < right ? new int[]{left, top, right, bottom} : new int[]{0, 0, 1, 1};
     }
 
     /**
-     * Sets the array slot to true.
+     * Compares the pixels of two textures.
      *
-     * @param setArray the array of texture slots which have been used.
-     * @param x        the x coordinate to check.
-     * @param y        the y coordinate to check.
-     * @param width    the maximum width.
-     * @param height   the maximum height.
+     * @param pixels  the pixels of the first texture.
+     * @param pixels1 the pixels of the second texture.
+     * @param count   the amount of pixels to compare.
+     * @return true if the first count pixels are equal.
      */
-    private void setBounds(@Nonnull final boolean[][] setArray,
-                           final int x,
-                           final int y,
-                           final int width,
-                           final int height) {
-        for (int i = y; i < y + height; i++) {
-            for (int j = x; j < x + width; j++) {
-                setArray[j][i] = true;
+    private static boolean samePixels(@Nonnull final int[] pixels, @Nonnull final int[] pixels1, final int count) {
+        for (int i = 0; i < count; i++) {
+            if (pixels[i] != pixels1[i]) {
+                return false;
             }
         }
+        return true;
+    }
+
+    /**
+     * Gets the argb pixels of an image row by row, without copying them if the image already stores them that way.
+     *
+     * @param image the image to read.
+     * @return the argb pixels, at least width * height long.
+     */
+    private static int[] getPixels(@Nonnull final BufferedImage image) {
+        final Raster raster = image.getRaster();
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB && raster.getSampleModelTranslateX() == 0 &&
+                raster.getSampleModelTranslateY() == 0 && raster.getDataBuffer().getOffset() == 0 &&
+                ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride() == image.getWidth()) {
+            return ((DataBufferInt) raster.getDataBuffer()).getData();
+        }
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
     }
 }
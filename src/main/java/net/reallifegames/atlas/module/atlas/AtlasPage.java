@@ -0,0 +1,195 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.module.atlas;
+
+import net.reallifegames.atlas.asset.image.PixelSource;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * One page of a {@link TextureAtlas}. The page only stores where each texture was placed and composites its pixels a
+ * band of rows at a time when they are read. The edge pixels of every texture are extruded into the gutter around it, so
+ * filtering and mipmapping never pick up a neighbouring texture.
+ *
+ * @author Tyler Bucher
+ */
+public class AtlasPage implements PixelSource {
+
+    /**
+     * The side length of the page.
+     */
+    private final int length;
+
+    /**
+     * The width of the border around every texture.
+     */
+    private final int gutter;
+
+    /**
+     * The placed textures sorted by their top row.
+     */
+    private final List<Placement> placements = new ArrayList<>();
+
+    /**
+     * The tallest placed texture.
+     */
+    private int maxHeight;
+
+    /**
+     * States if {@link #placements} is sorted.
+     */
+    private boolean sorted = true;
+
+    /**
+     * @param length the side length of the page.
+     * @param gutter the width of the border around every texture.
+     */
+    public AtlasPage(final int length, final int gutter) {
+        this.length = length;
+        this.gutter = gutter;
+    }
+
+    /**
+     * Places a texture onto the page. The gutter around the texture must be inside of the page.
+     *
+     * @param pixels the argb pixels of the texture row by row, at least width * height long.
+     * @param x      the left column of the texture on the page.
+     * @param y      the top row of the texture on the page.
+     * @param width  the width of the texture.
+     * @param height the height of the texture.
+     */
+    public synchronized void place(@Nonnull final int[] pixels, final int x, final int y, final int width, final int height) {
+        placements.add(new Placement(pixels, x, y, width, height));
+        sorted = false;
+        maxHeight = Math.max(maxHeight, height);
+    }
+
+    @Override
+    public int getWidth() {
+        return length;
+    }
+
+    @Override
+    public int getHeight() {
+        return length;
+    }
+
+    @Override
+    public void readRows(final int y, final int count, @Nonnull final int[] out) {
+        final List<Placement> placements = getPlacements();
+        Arrays.fill(out, 0, count * length, 0);
+        // Skip the placements which end above the band
+        int low = 0;
+        int high = placements.size();
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (placements.get(middle).y + maxHeight + gutter <= y) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low; i < placements.size(); i++) {
+            final Placement placement = placements.get(i);
+            if (placement.y - gutter >= y + count) {
+                break;
+            }
+            final int first = Math.max(y, placement.y - gutter);
+            final int last = Math.min(y + count, placement.y + placement.height + gutter);
+            for (int row = first; row < last; row++) {
+                final int sourceRow = Math.min(Math.max(row - placement.y, 0), placement.height - 1) * placement.width;
+                final int outRow = (row - y) * length + placement.x;
+                System.arraycopy(placement.pixels, sourceRow, out, outRow, placement.width);
+                if (gutter > 0) {
+                    Arrays.fill(out, outRow - gutter, outRow, placement.pixels[sourceRow]);
+                    Arrays.fill(out, outRow + placement.width, outRow + placement.width + gutter,
+                            placement.pixels[sourceRow + placement.width - 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the placed textures sorted by their top row.
+     */
+    private synchronized List<Placement> getPlacements() {
+        if (!sorted) {
+            placements.sort(Comparator.comparingInt(placement->placement.y));
+            sorted = true;
+        }
+        return placements;
+    }
+
+    /**
+     * A texture placed on the page.
+     *
+     * @author Tyler Bucher
+     */
+    private static class Placement {
+
+        /**
+         * The argb pixels of the texture row by row.
+         */
+        final int[] pixels;
+
+        /**
+         * The left column of the texture on the page.
+         */
+        final int x;
+
+        /**
+         * The top row of the texture on the page.
+         */
+        final int y;
+
+        /**
+         * The width of the texture.
+         */
+        final int width;
+
+        /**
+         * The height of the texture.
+         */
+        final int height;
+
+        /**
+         * @param pixels the argb pixels of the texture row by row.
+         * @param x      the left column of the texture on the page.
+         * @param y      the top row of the texture on the page.
+         * @param width  the width of the texture.
+         * @param height the height of the texture.
+         */
+        Placement(@Nonnull final int[] pixels, final int x, final int y, final int width, final int height) {
+            this.pixels = pixels;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
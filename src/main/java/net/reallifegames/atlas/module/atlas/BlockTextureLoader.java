@@ -0,0 +1,268 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.module.atlas;
+
+import net.reallifegames.atlas.AtlasOptions;
+import net.reallifegames.atlas.asset.image.PngDecoder;
+import net.reallifegames.atlas.asset.source.AssetCache;
+import net.reallifegames.atlas.asset.source.AssetFileSystem;
+import net.reallifegames.atlas.asset.source.AssetSource;
+import net.reallifegames.atlas.asset.source.ZipAssetSource;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decodes the block textures of the mounted assets into argb images. Decoded textures of zip sources are kept in an {@link AssetCache} so
+ * a later run against the same archive can skip decoding.
+ *
+ * @author Tyler Bucher
+ */
+public class BlockTextureLoader {
+
+    /**
+     * The directory holding the block textures.
+     */
+    public static final String BLOCK_TEXTURE_DIR = "assets/minecraft/textures/blocks";
+
+    /**
+     * The name of the cached decoded texture artefact.
+     */
+    private static final String CACHE_ARTEFACT = "blocks-v3.textures";
+
+    /**
+     * Identifies a decoded texture artefact.
+     */
+    private static final int CACHE_MAGIC = 0x41544c31;
+
+    /**
+     * Decodes every block texture visible through the asset stack. Textures are decoded in parallel and the result is
+     * independent of the order the decoding finishes in.
+     *
+     * @param assets the indexed game assets.
+     * @param cache  the decoded texture cache or null to always decode.
+     * @return texture file name to decoded image, sorted by name.
+     *
+     * @throws IOException if a texture could not be read.
+     */
+    public static SortedMap<String, BufferedImage> load(@Nonnull final AssetFileSystem assets, @Nullable final AssetCache cache) throws IOException {
+        final ExecutorService executorService = Executors.newFixedThreadPool(AtlasOptions.THREADS);
+        try {
+            final SortedMap<String, Future<BufferedImage>> futureMap = new TreeMap<>();
+            final Map<AssetSource, Map<String, Future<BufferedImage>>> sourceMap = new HashMap<>();
+            for (final String fileName : assets.list(BLOCK_TEXTURE_DIR)) {
+                if (!fileName.endsWith(".png")) {
+                    continue;
+                }
+                final String path = BLOCK_TEXTURE_DIR + "/" + fileName;
+                final AssetSource source = assets.getSource(path);
+                if (source == null) {
+                    continue;
+                }
+                if (cache != null && source instanceof ZipAssetSource) {
+                    Map<String, Future<BufferedImage>> sourceTextures = sourceMap.get(source);
+                    if (sourceTextures == null) {
+                        sourceTextures = loadSource(executorService, source, cache);
+                        sourceMap.put(source, sourceTextures);
+                    }
+                    futureMap.put(fileName, sourceTextures.get(fileName));
+                } else {
+                    futureMap.put(fileName, executorService.submit(()->decode(source.read(path))));
+                }
+            }
+            final SortedMap<String, BufferedImage> textureMap = new TreeMap<>();
+            for (final Map.Entry<String, Future<BufferedImage>> entry : futureMap.entrySet()) {
+                textureMap.put(entry.getKey(), await(entry.getValue()));
+            }
+            return textureMap;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Loads all block textures of a source from the cache or decodes and caches them.
+     *
+     * @param executorService decodes the textures.
+     * @param source          the source to load.
+     * @param cache           the decoded texture cache.
+     * @return texture file name to decoded image.
+     *
+     * @throws IOException if a texture could not be read.
+     */
+    private static Map<String, Future<BufferedImage>> loadSource(@Nonnull final ExecutorService executorService,
+                                                                 @Nonnull final AssetSource source,
+                                                                 @Nonnull final AssetCache cache) throws IOException {
+        final String key = AssetCache.hash(new File(source.getName()));
+        final File cached = cache.get(key, CACHE_ARTEFACT);
+        if (cached != null) {
+            try {
+                final Map<String, Future<BufferedImage>> futureMap = new HashMap<>();
+                readTextures(cached).forEach((name, image)->futureMap.put(name, CompletableFuture.completedFuture(image)));
+                return futureMap;
+            } catch (IOException e) {
+                System.out.println("Ignoring unreadable texture cache " + cached + ".");
+            }
+        }
+        final Map<String, Future<BufferedImage>> futureMap = new HashMap<>();
+        for (final String fileName : source.list(BLOCK_TEXTURE_DIR)) {
+            if (fileName.endsWith(".png")) {
+                futureMap.put(fileName, executorService.submit(()->decode(source.read(BLOCK_TEXTURE_DIR + "/" + fileName))));
+            }
+        }
+        final Map<String, BufferedImage> textureMap = new HashMap<>();
+        for (final Map.Entry<String, Future<BufferedImage>> entry : futureMap.entrySet()) {
+            textureMap.put(entry.getKey(), await(entry.getValue()));
+        }
+        cache.put(key, CACHE_ARTEFACT, outputStream->writeTextures(outputStream, textureMap));
+        return futureMap;
+    }
+
+    /**
+     * Waits for a decoding task.
+     *
+     * @param future the task to wait for.
+     * @return the decoded image.
+     *
+     * @throws IOException if the texture could not be decoded or the thread was interrupted.
+     */
+    private static BufferedImage await(@Nonnull final Future<BufferedImage> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Texture decoding was interrupted.");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Decodes an image into an argb image. Png images use the {@link PngDecoder} and anything else falls back to
+     * {@link ImageIO}.
+     *
+     * @param data the encoded image.
+     * @return the decoded image.
+     *
+     * @throws IOException if the image could not be decoded.
+     */
+    static BufferedImage decode(@Nonnull final byte[] data) throws IOException {
+        if (PngDecoder.isPng(data)) {
+            return PngDecoder.decode(data);
+        }
+        final BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+        if (image == null) {
+            throw new IOException("Unsupported image format.");
+        }
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            return image;
+        }
+        // Every decoded image is TYPE_INT_ARGB, so its raster can be read as argb pixels directly
+        final BufferedImage argbImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D graphics = argbImage.createGraphics();
+        graphics.setComposite(AlphaComposite.Src);
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+        return argbImage;
+    }
+
+    /**
+     * Writes decoded textures as argb pixels.
+     *
+     * @param outputStream the stream to write to.
+     * @param textureMap   the textures to write.
+     * @throws IOException if the textures could not be written.
+     */
+    private static void writeTextures(@Nonnull final OutputStream outputStream, @Nonnull final Map<String, BufferedImage> textureMap) throws IOException {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            final DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(outputStream, deflater, 65536);
+            final DataOutputStream dataOutputStream = new DataOutputStream(deflaterOutputStream);
+            dataOutputStream.writeInt(CACHE_MAGIC);
+            dataOutputStream.writeInt(textureMap.size());
+            for (final Map.Entry<String, BufferedImage> entry : textureMap.entrySet()) {
+                final BufferedImage image = entry.getValue();
+                final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+                final ByteBuffer buffer = ByteBuffer.allocate(pixels.length * 4);
+                buffer.asIntBuffer().put(pixels);
+                dataOutputStream.writeUTF(entry.getKey());
+                dataOutputStream.writeInt(image.getWidth());
+                dataOutputStream.writeInt(image.getHeight());
+                dataOutputStream.write(buffer.array());
+            }
+            dataOutputStream.flush();
+            deflaterOutputStream.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Reads textures written by {@link #writeTextures(OutputStream, Map)}.
+     *
+     * @param file the cached artefact.
+     * @return texture file name to decoded image.
+     *
+     * @throws IOException if the artefact could not be read.
+     */
+    private static Map<String, BufferedImage> readTextures(@Nonnull final File file) throws IOException {
+        try (final DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(new FileInputStream(file)), 65536))) {
+            if (dataInputStream.readInt() != CACHE_MAGIC) {
+                throw new IOException("Invalid texture cache.");
+            }
+            final int count = dataInputStream.readInt();
+            final Map<String, BufferedImage> textureMap = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                final String name = dataInputStream.readUTF();
+                final int width = dataInputStream.readInt();
+                final int height = dataInputStream.readInt();
+                final byte[] bytes = new byte[width * height * 4];
+                dataInputStream.readFully(bytes);
+                final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                ByteBuffer.wrap(bytes).asIntBuffer().get(((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+                textureMap.put(name, image);
+            }
+            return textureMap;
+        }
+    }
+}
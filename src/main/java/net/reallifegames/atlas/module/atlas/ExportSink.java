@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.module.atlas;
+
+import net.reallifegames.atlas.AtlasOptions;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Receives the exported WebGL-Map files and writes them straight into the output archive as they are produced.
+ *
+ * @author Tyler Bucher
+ */
+public class ExportSink implements Closeable {
+
+    /**
+     * The output archive.
+     */
+    private final ZipWriter zipWriter;
+
+    /**
+     * The amount of files written.
+     */
+    private int fileCount;
+
+    /**
+     * The amount of uncompressed bytes written.
+     */
+    private long byteCount;
+
+    /**
+     * @param zipName the path of the output archive.
+     * @throws IOException if the archive could not be created.
+     */
+    public ExportSink(@Nonnull final String zipName) throws IOException {
+        zipWriter = new ZipWriter(new FileOutputStream(zipName), AtlasOptions.ZIP_LEVEL, AtlasOptions.THREADS);
+    }
+
+    /**
+     * Adds a file to the output archive.
+     *
+     * @param name the path of the file inside of the archive.
+     * @param data the file contents, must not be modified afterwards.
+     * @throws IOException if the file could not be written.
+     */
+    public synchronized void write(@Nonnull final String name, @Nonnull final byte[] data) throws IOException {
+        zipWriter.add(name, data);
+        fileCount++;
+        byteCount += data.length;
+    }
+
+    /**
+     * Finishes the output archive.
+     *
+     * @throws IOException if the archive could not be finished.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        zipWriter.close();
+        System.out.println(String.format("Exported %d files (%.2f MB).", fileCount, byteCount / 1048576.0));
+    }
+}
@@ -23,62 +23,346 @@
  */
 package net.reallifegames.atlas.module.atlas;
 
-import org.joml.Vector4f;
-
 import javax.annotation.Nonnull;
-import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * Creates a new texture atlas with mapped coordinates.
+ * Creates a new texture atlas with mapped coordinates. The atlas is split into equally sized pages, which can be bound
+ * as the layers of a texture array. Atlases packed per render layer append the pages of every further layer, which may
+ * have a different size. Every placed texture gets a dense int id, its uv rectangle and page are stored in flat arrays
+ * indexed by that id. Once packing is done the atlas is frozen, from then on it is read only and the per id getters are
+ * plain array reads without a lock.
  *
  * @author Tyler Bucher
  */
 public class TextureAtlas {
 
     /**
-     * The atlas as a image
+     * The side length of the pages the atlas was created with.
      */
-    private final BufferedImage atlas;
+    private final int length;
 
     /**
-     * The size of the texture atlas.
+     * The width of the border around every texture.
      */
-    private final int length;
+    private final int gutter;
+
+    /**
+     * The pages of the atlas.
+     */
+    private final List<AtlasPage> pages = new ArrayList<>();
+
+    /**
+     * Texture name to texture id. Duplicate textures share the id of the texture they were merged into.
+     */
+    private final HashMap<String, Integer> idMap = new HashMap<>();
+
+    /**
+     * The min u, min v, max u and max v of every texture id.
+     */
+    private float[] uvs = new float[64];
+
+    /**
+     * The part of the untrimmed texture which is left after trimming, as min u, min v, max u and max v fractions of
+     * the untrimmed texture for every texture id.
+     */
+    private float[] trims = new float[64];
+
+    /**
+     * The page of every texture id.
+     */
+    private int[] idPages = new int[16];
+
+    /**
+     * The {@link AlphaClass} ordinal of every texture id.
+     */
+    private byte[] alphaClasses = new byte[16];
+
+    /**
+     * The alpha weighted mean argb colour and the dominant argb colour of every texture id.
+     */
+    private int[] colors = new int[32];
+
+    /**
+     * The amount of handed out texture ids.
+     */
+    private int idCount;
 
     /**
-     * The uv coordinate map.
+     * True once the atlas no longer accepts textures or pages.
      */
-    private final HashMap<String, Vector4f> uvMap;
+    private volatile boolean frozen;
 
     /**
-     * @param atlas  atlas as a image
-     * @param length size of the texture atlas.
+     * @param length    the side length of every page.
+     * @param pageCount the amount of pages.
+     * @param gutter    the width of the border around every texture.
      */
-    public TextureAtlas(@Nonnull final BufferedImage atlas, final int length) {
-        this.atlas = atlas;
+    public TextureAtlas(final int length, final int pageCount, final int gutter) {
         this.length = length;
-        uvMap = new HashMap<>();
+        this.gutter = gutter;
+        addPages(length, pageCount);
+    }
+
+    /**
+     * Appends empty pages to the atlas.
+     *
+     * @param length    the side length of every added page.
+     * @param pageCount the amount of pages to add.
+     * @return the index of the first added page.
+     */
+    public synchronized int addPages(final int length, final int pageCount) {
+        checkNotFrozen();
+        final int firstPage = pages.size();
+        for (int i = 0; i < pageCount; i++) {
+            pages.add(new AtlasPage(length, gutter));
+        }
+        return firstPage;
+    }
+
+    /**
+     * Places a texture into the atlas, hands out its texture id and stores its uv coordinates, alpha class and colours.
+     * The alpha class and colours are gathered before the atlas is locked.
+     *
+     * @param id     the id of the texture.
+     * @param page   the page to place the texture on.
+     * @param pixels the argb pixels of the texture row by row, at least width * height long.
+     * @param x      the left column of the texture on the page.
+     * @param y      the top row of the texture on the page.
+     * @param width  the width of the texture.
+     * @param height the height of the texture.
+     */
+    public void place(@Nonnull final String id,
+                      final int page,
+                      @Nonnull final int[] pixels,
+                      final int x,
+                      final int y,
+                      final int width,
+                      final int height) {
+        final TextureStats stats = TextureStats.of(pixels, width * height);
+        synchronized (this) {
+            checkNotFrozen();
+            place(id, page, pixels, x, y, width, height, stats);
+        }
+    }
+
+    /**
+     * Places a texture into the atlas while holding the atlas lock.
+     *
+     * @param id     the id of the texture.
+     * @param page   the page to place the texture on.
+     * @param pixels the argb pixels of the texture row by row, at least width * height long.
+     * @param x      the left column of the texture on the page.
+     * @param y      the top row of the texture on the page.
+     * @param width  the width of the texture.
+     * @param height the height of the texture.
+     * @param stats  the alpha class and colours of the texture.
+     */
+    private void place(@Nonnull final String id,
+                       final int page,
+                       @Nonnull final int[] pixels,
+                       final int x,
+                       final int y,
+                       final int width,
+                       final int height,
+                       @Nonnull final TextureStats stats) {
+        final AtlasPage atlasPage = pages.get(page);
+        atlasPage.place(pixels, x, y, width, height);
+        final int length = atlasPage.getWidth();
+        if (idCount == idPages.length) {
+            uvs = Arrays.copyOf(uvs, uvs.length * 2);
+            trims = Arrays.copyOf(trims, trims.length * 2);
+            idPages = Arrays.copyOf(idPages, idPages.length * 2);
+            alphaClasses = Arrays.copyOf(alphaClasses, alphaClasses.length * 2);
+            colors = Arrays.copyOf(colors, colors.length * 2);
+        }
+        uvs[idCount * 4] = x / (float) length;
+        uvs[idCount * 4 + 1] = y / (float) length;
+        uvs[idCount * 4 + 2] = (x + width) / (float) length;
+        uvs[idCount * 4 + 3] = (y + height) / (float) length;
+        trims[idCount * 4] = 0;
+        trims[idCount * 4 + 1] = 0;
+        trims[idCount * 4 + 2] = 1;
+        trims[idCount * 4 + 3] = 1;
+        idPages[idCount] = page;
+        alphaClasses[idCount] = (byte) stats.alphaClass.ordinal();
+        colors[idCount * 2] = stats.meanColor;
+        colors[idCount * 2 + 1] = stats.dominantColor;
+        idMap.put(id, idCount++);
+    }
+
+    /**
+     * Maps a texture to the texture id of an already placed texture with the same pixels.
+     *
+     * @param id       the id of the duplicate texture.
+     * @param targetId the id of the placed texture.
+     */
+    public synchronized void alias(@Nonnull final String id, @Nonnull final String targetId) {
+        checkNotFrozen();
+        final Integer textureId = idMap.get(targetId);
+        if (textureId != null) {
+            idMap.put(id, textureId);
+        }
+    }
+
+    /**
+     * Records that a placed texture had its transparent border trimmed off.
+     *
+     * @param id   the id of the texture.
+     * @param minU the left edge of the trimmed texture as a fraction of the untrimmed width.
+     * @param minV the top edge of the trimmed texture as a fraction of the untrimmed height.
+     * @param maxU the right edge of the trimmed texture as a fraction of the untrimmed width.
+     * @param maxV the bottom edge of the trimmed texture as a fraction of the untrimmed height.
+     */
+    public synchronized void trim(@Nonnull final String id, final float minU, final float minV, final float maxU, final float maxV) {
+        checkNotFrozen();
+        final Integer textureId = idMap.get(id);
+        if (textureId != null) {
+            trims[textureId * 4] = minU;
+            trims[textureId * 4 + 1] = minV;
+            trims[textureId * 4 + 2] = maxU;
+            trims[textureId * 4 + 3] = maxV;
+        }
+    }
+
+    /**
+     * Ends packing. The id arrays are cut to the handed out ids and the atlas becomes read only, so the getters below
+     * need no lock. Freeze the atlas before it is handed to the threads which build models.
+     */
+    public synchronized void freeze() {
+        if (!frozen) {
+            uvs = Arrays.copyOf(uvs, idCount * 4);
+            trims = Arrays.copyOf(trims, idCount * 4);
+            idPages = Arrays.copyOf(idPages, idCount);
+            alphaClasses = Arrays.copyOf(alphaClasses, idCount);
+            colors = Arrays.copyOf(colors, idCount * 2);
+            frozen = true;
+        }
+    }
+
+    /**
+     * @return true once the atlas is read only.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Makes sure the atlas still accepts textures.
+     *
+     * @throws IllegalStateException if the atlas is frozen.
+     */
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("The texture atlas is frozen.");
+        }
+    }
+
+    /**
+     * Resolves a texture name to its texture id. Resolve names once and keep the id, the uvs are then plain array reads.
+     * Like the other getters this is only valid once the atlas is frozen.
+     *
+     * @param id the name of the texture.
+     * @return the texture id or -1 if the texture is not in the atlas.
+     */
+    public int getTextureId(@Nonnull final String id) {
+        final Integer textureId = idMap.get(id);
+        return textureId == null ? -1 : textureId;
+    }
+
+    /**
+     * @return the amount of handed out texture ids.
+     */
+    public int getTextureCount() {
+        return idCount;
+    }
+
+    /**
+     * @return texture name to texture id, duplicate textures share the id of the placed texture.
+     */
+    public Map<String, Integer> getTextureIds() {
+        return Collections.unmodifiableMap(idMap);
+    }
+
+    /**
+     * @return the min u, min v, max u and max v of every texture id, 4 floats per id.
+     */
+    public float[] getUvs() {
+        return uvs;
+    }
+
+    /**
+     * @return the min u, min v, max u and max v of the part of the untrimmed texture which is in the atlas, 4 floats
+     * per id.
+     */
+    public float[] getTrims() {
+        return trims;
+    }
+
+    /**
+     * @param textureId the texture id.
+     * @return true if the texture had its transparent border trimmed off.
+     */
+    public boolean isTrimmed(final int textureId) {
+        return trims[textureId * 4] != 0 || trims[textureId * 4 + 1] != 0 || trims[textureId * 4 + 2] != 1
+                || trims[textureId * 4 + 3] != 1;
+    }
+
+    /**
+     * @param textureId the texture id.
+     * @return the page the texture is on.
+     */
+    public int getPage(final int textureId) {
+        return idPages[textureId];
+    }
+
+    /**
+     * @param textureId the texture id.
+     * @return how the texture uses its alpha channel.
+     */
+    public AlphaClass getAlphaClass(final int textureId) {
+        return AlphaClass.values()[alphaClasses[textureId]];
+    }
+
+    /**
+     * @param textureId the texture id.
+     * @return the alpha weighted mean argb colour of the texture.
+     */
+    public int getMeanColor(final int textureId) {
+        return colors[textureId * 2];
+    }
+
+    /**
+     * @param textureId the texture id.
+     * @return the argb colour covering most of the texture.
+     */
+    public int getDominantColor(final int textureId) {
+        return colors[textureId * 2 + 1];
     }
 
     /**
-     * @return the atlas as a image.
+     * @return the pages of the atlas.
      */
-    public BufferedImage getAtlas() {
-        return atlas;
+    public List<AtlasPage> getPages() {
+        return Collections.unmodifiableList(pages);
     }
 
     /**
-     * @return the size of the texture atlas.
+     * @return the side length of the pages the atlas was created with.
      */
     public int getLength() {
         return length;
     }
 
     /**
-     * @return the uv coordinate map.
+     * @return the width of the border around every texture.
      */
-    public HashMap<String, Vector4f> getUvMap() {
-        return uvMap;
+    public int getGutter() {
+        return gutter;
     }
 }
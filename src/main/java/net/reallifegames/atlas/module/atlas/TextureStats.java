@@ -0,0 +1,172 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.module.atlas;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The {@link AlphaClass}, alpha weighted mean colour and dominant colour of a texture, gathered in one pass over its
+ * pixels. The dominant colour is the alpha weighted mean of the 4 bit per channel colour bucket holding the most alpha,
+ * so a few bright pixels do not shift it the way they shift the mean. Fully transparent textures get transparent black
+ * for both colours.
+ *
+ * @author Tyler Bucher
+ */
+class TextureStats {
+
+    /**
+     * The colour buckets of every thread, only the buckets a texture touched are cleared after it.
+     */
+    private static final ThreadLocal<Buckets> BUCKETS = ThreadLocal.withInitial(Buckets::new);
+
+    /**
+     * How the texture uses its alpha channel.
+     */
+    final AlphaClass alphaClass;
+
+    /**
+     * The alpha weighted mean argb colour.
+     */
+    final int meanColor;
+
+    /**
+     * The argb colour covering most of the texture.
+     */
+    final int dominantColor;
+
+    /**
+     * @param alphaClass    how the texture uses its alpha channel.
+     * @param meanColor     the alpha weighted mean argb colour.
+     * @param dominantColor the argb colour covering most of the texture.
+     */
+    private TextureStats(@Nonnull final AlphaClass alphaClass, final int meanColor, final int dominantColor) {
+        this.alphaClass = alphaClass;
+        this.meanColor = meanColor;
+        this.dominantColor = dominantColor;
+    }
+
+    /**
+     * Gathers the stats of a texture.
+     *
+     * @param pixels the argb pixels of the texture row by row.
+     * @param count  the amount of pixels of the texture.
+     * @return the stats of the texture.
+     */
+    static TextureStats of(@Nonnull final int[] pixels, final int count) {
+        final Buckets buckets = BUCKETS.get();
+        final long[] bucketWeights = buckets.weights;
+        final long[] bucketSums = buckets.sums;
+        final int[] touched = buckets.touched;
+        int touchedCount = 0;
+        boolean transparent = false;
+        boolean translucent = false;
+        long weight = 0;
+        long red = 0;
+        long green = 0;
+        long blue = 0;
+        int dominant = -1;
+        for (int i = 0; i < count; i++) {
+            final int alpha = pixels[i] >>> 24;
+            if (alpha == 0) {
+                transparent = true;
+                continue;
+            }
+            if (alpha != 0xFF) {
+                translucent = true;
+            }
+            final int r = (pixels[i] >> 16) & 0xFF;
+            final int g = (pixels[i] >> 8) & 0xFF;
+            final int b = pixels[i] & 0xFF;
+            weight += alpha;
+            red += r * alpha;
+            green += g * alpha;
+            blue += b * alpha;
+            final int bucket = ((r >> 4) << 8) | ((g >> 4) << 4) | (b >> 4);
+            if (bucketWeights[bucket] == 0) {
+                touched[touchedCount++] = bucket;
+            }
+            bucketWeights[bucket] += alpha;
+            bucketSums[bucket * 4] += r * alpha;
+            bucketSums[bucket * 4 + 1] += g * alpha;
+            bucketSums[bucket * 4 + 2] += b * alpha;
+            bucketSums[bucket * 4 + 3]++;
+            if (dominant < 0 || bucketWeights[bucket] > bucketWeights[dominant]) {
+                dominant = bucket;
+            }
+        }
+        final AlphaClass alphaClass = translucent ? AlphaClass.TRANSLUCENT : transparent ? AlphaClass.CUTOUT : AlphaClass.OPAQUE;
+        if (weight == 0) {
+            return new TextureStats(alphaClass, 0, 0);
+        }
+        final int meanColor = toArgb(weight / count, red, green, blue, weight);
+        final long dominantWeight = bucketWeights[dominant];
+        final int dominantColor = toArgb(dominantWeight / bucketSums[dominant * 4 + 3], bucketSums[dominant * 4],
+                bucketSums[dominant * 4 + 1], bucketSums[dominant * 4 + 2], dominantWeight);
+        for (int i = 0; i < touchedCount; i++) {
+            final int bucket = touched[i];
+            bucketWeights[bucket] = 0;
+            bucketSums[bucket * 4] = 0;
+            bucketSums[bucket * 4 + 1] = 0;
+            bucketSums[bucket * 4 + 2] = 0;
+            bucketSums[bucket * 4 + 3] = 0;
+        }
+        return new TextureStats(alphaClass, meanColor, dominantColor);
+    }
+
+    /**
+     * @param alpha  the alpha of the colour.
+     * @param red    the alpha weighted red sum.
+     * @param green  the alpha weighted green sum.
+     * @param blue   the alpha weighted blue sum.
+     * @param weight the summed alpha.
+     * @return the rounded argb colour.
+     */
+    private static int toArgb(final long alpha, final long red, final long green, final long blue, final long weight) {
+        return (int) (alpha << 24 | ((red + weight / 2) / weight) << 16 | ((green + weight / 2) / weight) << 8
+                | (blue + weight / 2) / weight);
+    }
+
+    /**
+     * The colour buckets of one thread.
+     *
+     * @author Tyler Bucher
+     */
+    private static class Buckets {
+
+        /**
+         * The summed alpha of the pixels in every 4 bit per channel colour bucket.
+         */
+        final long[] weights = new long[4096];
+
+        /**
+         * The alpha weighted red, green and blue sums and the pixel count of every colour bucket, 4 longs per bucket.
+         */
+        final long[] sums = new long[4096 * 4];
+
+        /**
+         * The buckets the current texture added pixels to.
+         */
+        final int[] touched = new int[4096];
+    }
+}
@@ -23,17 +23,22 @@
  */
 package net.reallifegames.atlas.module.atlas;
 
+import net.reallifegames.atlas.AtlasOptions;
+import net.reallifegames.atlas.asset.source.ZipIndex;
+
 import javax.annotation.Nonnull;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.file.FileSystem;
-import java.util.List;
-import java.util.Objects;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Helps with zip operations.
@@ -43,52 +48,97 @@ import java.util.zip.ZipOutputStream;
 public class ZipManager {
 
     /**
-     * Attempts to extract a zip file to a location.
+     * The asset prefixes the atlas pipeline reads from.
+     */
+    public static final List<String> PIPELINE_PREFIXES = Collections.unmodifiableList(Arrays.asList(
+            "assets/minecraft/blockstates/",
+            "assets/minecraft/models/block/",
+            "assets/minecraft/textures/blocks/",
+            "assets/minecraft/textures/colormap/"
+    ));
+
+    /**
+     * Attempts to extract the assets of a zip file the atlas pipeline reads to a location.
      *
      * @param filePath the path to the zip file.
      * @param location the location to put the extracted.
+     * @return the extraction statistics.
+     *
      * @throws IOException if an I/O error has occurred.
      */
-    public static void extractZip(@Nonnull final String filePath, @Nonnull final String location) throws IOException {
-        // Load the zip file and unzip it
-        final byte[] buffer = new byte[8192];
-        final ZipInputStream zipInputStream = new ZipInputStream(new FileInputStream(filePath));
-        ZipEntry zipEntry = zipInputStream.getNextEntry();
-        // Loop through zip entries
-        while (zipEntry != null) {
-            // Crate zip save location
-            final File path = new File(location + zipEntry.getName());
-            if (!zipEntry.getName().startsWith("assets")) {
-                zipEntry = zipInputStream.getNextEntry();
-                continue;
-            }
-            if (zipEntry.isDirectory()) {
-                if (!path.exists()) {
-                    if (!path.mkdirs()) {
-                        System.out.println("Unable to make dir.");
+    public static ExtractionReport extractZip(@Nonnull final String filePath, @Nonnull final String location) throws IOException {
+        return extractZip(filePath, location, PIPELINE_PREFIXES, AtlasOptions.THREADS);
+    }
+
+    /**
+     * Attempts to extract the entries of a zip file which start with one of the given prefixes. Entries are inflated in
+     * parallel straight from the archive. Entries whose path would end up outside of the location are rejected.
+     *
+     * @param filePath the path to the zip file.
+     * @param location the location to put the extracted.
+     * @param prefixes the entry name prefixes to extract.
+     * @param threads  the maximum amount of entries to inflate at the same time.
+     * @return the extraction statistics.
+     *
+     * @throws IOException if an I/O error has occurred or an entry would be extracted outside of the location.
+     */
+    public static ExtractionReport extractZip(@Nonnull final String filePath,
+                                              @Nonnull final String location,
+                                              @Nonnull final Collection<String> prefixes,
+                                              final int threads) throws IOException {
+        final long startTime = System.nanoTime();
+        final Path root = Paths.get(location).toAbsolutePath().normalize();
+        try (final ZipIndex zipIndex = new ZipIndex(filePath)) {
+            // Select entries, resolve their targets and create their directories up front
+            final List<ZipIndex.Entry> selected = new ArrayList<>();
+            final Map<ZipIndex.Entry, Path> targets = new HashMap<>();
+            final Set<Path> directories = new HashSet<>();
+            for (final ZipIndex.Entry entry : zipIndex.getEntries()) {
+                for (final String prefix : prefixes) {
+                    if (entry.name.startsWith(prefix)) {
+                        final Path target = root.resolve(entry.name).normalize();
+                        if (!target.startsWith(root) || target.equals(root)) {
+                            throw new IOException("Entry " + entry.name + " of " + filePath + " is outside of " + location + ".");
+                        }
+                        selected.add(entry);
+                        targets.put(entry, target);
+                        directories.add(target.getParent());
+                        break;
                     }
                 }
-                zipEntry = zipInputStream.getNextEntry();
-                continue;
             }
-            if (!path.getParentFile().exists()) {
-                if (!path.getParentFile().mkdirs()) {
-                    System.out.println("Unable to make dir.");
-                }
+            for (final Path directory : directories) {
+                Files.createDirectories(directory);
             }
-            final FileOutputStream fos = new FileOutputStream(path);
-            int len;
-            // Loop through entry bytes
-            while ((len = zipInputStream.read(buffer)) > 0) {
-                fos.write(buffer, 0, len);
+            // Read the archive front to back
+            selected.sort(Comparator.comparingLong(entry->entry.localHeaderOffset));
+            final AtomicLong byteCount = new AtomicLong();
+            final ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, threads));
+            try {
+                final List<Future<?>> futures = new ArrayList<>(selected.size());
+                for (final ZipIndex.Entry entry : selected) {
+                    futures.add(executorService.submit(()->{
+                        final byte[] data = zipIndex.read(entry);
+                        Files.write(targets.get(entry), data);
+                        byteCount.addAndGet(data.length);
+                        return null;
+                    }));
+                }
+                for (final Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Extraction of " + filePath + " was interrupted.");
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            } finally {
+                executorService.shutdownNow();
             }
-            // Save entry
-            fos.close();
-            zipEntry = zipInputStream.getNextEntry();
+            final ExtractionReport report = new ExtractionReport(selected.size(), byteCount.get(), System.nanoTime() - startTime);
+            System.out.println(report);
+            return report;
         }
-        // Close zip
-        zipInputStream.closeEntry();
-        zipInputStream.close();
     }
 
     /**
@@ -114,26 +164,57 @@ public class ZipManager {
         }
     }
 
-    public static void compressFiles(final List<File> files, final String zipName) throws IOException {
-        final FileOutputStream fos = new FileOutputStream(zipName);
-        final ZipOutputStream zipOut = new ZipOutputStream(fos);
-        for (final File srcFile : files) {
-            if (srcFile.isDirectory()) {
-                for (final File file : Objects.requireNonNull(srcFile.listFiles())) {
-                    final FileInputStream fis = new FileInputStream(file);
-                    final ZipEntry zipEntry = new ZipEntry(srcFile.getName() + File.separator + file.getName());
-                    zipOut.putNextEntry(zipEntry);
+    /**
+     * Statistics about a finished extraction.
+     *
+     * @author Tyler Bucher
+     */
+    public static class ExtractionReport {
+
+        /**
+         * The amount of extracted entries.
+         */
+        public final int entries;
 
-                    int length;
-                    final byte[] bytes = new byte[1024];
-                    while ((length = fis.read(bytes)) >= 0) {
-                        zipOut.write(bytes, 0, length);
-                    }
-                    fis.close();
-                }
-            }
+        /**
+         * The amount of uncompressed bytes written.
+         */
+        public final long bytes;
+
+        /**
+         * The time the extraction took in nanoseconds.
+         */
+        public final long nanos;
+
+        /**
+         * @param entries the amount of extracted entries.
+         * @param bytes   the amount of uncompressed bytes written.
+         * @param nanos   the time the extraction took in nanoseconds.
+         */
+        ExtractionReport(final int entries, final long bytes, final long nanos) {
+            this.entries = entries;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return the amount of entries extracted per second.
+         */
+        public double getEntriesPerSecond() {
+            return entries / Math.max(nanos / 1e9, 1e-9);
+        }
+
+        /**
+         * @return the amount of uncompressed bytes written per second.
+         */
+        public double getBytesPerSecond() {
+            return bytes / Math.max(nanos / 1e9, 1e-9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Extracted %d entries (%.2f MB) in %d ms, %.0f entries/s, %.2f MB/s.",
+                    entries, bytes / 1048576.0, nanos / 1000000, getEntriesPerSecond(), getBytesPerSecond() / 1048576.0);
         }
-        zipOut.close();
-        fos.close();
     }
 }
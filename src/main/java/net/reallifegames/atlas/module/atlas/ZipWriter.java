@@ -0,0 +1,473 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.module.atlas;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a zip file whose entries are compressed in parallel. Entries are deflated on a thread pool, large entries are
+ * split into blocks which are deflated independently like pigz does, and the results are written in the order the
+ * entries were added. Entries which are already compressed, such as png images, or which do not shrink are stored.
+ *
+ * @author Tyler Bucher
+ */
+public class ZipWriter implements Closeable {
+
+    /**
+     * File extensions of formats which are already compressed.
+     */
+    private static final Set<String> STORED_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "png", "jpg", "jpeg", "gif", "zip", "jar", "gz", "ogg", "ktx2"
+    ));
+
+    /**
+     * Entries larger than this are split into blocks.
+     */
+    private static final int BLOCK_SIZE = 1 << 18;
+
+    /**
+     * The amount of history each block is primed with.
+     */
+    private static final int DICTIONARY_SIZE = 1 << 15;
+
+    /**
+     * The stream the zip file is written to.
+     */
+    private final OutputStream outputStream;
+
+    /**
+     * The deflate compression level.
+     */
+    private final int level;
+
+    /**
+     * Compresses entry blocks.
+     */
+    private final ExecutorService executorService;
+
+    /**
+     * The maximum amount of entries waiting to be written.
+     */
+    private final int maxPending;
+
+    /**
+     * Entries which have been added but not yet written, in order.
+     */
+    private final Deque<PendingEntry> pendingEntries = new ArrayDeque<>();
+
+    /**
+     * Entries which have been written, for the central directory.
+     */
+    private final List<WrittenEntry> writtenEntries = new ArrayList<>();
+
+    /**
+     * The entry names which have been added.
+     */
+    private final Set<String> names = new HashSet<>();
+
+    /**
+     * The amount of bytes written so far.
+     */
+    private long position;
+
+    /**
+     * @param outputStream the stream to write the zip file to.
+     * @param level        the deflate compression level.
+     * @param threads      the amount of threads used to compress entries.
+     */
+    public ZipWriter(@Nonnull final OutputStream outputStream, final int level, final int threads) {
+        this.outputStream = new BufferedOutputStream(outputStream, 65536);
+        this.level = level;
+        this.executorService = Executors.newFixedThreadPool(Math.max(1, threads));
+        this.maxPending = Math.max(1, threads) * 4;
+    }
+
+    /**
+     * Queues an entry for compression. The entry is written once all entries added before it have been written.
+     *
+     * @param name the entry name.
+     * @param data the uncompressed entry data, must not be modified afterwards.
+     * @throws IOException if a previous entry could not be written.
+     */
+    public void add(@Nonnull final String name, @Nonnull final byte[] data) throws IOException {
+        if (!names.add(name)) {
+            throw new ZipException("Duplicate entry: " + name);
+        }
+        final PendingEntry pendingEntry = new PendingEntry(name, data);
+        pendingEntry.crc = executorService.submit(()->{
+            final CRC32 crc32 = new CRC32();
+            crc32.update(data);
+            return crc32.getValue();
+        });
+        if (!isStored(name) && level != Deflater.NO_COMPRESSION) {
+            final int blockCount = Math.max(1, (data.length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+            for (int i = 0; i < blockCount; i++) {
+                final int start = i * BLOCK_SIZE;
+                final int end = Math.min(data.length, start + BLOCK_SIZE);
+                final boolean last = i == blockCount - 1;
+                pendingEntry.blocks.add(executorService.submit(()->deflateBlock(data, start, end, last)));
+            }
+        }
+        pendingEntries.addLast(pendingEntry);
+        // Write finished entries and keep the amount of buffered entries bounded
+        while (!pendingEntries.isEmpty() && (pendingEntries.size() > maxPending || pendingEntries.peekFirst().isDone())) {
+            write(pendingEntries.pollFirst());
+        }
+    }
+
+    /**
+     * @param name the entry name.
+     * @return true if the entry should be stored without compression.
+     */
+    private static boolean isStored(@Nonnull final String name) {
+        final int dot = name.lastIndexOf('.');
+        return dot != -1 && STORED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Deflates one block of an entry. Every block except the first is primed with the data preceding it and every block
+     * except the last ends on a byte boundary, so the raw blocks can simply be concatenated.
+     *
+     * @param data  the entry data.
+     * @param start the start of the block.
+     * @param end   the end of the block.
+     * @param last  states if this is the last block of the entry.
+     * @return the raw deflated block.
+     */
+    private byte[] deflateBlock(@Nonnull final byte[] data, final int start, final int end, final boolean last) {
+        final Deflater deflater = new Deflater(level, true);
+        try {
+            if (start > 0) {
+                final int dictionaryStart = Math.max(0, start - DICTIONARY_SIZE);
+                deflater.setDictionary(data, dictionaryStart, start - dictionaryStart);
+            }
+            deflater.setInput(data, start, end - start);
+            final ByteArrayOutputStream blockStream = new ByteArrayOutputStream((end - start) / 2 + 64);
+            final byte[] buffer = new byte[65536];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    blockStream.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    blockStream.write(buffer, 0, count);
+                } while (count == buffer.length || !deflater.needsInput());
+            }
+            return blockStream.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Writes a compressed entry to the zip file.
+     *
+     * @param pendingEntry the entry to write.
+     * @throws IOException if the entry could not be written.
+     */
+    private void write(@Nonnull final PendingEntry pendingEntry) throws IOException {
+        final List<byte[]> blocks = new ArrayList<>(pendingEntry.blocks.size());
+        long compressedSize = 0;
+        for (final Future<byte[]> block : pendingEntry.blocks) {
+            final byte[] bytes = await(block);
+            blocks.add(bytes);
+            compressedSize += bytes.length;
+        }
+        final byte[] data = pendingEntry.data;
+        // Fall back to storing entries which do not shrink
+        final boolean stored = blocks.isEmpty() || compressedSize >= data.length;
+        if (stored) {
+            blocks.clear();
+            blocks.add(data);
+            compressedSize = data.length;
+        }
+        if (position > 0xFFFFFFFFL || compressedSize > 0xFFFFFFFFL || writtenEntries.size() >= 0xFFFF) {
+            throw new ZipException("Zip64 archives are not supported.");
+        }
+        final WrittenEntry writtenEntry = new WrittenEntry(pendingEntry.name.getBytes(StandardCharsets.UTF_8),
+                stored ? 0 : 8, await(pendingEntry.crc), compressedSize, data.length, position);
+        writeLocalHeader(writtenEntry);
+        for (final byte[] block : blocks) {
+            outputStream.write(block);
+            position += block.length;
+        }
+        writtenEntries.add(writtenEntry);
+    }
+
+    /**
+     * Waits for a compression task.
+     *
+     * @param future the task to wait for.
+     * @param <T>    the task result type.
+     * @return the task result.
+     *
+     * @throws IOException if the task failed or the thread was interrupted.
+     */
+    private static <T> T await(@Nonnull final Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Zip compression was interrupted.");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * @param entry the entry to write the local file header of.
+     * @throws IOException if the header could not be written.
+     */
+    private void writeLocalHeader(@Nonnull final WrittenEntry entry) throws IOException {
+        writeInt(0x04034b50);
+        writeShort(20);
+        writeShort(0x0800);
+        writeShort(entry.method);
+        writeShort(entry.dosTime);
+        writeShort(entry.dosDate);
+        writeInt((int) entry.crc);
+        writeInt((int) entry.compressedSize);
+        writeInt((int) entry.size);
+        writeShort(entry.name.length);
+        writeShort(0);
+        outputStream.write(entry.name);
+        position += entry.name.length;
+    }
+
+    /**
+     * Writes the remaining entries and the central directory, then closes the stream.
+     *
+     * @throws IOException if the zip file could not be finished.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            while (!pendingEntries.isEmpty()) {
+                write(pendingEntries.pollFirst());
+            }
+            final long centralDirectoryOffset = position;
+            for (final WrittenEntry entry : writtenEntries) {
+                writeInt(0x02014b50);
+                writeShort(20);
+                writeShort(20);
+                writeShort(0x0800);
+                writeShort(entry.method);
+                writeShort(entry.dosTime);
+                writeShort(entry.dosDate);
+                writeInt((int) entry.crc);
+                writeInt((int) entry.compressedSize);
+                writeInt((int) entry.size);
+                writeShort(entry.name.length);
+                writeShort(0);
+                writeShort(0);
+                writeShort(0);
+                writeShort(0);
+                writeInt(0);
+                writeInt((int) entry.localHeaderOffset);
+                outputStream.write(entry.name);
+                position += entry.name.length;
+            }
+            if (position > 0xFFFFFFFFL) {
+                throw new ZipException("Zip64 archives are not supported.");
+            }
+            final long centralDirectorySize = position - centralDirectoryOffset;
+            writeInt(0x06054b50);
+            writeShort(0);
+            writeShort(0);
+            writeShort(writtenEntries.size());
+            writeShort(writtenEntries.size());
+            writeInt((int) centralDirectorySize);
+            writeInt((int) centralDirectoryOffset);
+            writeShort(0);
+            outputStream.flush();
+        } finally {
+            executorService.shutdownNow();
+            outputStream.close();
+        }
+    }
+
+    /**
+     * @param value the little endian short to write.
+     * @throws IOException if the value could not be written.
+     */
+    private void writeShort(final int value) throws IOException {
+        outputStream.write(value & 0xFF);
+        outputStream.write((value >>> 8) & 0xFF);
+        position += 2;
+    }
+
+    /**
+     * @param value the little endian int to write.
+     * @throws IOException if the value could not be written.
+     */
+    private void writeInt(final int value) throws IOException {
+        writeShort(value & 0xFFFF);
+        writeShort((value >>> 16) & 0xFFFF);
+    }
+
+    /**
+     * An entry which is being compressed.
+     *
+     * @author Tyler Bucher
+     */
+    private static class PendingEntry {
+
+        /**
+         * The entry name.
+         */
+        final String name;
+
+        /**
+         * The uncompressed entry data.
+         */
+        final byte[] data;
+
+        /**
+         * The crc-32 of the uncompressed data.
+         */
+        Future<Long> crc;
+
+        /**
+         * The deflated blocks in order, empty if the entry is stored.
+         */
+        final List<Future<byte[]>> blocks = new ArrayList<>();
+
+        /**
+         * @param name the entry name.
+         * @param data the uncompressed entry data.
+         */
+        PendingEntry(@Nonnull final String name, @Nonnull final byte[] data) {
+            this.name = name;
+            this.data = data;
+        }
+
+        /**
+         * @return true if all compression tasks of this entry have finished.
+         */
+        boolean isDone() {
+            if (!crc.isDone()) {
+                return false;
+            }
+            for (final Future<byte[]> block : blocks) {
+                if (!block.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * An entry which has been written, kept for the central directory.
+     *
+     * @author Tyler Bucher
+     */
+    private static class WrittenEntry {
+
+        /**
+         * The utf-8 entry name.
+         */
+        final byte[] name;
+
+        /**
+         * The compression method.
+         */
+        final int method;
+
+        /**
+         * The crc-32 of the uncompressed data.
+         */
+        final long crc;
+
+        /**
+         * The size of the compressed data.
+         */
+        final long compressedSize;
+
+        /**
+         * The size of the uncompressed data.
+         */
+        final long size;
+
+        /**
+         * The offset of the local file header.
+         */
+        final long localHeaderOffset;
+
+        /**
+         * The ms-dos modification time.
+         */
+        final int dosTime;
+
+        /**
+         * The ms-dos modification date.
+         */
+        final int dosDate;
+
+        /**
+         * @param name              the utf-8 entry name.
+         * @param method            the compression method.
+         * @param crc               the crc-32 of the uncompressed data.
+         * @param compressedSize    the size of the compressed data.
+         * @param size              the size of the uncompressed data.
+         * @param localHeaderOffset the offset of the local file header.
+         */
+        WrittenEntry(@Nonnull final byte[] name,
+                     final int method,
+                     final long crc,
+                     final long compressedSize,
+                     final long size,
+                     final long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+            final Calendar calendar = Calendar.getInstance();
+            this.dosTime = (calendar.get(Calendar.HOUR_OF_DAY) << 11) | (calendar.get(Calendar.MINUTE) << 5)
+                    | (calendar.get(Calendar.SECOND) >> 1);
+            this.dosDate = ((calendar.get(Calendar.YEAR) - 1980) << 9) | ((calendar.get(Calendar.MONTH) + 1) << 5)
+                    | calendar.get(Calendar.DAY_OF_MONTH);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.module.atlas.packer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link TexturePacker} which keeps a list of maximal free rectangles and places each rectangle into the free
+ * rectangle whose shorter leftover side is smallest.
+ *
+ * @author Tyler Bucher
+ */
+public class MaxRectsPacker implements TexturePacker {
+
+    /**
+     * The strategy name of this packer.
+     */
+    public static final String NAME = "maxrects";
+
+    /**
+     * The width of the atlas.
+     */
+    private final int width;
+
+    /**
+     * The height of the atlas.
+     */
+    private final int height;
+
+    /**
+     * The maximal free rectangles, which may overlap each other.
+     */
+    private final List<Rectangle> freeRectangles = new ArrayList<>();
+
+    /**
+     * The area covered by packed rectangles.
+     */
+    private long usedArea;
+
+    /**
+     * @param width  the width of the atlas.
+     * @param height the height of the atlas.
+     */
+    public MaxRectsPacker(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+        freeRectangles.add(new Rectangle(0, 0, width, height));
+    }
+
+    @Nullable
+    @Override
+    public Point pack(final int width, final int height) {
+        Rectangle best = null;
+        int bestShortSide = Integer.MAX_VALUE;
+        int bestLongSide = Integer.MAX_VALUE;
+        for (final Rectangle free : freeRectangles) {
+            if (free.width >= width && free.height >= height) {
+                final int leftoverX = free.width - width;
+                final int leftoverY = free.height - height;
+                final int shortSide = Math.min(leftoverX, leftoverY);
+                final int longSide = Math.max(leftoverX, leftoverY);
+                if (shortSide < bestShortSide || (shortSide == bestShortSide && longSide < bestLongSide)) {
+                    best = free;
+                    bestShortSide = shortSide;
+                    bestLongSide = longSide;
+                }
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        final Point position = best.getLocation();
+        reserve(position.x, position.y, width, height);
+        return position;
+    }
+
+    @Override
+    public void reserve(final int x, final int y, final int width, final int height) {
+        final Rectangle placed = new Rectangle(x, y, width, height);
+        // Split every free rectangle the placed rectangle overlaps into its maximal leftovers
+        final List<Rectangle> splitRectangles = new ArrayList<>();
+        for (int i = freeRectangles.size() - 1; i >= 0; i--) {
+            final Rectangle free = freeRectangles.get(i);
+            if (free.intersects(placed)) {
+                freeRectangles.remove(i);
+                split(free, placed, splitRectangles);
+            }
+        }
+        freeRectangles.addAll(splitRectangles);
+        prune();
+        usedArea += (long) width * height;
+    }
+
+    /**
+     * Adds the parts of a free rectangle which are not covered by the placed rectangle.
+     *
+     * @param free            the free rectangle.
+     * @param placed          the placed rectangle.
+     * @param splitRectangles the list to add the leftovers to.
+     */
+    private static void split(@Nonnull final Rectangle free, @Nonnull final Rectangle placed, @Nonnull final List<Rectangle> splitRectangles) {
+        if (placed.x > free.x) {
+            splitRectangles.add(new Rectangle(free.x, free.y, placed.x - free.x, free.height));
+        }
+        if (placed.x + placed.width < free.x + free.width) {
+            splitRectangles.add(new Rectangle(placed.x + placed.width, free.y,
+                    free.x + free.width - placed.x - placed.width, free.height));
+        }
+        if (placed.y > free.y) {
+            splitRectangles.add(new Rectangle(free.x, free.y, free.width, placed.y - free.y));
+        }
+        if (placed.y + placed.height < free.y + free.height) {
+            splitRectangles.add(new Rectangle(free.x, placed.y + placed.height, free.width,
+                    free.y + free.height - placed.y - placed.height));
+        }
+    }
+
+    /**
+     * Removes free rectangles which are contained in another free rectangle.
+     */
+    private void prune() {
+        for (int i = 0; i < freeRectangles.size(); i++) {
+            final Rectangle a = freeRectangles.get(i);
+            for (int j = i + 1; j < freeRectangles.size(); j++) {
+                final Rectangle b = freeRectangles.get(j);
+                if (b.contains(a)) {
+                    freeRectangles.remove(i--);
+                    break;
+                }
+                if (a.contains(b)) {
+                    freeRectangles.remove(j--);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public long getUsedArea() {
+        return usedArea;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.module.atlas.packer;
+
+import javax.annotation.Nullable;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link TexturePacker} which tracks the top edge of the packed rectangles as a list of horizontal segments and
+ * places each rectangle at the lowest position along it.
+ *
+ * @author Tyler Bucher
+ */
+public class SkylinePacker implements TexturePacker {
+
+    /**
+     * The strategy name of this packer.
+     */
+    public static final String NAME = "skyline";
+
+    /**
+     * The width of the atlas.
+     */
+    private final int width;
+
+    /**
+     * The height of the atlas.
+     */
+    private final int height;
+
+    /**
+     * The skyline segments from left to right, stored as x, y and width.
+     */
+    private final List<int[]> skyline = new ArrayList<>();
+
+    /**
+     * The area covered by packed rectangles.
+     */
+    private long usedArea;
+
+    /**
+     * @param width  the width of the atlas.
+     * @param height the height of the atlas.
+     */
+    public SkylinePacker(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+        skyline.add(new int[]{0, 0, width});
+    }
+
+    @Nullable
+    @Override
+    public Point pack(final int width, final int height) {
+        int bestIndex = -1;
+        int bestY = Integer.MAX_VALUE;
+        int bestWidth = Integer.MAX_VALUE;
+        for (int i = 0; i < skyline.size(); i++) {
+            final int y = fit(i, width, height);
+            if (y != -1 && (y < bestY || (y == bestY && skyline.get(i)[2] < bestWidth))) {
+                bestIndex = i;
+                bestY = y;
+                bestWidth = skyline.get(i)[2];
+            }
+        }
+        if (bestIndex == -1) {
+            return null;
+        }
+        final int x = skyline.get(bestIndex)[0];
+        skyline.add(bestIndex, new int[]{x, bestY + height, width});
+        trim(bestIndex, x + width);
+        usedArea += (long) width * height;
+        return new Point(x, bestY);
+    }
+
+    /**
+     * Raises the skyline over the rectangle. The skyline can not represent holes, so any free space below the
+     * rectangle is given up.
+     */
+    @Override
+    public void reserve(final int x, final int y, final int width, final int height) {
+        final int end = Math.min(this.width, x + width);
+        for (int i = 0; i < skyline.size(); i++) {
+            final int[] segment = skyline.get(i);
+            final int segmentEnd = segment[0] + segment[2];
+            if (segmentEnd <= x || segment[0] >= end || segment[1] >= y + height) {
+                continue;
+            }
+            // Split off the parts of the segment outside of the rectangle
+            if (segment[0] < x) {
+                skyline.add(i, new int[]{segment[0], segment[1], x - segment[0]});
+                segment[2] -= x - segment[0];
+                segment[0] = x;
+                i++;
+            }
+            if (segment[0] + segment[2] > end) {
+                skyline.add(i + 1, new int[]{end, segment[1], segment[0] + segment[2] - end});
+                segment[2] = end - segment[0];
+            }
+            segment[1] = y + height;
+        }
+        trim(-1, 0);
+        usedArea += (long) width * height;
+    }
+
+    /**
+     * Removes the parts of the segments after a new segment which it covers and merges segments of the same height.
+     *
+     * @param index the index of the new segment or -1 to only merge.
+     * @param end   the column after the new segment.
+     */
+    private void trim(final int index, final int end) {
+        // Shrink or remove the segments now covered by the new one
+        for (int i = index + 1; index != -1 && i < skyline.size(); i++) {
+            final int[] segment = skyline.get(i);
+            final int overlap = end - segment[0];
+            if (overlap <= 0) {
+                break;
+            }
+            if (overlap >= segment[2]) {
+                skyline.remove(i--);
+            } else {
+                segment[0] += overlap;
+                segment[2] -= overlap;
+                break;
+            }
+        }
+        // Merge neighbouring segments of the same height
+        for (int i = 0; i < skyline.size() - 1; i++) {
+            if (skyline.get(i)[1] == skyline.get(i + 1)[1]) {
+                skyline.get(i)[2] += skyline.remove(i + 1)[2];
+                i--;
+            }
+        }
+    }
+
+    /**
+     * Finds the height a rectangle would rest at when its left edge starts at a segment.
+     *
+     * @param index  the index of the segment.
+     * @param width  the width of the rectangle.
+     * @param height the height of the rectangle.
+     * @return the y coordinate of the rectangle or -1 if it does not fit.
+     */
+    private int fit(final int index, final int width, final int height) {
+        final int x = skyline.get(index)[0];
+        if (x + width > this.width) {
+            return -1;
+        }
+        int y = 0;
+        int remaining = width;
+        for (int i = index; remaining > 0; i++) {
+            final int[] segment = skyline.get(i);
+            y = Math.max(y, segment[1]);
+            if (y + height > this.height) {
+                return -1;
+            }
+            remaining -= segment[2];
+        }
+        return y;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public long getUsedArea() {
+        return usedArea;
+    }
+}
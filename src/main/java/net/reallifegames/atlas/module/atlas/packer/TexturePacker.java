@@ -0,0 +1,102 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.module.atlas.packer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.awt.*;
+
+/**
+ * Places rectangles into a fixed size atlas.
+ *
+ * @author Tyler Bucher
+ */
+public interface TexturePacker {
+
+    /**
+     * Creates a packer by its strategy name.
+     *
+     * @param strategy the packing strategy, either maxrects or skyline.
+     * @param width    the width of the atlas.
+     * @param height   the height of the atlas.
+     * @return the new packer.
+     */
+    static TexturePacker create(@Nonnull final String strategy, final int width, final int height) {
+        switch (strategy) {
+            case MaxRectsPacker.NAME:
+                return new MaxRectsPacker(width, height);
+            case SkylinePacker.NAME:
+                return new SkylinePacker(width, height);
+            default:
+                throw new IllegalArgumentException("Unknown texture packer " + strategy + ".");
+        }
+    }
+
+    /**
+     * Finds a free spot for a rectangle and marks it as used.
+     *
+     * @param width  the width of the rectangle.
+     * @param height the height of the rectangle.
+     * @return the top left corner of the placed rectangle or null if it does not fit.
+     */
+    @Nullable
+    Point pack(final int width, final int height);
+
+    /**
+     * Marks a rectangle which was placed by an earlier layout as used.
+     *
+     * @param x      the left column of the rectangle.
+     * @param y      the top row of the rectangle.
+     * @param width  the width of the rectangle.
+     * @param height the height of the rectangle.
+     */
+    void reserve(final int x, final int y, final int width, final int height);
+
+    /**
+     * @return the name of the packing strategy.
+     */
+    String getName();
+
+    /**
+     * @return the width of the atlas.
+     */
+    int getWidth();
+
+    /**
+     * @return the height of the atlas.
+     */
+    int getHeight();
+
+    /**
+     * @return the area covered by packed rectangles.
+     */
+    long getUsedArea();
+
+    /**
+     * @return the fraction of the atlas covered by packed rectangles.
+     */
+    default double getEfficiency() {
+        return getUsedArea() / (double) ((long) getWidth() * getHeight());
+    }
+}
@@ -36,15 +36,14 @@ import net.reallifegames.atlas.asset.blockstates.Multipart;
 import net.reallifegames.atlas.asset.blockstates.Variant;
 import net.reallifegames.atlas.module.Module;
 import net.reallifegames.atlas.module.ModuleInfo;
+import net.reallifegames.atlas.module.atlas.AlphaClass;
 import net.reallifegames.atlas.module.atlas.AtlasModule;
 import net.reallifegames.atlas.modules.CameraModule;
 import net.reallifegames.atlas.renderable.RenderableBlockModel;
 
 import javax.annotation.Nonnull;
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.StringWriter;
 import java.util.*;
 
 /**
@@ -111,22 +110,21 @@ public class FxModule implements Module {
             }
         });
         // Load block states
-        final File blockStatesDir = new File(Atlas.FULL_TEMP_FOLDER_DIR + "/assets/minecraft/blockstates");
-        final File[] fileList = blockStatesDir.listFiles();
-        final HashMap<String, String> jsonExport = new HashMap<>();
+        final String blockStatesDir = "assets/minecraft/blockstates";
+        final List<String> fileList = atlasModule.getAssetFileSystem().list(blockStatesDir);
         blockStateList = new HashMap<>();
-        System.out.println("Loading block states from file.");
-        if (fileList != null) {
-            Arrays.sort(fileList);
+        System.out.println("Loading and exporting WebGL Map block states.");
+        if (!fileList.isEmpty()) {
             try {
-                for (final File file : fileList) {
-                    final BlockState blockState = Loader.loadBlockState(file, atlasModule.getTextureAtlas(), Boolean.parseBoolean(args[0]));
-                    final String blockStateName = file.getName().replace(".json", "");
+                for (final String fileName : fileList) {
+                    final BlockState blockState = Loader.loadBlockState(atlasModule.getAssetFileSystem(), blockStatesDir + "/" + fileName,
+                            atlasModule.getTextureAtlas(), Boolean.parseBoolean(args[0]));
+                    final String blockStateName = fileName.replace(".json", "");
                     blockStateList.put(blockStateName, blockState);
                     if (blockState.useMultipart) {
                         try {
-                            final StringWriter stringWriter = new StringWriter();
-                            final JsonGenerator generator = new JsonFactory().createGenerator(stringWriter);
+                            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                            final JsonGenerator generator = new JsonFactory().createGenerator(outputStream);
                             // Primary object start
                             generator.writeStartObject();
                             // Multipart array start
@@ -141,13 +139,13 @@ public class FxModule implements Module {
                             // Primary object End
                             generator.writeEndObject();
                             generator.flush();
-                            jsonExport.put(blockStateName, stringWriter.toString());
+                            Atlas.exportSink.write("blockstates/" + blockStateName + ".json", outputStream.toByteArray());
                         } catch (IOException e) {
                             e.printStackTrace();
                         }
                     } else {
-                        final StringWriter stringWriter = new StringWriter();
-                        final JsonGenerator generator = new JsonFactory().createGenerator(stringWriter);
+                        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                        final JsonGenerator generator = new JsonFactory().createGenerator(outputStream);
                         // Primary object start
                         generator.writeStartObject();
                         // Multipart array start
@@ -162,7 +160,7 @@ public class FxModule implements Module {
                         // Primary object End
                         generator.writeEndObject();
                         generator.flush();
-                        jsonExport.put(blockStateName, stringWriter.toString());
+                        Atlas.exportSink.write("blockstates/" + blockStateName + ".json", outputStream.toByteArray());
                     }
                 }
             } catch (Exception e) {
@@ -171,21 +169,6 @@ public class FxModule implements Module {
         } else {
             System.out.println("File list is null");
         }
-        System.out.println("Exporting WebGL Map block states.");
-        final File path = new File(Atlas.FULL_TEMP_FOLDER_DIR + "/export/blockstates");
-        if (!path.exists()) {
-            path.mkdirs();
-        }
-        jsonExport.forEach((k, v)->{
-            final FileOutputStream outputStream;
-            try {
-                outputStream = new FileOutputStream(new File(path, k + ".json"));
-                outputStream.write(v.getBytes());
-                outputStream.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        });
     }
 
     /**
@@ -224,6 +207,25 @@ public class FxModule implements Module {
         generator.writeEndArray();
         // Obj tintindex member field
         generator.writeBooleanField("tintindex", useTintIndex(model.blockModel));
+        // Obj apply pages member, only needed once the atlas spills onto more pages
+        if (atlasModule.getTextureAtlas().getPages().size() > 1) {
+            generator.writeArrayFieldStart("pages");
+            generator.writeArray(renderableBlockModel.getFacePages(), 0, renderableBlockModel.getFacePages().length);
+            generator.writeEndArray();
+        }
+        // Obj apply alpha member, the alpha class ordinal of each face, only needed if any face is not opaque
+        final AlphaClass[] faceAlphaClasses = renderableBlockModel.getFaceAlphaClasses();
+        final int[] alphaClasses = new int[faceAlphaClasses.length];
+        boolean opaque = true;
+        for (int i = 0; i < faceAlphaClasses.length; i++) {
+            alphaClasses[i] = faceAlphaClasses[i].ordinal();
+            opaque &= faceAlphaClasses[i] == AlphaClass.OPAQUE;
+        }
+        if (!opaque) {
+            generator.writeArrayFieldStart("alpha");
+            generator.writeArray(alphaClasses, 0, alphaClasses.length);
+            generator.writeEndArray();
+        }
         // Obj apply field end
         generator.writeEndObject();
         // Model obj end
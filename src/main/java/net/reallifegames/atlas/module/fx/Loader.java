@@ -25,7 +25,6 @@ package net.reallifegames.atlas.module.fx;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import net.reallifegames.atlas.Atlas;
 import net.reallifegames.atlas.asset.blockmodels.BlockModel;
 import net.reallifegames.atlas.asset.blockmodels.Element;
 import net.reallifegames.atlas.asset.blockmodels.Face;
@@ -33,6 +32,7 @@ import net.reallifegames.atlas.asset.blockstates.BlockState;
 import net.reallifegames.atlas.asset.blockstates.Model;
 import net.reallifegames.atlas.asset.blockstates.Multipart;
 import net.reallifegames.atlas.asset.blockstates.Variant;
+import net.reallifegames.atlas.asset.source.AssetFileSystem;
 import net.reallifegames.atlas.module.atlas.TextureAtlas;
 import net.reallifegames.atlas.renderable.RenderableBlockModel;
 import net.reallifegames.atlas.renderable.RenderableModel;
@@ -40,7 +40,6 @@ import org.joml.Vector3d;
 import org.joml.Vector4d;
 
 import javax.annotation.Nonnull;
-import java.io.File;
 import java.io.IOException;
 import java.util.*;
 
@@ -57,17 +56,26 @@ public class Loader {
     private static final Map<String, BlockModel> modelMap = new HashMap<>();
 
     /**
-     * Loads a {@link BlockState} file from the system.
+     * The directory holding the block model json files.
+     */
+    private static final String BLOCK_MODEL_DIR = "assets/minecraft/models/block/";
+
+    /**
+     * Loads a {@link BlockState} file from the assets.
      *
-     * @param blockStateFile the file to load.
+     * @param assets         the indexed game assets.
+     * @param blockStatePath the full path of the block state file to load.
      * @param textureAtlas   the global block texture atlas.
      * @param useOpenGL      states if we should use OpenGL.
      * @return a new {@link BlockState} from a json file.
      *
      * @throws IOException if the model file is unable to be read.
      */
-    public static BlockState loadBlockState(@Nonnull final File blockStateFile, @Nonnull final TextureAtlas textureAtlas, final boolean useOpenGL) throws IOException {
-        final JsonNode actualObj = new ObjectMapper().readTree(blockStateFile);
+    public static BlockState loadBlockState(@Nonnull final AssetFileSystem assets,
+                                            @Nonnull final String blockStatePath,
+                                            @Nonnull final TextureAtlas textureAtlas,
+                                            final boolean useOpenGL) throws IOException {
+        final JsonNode actualObj = new ObjectMapper().readTree(assets.read(blockStatePath));
         final JsonNode variantNode = actualObj.get("variants");
         final List<Variant> variants = variantNode == null ? null : new ArrayList<>();
         if (variantNode != null) {
@@ -76,14 +84,14 @@ public class Loader {
                 if (entry.getValue().isArray()) {
                     entry.getValue().elements().forEachRemaining(jsonNode->{
                         try {
-                            modelList.add(Loader.loadModel(jsonNode, textureAtlas, useOpenGL));
+                            modelList.add(Loader.loadModel(assets, jsonNode, textureAtlas, useOpenGL));
                         } catch (IOException e) {
                             e.printStackTrace();
                         }
                     });
                 } else {
                     try {
-                        modelList.add(Loader.loadModel(entry.getValue(), textureAtlas, useOpenGL));
+                        modelList.add(Loader.loadModel(assets, entry.getValue(), textureAtlas, useOpenGL));
                     } catch (IOException e) {
                         e.printStackTrace();
                     }
@@ -99,14 +107,14 @@ public class Loader {
                 if (node.get("apply").isArray()) {
                     node.get("apply").elements().forEachRemaining(elements->{
                         try {
-                            modelList.add(Loader.loadModel(elements, textureAtlas, useOpenGL));
+                            modelList.add(Loader.loadModel(assets, elements, textureAtlas, useOpenGL));
                         } catch (IOException e) {
                             e.printStackTrace();
                         }
                     });
                 } else {
                     try {
-                        modelList.add(Loader.loadModel(node.get("apply"), textureAtlas, useOpenGL));
+                        modelList.add(Loader.loadModel(assets, node.get("apply"), textureAtlas, useOpenGL));
                     } catch (IOException e) {
                         e.printStackTrace();
                     }
@@ -138,6 +146,7 @@ public class Loader {
     /**
      * Attempts to load a model from a json file.
      *
+     * @param assets       the indexed game assets.
      * @param jsonNode     the node to interpret.
      * @param textureAtlas the global block texture atlas.
      * @param useOpenGL    states if we should use OpenGL.
@@ -145,8 +154,11 @@ public class Loader {
      *
      * @throws IOException if the model file is unable to be read.
      */
-    public static Model loadModel(@Nonnull final JsonNode jsonNode, @Nonnull final TextureAtlas textureAtlas, final boolean useOpenGL) throws IOException {
-        final RenderableBlockModel renderableBlockModel = new RenderableBlockModel(loadBlockModel(jsonNode.get("model").asText()), textureAtlas, useOpenGL);
+    public static Model loadModel(@Nonnull final AssetFileSystem assets,
+                                  @Nonnull final JsonNode jsonNode,
+                                  @Nonnull final TextureAtlas textureAtlas,
+                                  final boolean useOpenGL) throws IOException {
+        final RenderableBlockModel renderableBlockModel = new RenderableBlockModel(loadBlockModel(assets, jsonNode.get("model").asText()), textureAtlas, useOpenGL);
         final Model model = new Model(
                 jsonNode.get("model").asText(),
                 renderableBlockModel,
@@ -161,24 +173,24 @@ public class Loader {
     /**
      * Load and return a {@link BlockModel} from the given name.
      *
+     * @param assets    the indexed game assets.
      * @param blockName the name of a block to load.
      * @return a new {@link BlockModel} from a json file.
      *
      * @throws IOException if the model file is unable to be read.
      */
-    public static BlockModel loadBlockModel(@Nonnull final String blockName) throws IOException {
+    public static BlockModel loadBlockModel(@Nonnull final AssetFileSystem assets, @Nonnull final String blockName) throws IOException {
         if (modelMap.containsKey(blockName)) {
             return modelMap.get(blockName);
         }
-        final File modelFile = new File(Atlas.FULL_TEMP_FOLDER_DIR + "/assets/minecraft/models/block", blockName + ".json");
-        final JsonNode jsonObj = new ObjectMapper().readTree(modelFile);
+        final JsonNode jsonObj = new ObjectMapper().readTree(assets.read(BLOCK_MODEL_DIR + blockName + ".json"));
         BlockModel parentModel = null;
         if (jsonObj.get("parent") != null) {
             String block = jsonObj.get("parent").asText();
             if (block.contains("block/")) {
                 block = block.replace("block/", "");
             }
-            parentModel = loadBlockModel(block);
+            parentModel = loadBlockModel(assets, block);
         }
         final Map<String, String> textureList = new HashMap<>();
         if (jsonObj.get("textures") != null) {
@@ -28,11 +28,11 @@ import net.reallifegames.atlas.asset.blockmodels.BlockModel;
 import net.reallifegames.atlas.asset.blockmodels.Element;
 import net.reallifegames.atlas.asset.blockmodels.Face;
 import net.reallifegames.atlas.asset.blockstates.BlockState;
+import net.reallifegames.atlas.module.atlas.AlphaClass;
 import net.reallifegames.atlas.module.atlas.TextureAtlas;
 import org.ajgl.graphics.VertexBufferedObject;
 import org.joml.Vector3d;
 import org.joml.Vector3f;
-import org.joml.Vector4f;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL13;
 import org.lwjgl.opengl.GL15;
@@ -41,6 +41,8 @@ import org.lwjgl.system.MemoryStack;
 
 import javax.annotation.Nonnull;
 import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -56,6 +58,31 @@ public class RenderableBlockModel extends BlockModel implements Renderable {
      */
     private float[] vertexData;
 
+    /**
+     * The atlas page of each face.
+     */
+    private int[] facePages;
+
+    /**
+     * The {@link AlphaClass} of each face.
+     */
+    private AlphaClass[] faceAlphaClasses;
+
+    /**
+     * The min u, min v, max u and max v each face is clipped to, all zero for faces without a trimmed texture.
+     */
+    private float[] faceClips;
+
+    /**
+     * Scratch space for the uv coordinates of a face.
+     */
+    private final float[] faceUvs = new float[8];
+
+    /**
+     * Scratch space for rotating the uv coordinates of a face.
+     */
+    private final float[] rotatedUvs = new float[8];
+
     /**
      * OpenGL vbo object data.
      */
@@ -129,45 +156,61 @@ public class RenderableBlockModel extends BlockModel implements Renderable {
             faceCount += element.faces.size();
         }
         vertexData = new float[66 * faceCount];
+        facePages = new int[faceCount];
+        faceAlphaClasses = new AlphaClass[faceCount];
+        Arrays.fill(faceAlphaClasses, AlphaClass.OPAQUE);
+        faceClips = new float[4 * faceCount];
+        // Texture references are resolved to atlas texture ids once per model
+        final Map<String, Integer> textureIdMap = new HashMap<>();
         int elementStartIndex;
         for (Element element : model.elements) {
             elementStartIndex = vIndex;
             for (Map.Entry<String, Face> kvp : element.faces.entrySet()) {
+                Integer textureId = textureIdMap.get(kvp.getValue().textureId);
+                if (textureId == null) {
+                    final String textureName = getTextureId(this, kvp.getValue().textureId);
+                    textureId = textAtlas.getTextureId(textureName);
+                    if (textureId == -1) {
+                        // The texture is missing or was too large for the atlas
+                        System.out.println("Missing atlas texture " + textureName + ".");
+                    }
+                    textureIdMap.put(kvp.getValue().textureId, textureId);
+                }
                 switch (kvp.getKey()) {
                     case "up":
                         convertFrom.set((float) element.from.x, (float) element.to.y, (float) element.from.z).div(16).sub(0.5f, 0f, 0.5f);
                         convertTo.set((float) element.to.x, (float) element.to.y, (float) element.to.z).div(16).sub(0.5f, 0f, 0.5f);
-                        createFace(vIndex, convertFrom, convertTo, kvp.getValue(), convertNormal.set(0, 1, 0), convertColor, false, textAtlas);
+                        createFace(vIndex, convertFrom, convertTo, kvp.getValue(), convertNormal.set(0, 1, 0), convertColor, false, textureId, textAtlas);
                         vIndex += 66;
                         break;
                     case "north":
                         convertFrom.set((float) element.to.x, (float) element.to.y, (float) element.from.z).div(16).sub(0.5f, 0f, 0.5f);
                         convertTo.set((float) element.from.x, (float) element.from.y, (float) element.from.z).div(16).sub(0.5f, 0f, 0.5f);
-                        createFace(vIndex, convertFrom, convertTo, kvp.getValue(), convertNormal.set(0, 0, -1), convertColor, false, textAtlas);
+                        createFace(vIndex, convertFrom, convertTo, kvp.getValue(), convertNormal.set(0, 0, -1), convertColor, false, textureId, textAtlas);
                         vIndex += 66;
                         break;
                     case "west":
                         convertFrom.set((float) element.from.x, (float) element.to.y, (float) element.from.z).div(16).sub(0.5f, 0f, 0.5f);
                         convertTo.set((float) element.from.x, (float) element.from.y, (float) element.to.z).div(16).sub(0.5f, 0f, 0.5f);
-                        createFace(vIndex, convertFrom, convertTo, kvp.getValue(), convertNormal.set(-1, 0, 0), convertColor, true, textAtlas);
+                        createFace(vIndex, convertFrom, convertTo, kvp.getValue(), convertNormal.set(-1, 0, 0), convertColor, true, textureId, textAtlas);
                         vIndex += 66;
                         break;
                     case "south":
                         convertFrom.set((float) element.from.x, (float) element.to.y, (float) element.to.z).div(16).sub(0.5f, 0f, 0.5f);
                         convertTo.set((float) element.to.x, (float) element.from.y, (float) element.to.z).div(16).sub(0.5f, 0f, 0.5f);
-                        createFace(vIndex, convertFrom, convertTo, kvp.getValue(), convertNormal.set(0, 0, 1), convertColor, false, textAtlas);
+                        createFace(vIndex, convertFrom, convertTo, kvp.getValue(), convertNormal.set(0, 0, 1), convertColor, false, textureId, textAtlas);
                         vIndex += 66;
                         break;
                     case "east":
                         convertFrom.set((float) element.to.x, (float) element.to.y, (float) element.to.z).div(16).sub(0.5f, 0f, 0.5f);
                         convertTo.set((float) element.to.x, (float) element.from.y, (float) element.from.z).div(16).sub(0.5f, 0f, 0.5f);
-                        createFace(vIndex, convertFrom, convertTo, kvp.getValue(), convertNormal.set(1, 0, 0), convertColor, true, textAtlas);
+                        createFace(vIndex, convertFrom, convertTo, kvp.getValue(), convertNormal.set(1, 0, 0), convertColor, true, textureId, textAtlas);
                         vIndex += 66;
                         break;
                     case "down":
                         convertFrom.set((float) element.to.x, (float) element.from.y, (float) element.from.z).div(16).sub(0.5f, 0f, 0.5f);
                         convertTo.set((float) element.from.x, (float) element.from.y, (float) element.to.z).div(16).sub(0.5f, 0f, 0.5f);
-                        createFace(vIndex, convertFrom, convertTo, kvp.getValue(), convertNormal.set(0, -1, 0), convertColor, false, textAtlas);
+                        createFace(vIndex, convertFrom, convertTo, kvp.getValue(), convertNormal.set(0, -1, 0), convertColor, false, textureId, textAtlas);
                         vIndex += 66;
                         break;
                 }
@@ -294,6 +337,7 @@ public class RenderableBlockModel extends BlockModel implements Renderable {
      * @param normal    the face plane normal.
      * @param color     face vertex color.
      * @param zFace     is face parallel to the z axis.
+     * @param textureId the atlas texture id of the face or -1 if it is missing.
      * @param textAtlas the block texture atlas.
      */
     @SuppressWarnings ("Duplicates")
@@ -304,14 +348,48 @@ public class RenderableBlockModel extends BlockModel implements Renderable {
                             @Nonnull final Vector3f normal,
                             @Nonnull final Vector3f color,
                             final boolean zFace,
+                            final int textureId,
                             @Nonnull final TextureAtlas textAtlas) {
-        Vector4f uvs = textAtlas.getUvMap().get(getTextureId(this, face.textureId));
-        final Vector4f faceUvs = new Vector4f((float) face.uv.x, (float) face.uv.y, (float) face.uv.z, (float) face.uv.w).div((float) 16.0);
-        faceUvs.x = uvs.x + (Math.abs(uvs.z - uvs.x) * faceUvs.x);
-        faceUvs.y = uvs.y + (Math.abs(uvs.w - uvs.y) * faceUvs.y);
-        faceUvs.z = uvs.x + (Math.abs(uvs.z - uvs.x) * faceUvs.z);
-        faceUvs.w = uvs.y + (Math.abs(uvs.w - uvs.y) * faceUvs.w);
-        final float[] nUvs = {faceUvs.x, faceUvs.y, faceUvs.x, faceUvs.w, faceUvs.z, faceUvs.w, faceUvs.z, faceUvs.y};
+        float minU = 0;
+        float minV = 0;
+        float maxU = 0;
+        float maxV = 0;
+        if (textureId != -1) {
+            final float[] uvs = textAtlas.getUvs();
+            minU = uvs[textureId * 4];
+            minV = uvs[textureId * 4 + 1];
+            maxU = uvs[textureId * 4 + 2];
+            maxV = uvs[textureId * 4 + 3];
+            facePages[index / 66] = textAtlas.getPage(textureId);
+            faceAlphaClasses[index / 66] = textAtlas.getAlphaClass(textureId);
+            if (textAtlas.isTrimmed(textureId)) {
+                // Map the untrimmed texture around the trimmed atlas region, the face is clipped to it later
+                final float[] trims = textAtlas.getTrims();
+                faceClips[index / 66 * 4] = minU;
+                faceClips[index / 66 * 4 + 1] = minV;
+                faceClips[index / 66 * 4 + 2] = maxU;
+                faceClips[index / 66 * 4 + 3] = maxV;
+                final float scaleU = (maxU - minU) / (trims[textureId * 4 + 2] - trims[textureId * 4]);
+                final float scaleV = (maxV - minV) / (trims[textureId * 4 + 3] - trims[textureId * 4 + 1]);
+                minU -= trims[textureId * 4] * scaleU;
+                minV -= trims[textureId * 4 + 1] * scaleV;
+                maxU = minU + scaleU;
+                maxV = minV + scaleV;
+            }
+        }
+        final float u0 = minU + (Math.abs(maxU - minU) * ((float) face.uv.x / 16.0f));
+        final float v0 = minV + (Math.abs(maxV - minV) * ((float) face.uv.y / 16.0f));
+        final float u1 = minU + (Math.abs(maxU - minU) * ((float) face.uv.z / 16.0f));
+        final float v1 = minV + (Math.abs(maxV - minV) * ((float) face.uv.w / 16.0f));
+        final float[] nUvs = faceUvs;
+        nUvs[0] = u0;
+        nUvs[1] = v0;
+        nUvs[2] = u0;
+        nUvs[3] = v1;
+        nUvs[4] = u1;
+        nUvs[5] = v1;
+        nUvs[6] = u1;
+        nUvs[7] = v0;
         rotateVectorN(face.rotation, nUvs);
         // Triangle 1
         createVertexPoint(index, from.x, from.y, from.z, nUvs[0], nUvs[1], normal.x, normal.y, normal.z, color.x, color.y, color.z);
@@ -328,6 +406,83 @@ public class RenderableBlockModel extends BlockModel implements Renderable {
         createVertexPoint(index, to.x, to.y, to.z, nUvs[4], nUvs[5], normal.x, normal.y, normal.z, color.x, color.y, color.z);
     }
 
+    /**
+     * Clips the faces of textures which had their transparent border trimmed to the part of the texture which is in
+     * the atlas. The clipped part of a face only showed fully transparent pixels. Faces keep their untrimmed uvs until
+     * then, so call this once the face uvs are final, e.g. after uv locked rotations.
+     */
+    public void clipTrimmedFaces() {
+        final float[] range = new float[4];
+        final float[] corners = new float[44];
+        for (int face = 0; face < facePages.length; face++) {
+            final int index = face * 66;
+            // Faces without a trimmed texture have an empty clip rectangle
+            if (faceClips[face * 4 + 2] <= faceClips[face * 4]) {
+                continue;
+            }
+            // Corner s, t of the face is a + s * (d - a) + t * (b - a), with a, b, d being the first three vertices
+            range[0] = 0;
+            range[1] = 1;
+            range[2] = 0;
+            range[3] = 1;
+            for (int uv = 3; uv < 5; uv++) {
+                final float start = vertexData[index + uv];
+                clipRange(start, vertexData[index + 22 + uv] - start, vertexData[index + 11 + uv] - start,
+                        faceClips[face * 4 + uv - 3], faceClips[face * 4 + uv - 1], range);
+            }
+            if (range[0] >= range[1] || range[2] >= range[3]) {
+                // Nothing of the face is visible, collapse it
+                range[0] = range[1] = range[2] = range[3] = 0;
+            }
+            for (int corner = 0; corner < 4; corner++) {
+                // Corners in the order a, b, d and c
+                final float s = corner < 2 ? range[0] : range[1];
+                final float t = corner % 2 == 0 ? range[2] : range[3];
+                for (int i = 0; i < 11; i++) {
+                    final float start = vertexData[index + i];
+                    corners[corner * 11 + i] = start + s * (vertexData[index + 22 + i] - start) +
+                            t * (vertexData[index + 11 + i] - start);
+                }
+            }
+            for (int i = 0; i < 6; i++) {
+                // Vertices in the order a, b, d, d, b and c
+                final int corner = i == 5 ? 3 : i == 2 || i == 3 ? 2 : i == 0 ? 0 : 1;
+                System.arraycopy(corners, corner * 11, vertexData, index + i * 11, 11);
+            }
+        }
+    }
+
+    /**
+     * Narrows the s and t range of a rectangle to the part whose uv component lies inside of a range. Faces are only
+     * rotated in 90 degree steps, so a uv component follows either s or t.
+     *
+     * @param start the uv component at s = 0 and t = 0.
+     * @param sStep the change of the uv component from s = 0 to s = 1.
+     * @param tStep the change of the uv component from t = 0 to t = 1.
+     * @param low   the lowest visible uv component.
+     * @param high  the highest visible uv component.
+     * @param range the min s, max s, min t and max t to narrow.
+     */
+    private static void clipRange(final float start,
+                                  final float sStep,
+                                  final float tStep,
+                                  final float low,
+                                  final float high,
+                                  @Nonnull final float[] range) {
+        final float step = sStep != 0 ? sStep : tStep;
+        final int offset = sStep != 0 ? 0 : 2;
+        if (step == 0) {
+            if (start < low || start > high) {
+                range[1] = range[0];
+            }
+            return;
+        }
+        final float first = (low - start) / step;
+        final float second = (high - start) / step;
+        range[offset] = Math.max(range[offset], Math.min(first, second));
+        range[offset + 1] = Math.min(range[offset + 1], Math.max(first, second));
+    }
+
     /**
      * Retrieve the texture id for
      *
@@ -355,7 +510,7 @@ public class RenderableBlockModel extends BlockModel implements Renderable {
      * @param uvsCoords the texture coordinates to rotate.
      */
     private void rotateVectorN(final float angle, @Nonnull final float[] uvsCoords) {
-        final float[] nUvs = new float[uvsCoords.length];
+        final float[] nUvs = rotatedUvs;
         System.arraycopy(uvsCoords, 0, nUvs, 0, uvsCoords.length);
         switch ((int) angle) {
             case 0:
@@ -446,6 +601,20 @@ public class RenderableBlockModel extends BlockModel implements Renderable {
         return vertexData;
     }
 
+    /**
+     * @return the atlas page of each face, in vertex data order.
+     */
+    public int[] getFacePages() {
+        return facePages;
+    }
+
+    /**
+     * @return the alpha class of each face, in vertex data order.
+     */
+    public AlphaClass[] getFaceAlphaClasses() {
+        return faceAlphaClasses;
+    }
+
     @Override
     @SuppressWarnings ("Duplicates")
     public void draw() {
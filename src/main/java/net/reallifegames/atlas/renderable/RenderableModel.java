@@ -75,6 +75,7 @@ public class RenderableModel extends Model {
                 rotateY(blockModel.getVertexData(), j, yRotation);
             }
         }
+        blockModel.clipTrimmedFaces();
         if (useOpenGL) {
             blockModel.bake();
         }
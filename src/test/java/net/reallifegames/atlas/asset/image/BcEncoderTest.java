@@ -0,0 +1,294 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.image;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link BcEncoder}. The blocks are read back with small reference decoders written from the BC1, BC4 and
+ * BC7 format descriptions.
+ *
+ * @author Tyler Bucher
+ */
+public class BcEncoderTest {
+
+    /**
+     * Decodes a BC1 style colour block.
+     *
+     * @param data   the block data.
+     * @param offset the offset of the block.
+     * @param bc1    states if the endpoint order selects the mode, false for the colour block of BC3.
+     * @param out    the array to write the 16 argb pixels to, row by row. The alpha of BC3 blocks is set to 255.
+     */
+    static void decodeColor(final byte[] data, final int offset, final boolean bc1, final int[] out) {
+        final int color0 = (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+        final int color1 = (data[offset + 2] & 0xFF) | (data[offset + 3] & 0xFF) << 8;
+        final int[][] palette = new int[4][];
+        palette[0] = expand565(color0);
+        palette[1] = expand565(color1);
+        final boolean fourColors = !bc1 || color0 > color1;
+        palette[2] = new int[3];
+        palette[3] = new int[3];
+        for (int channel = 0; channel < 3; channel++) {
+            if (fourColors) {
+                palette[2][channel] = (2 * palette[0][channel] + palette[1][channel]) / 3;
+                palette[3][channel] = (palette[0][channel] + 2 * palette[1][channel]) / 3;
+            } else {
+                palette[2][channel] = (palette[0][channel] + palette[1][channel]) / 2;
+            }
+        }
+        for (int i = 0; i < 16; i++) {
+            final int index = (data[offset + 4 + i / 4] >> ((i % 4) * 2)) & 3;
+            final int[] color = palette[index];
+            out[i] = !fourColors && index == 3 ? 0 : 0xFF000000 | color[0] << 16 | color[1] << 8 | color[2];
+        }
+    }
+
+    /**
+     * @param color the 565 colour.
+     * @return the 8 bit red, green and blue values.
+     */
+    private static int[] expand565(final int color) {
+        final int r = (color >> 11) & 0x1F;
+        final int g = (color >> 5) & 0x3F;
+        final int b = color & 0x1F;
+        return new int[]{r << 3 | r >> 2, g << 2 | g >> 4, b << 3 | b >> 2};
+    }
+
+    /**
+     * Decodes a BC3 block.
+     *
+     * @param data   the block data.
+     * @param offset the offset of the block.
+     * @param out    the array to write the 16 argb pixels to, row by row.
+     */
+    private static void decodeBc3(final byte[] data, final int offset, final int[] out) {
+        decodeColor(data, offset + 8, false, out);
+        final int a0 = data[offset] & 0xFF;
+        final int a1 = data[offset + 1] & 0xFF;
+        final int[] palette = new int[8];
+        palette[0] = a0;
+        palette[1] = a1;
+        for (int code = 2; code < 8; code++) {
+            palette[code] = a0 > a1 ? ((8 - code) * a0 + (code - 1) * a1) / 7 : code < 6 ? ((6 - code) * a0 + (code - 1) * a1) / 5 :
+                    code == 6 ? 0 : 255;
+        }
+        long indices = 0;
+        for (int i = 0; i < 6; i++) {
+            indices |= (long) (data[offset + 2 + i] & 0xFF) << (i * 8);
+        }
+        for (int i = 0; i < 16; i++) {
+            out[i] = (out[i] & 0xFFFFFF) | palette[(int) (indices >>> (i * 3)) & 7] << 24;
+        }
+    }
+
+    /**
+     * Decodes a BC7 block in mode 6.
+     *
+     * @param data   the block data.
+     * @param offset the offset of the block.
+     * @param out    the array to write the 16 argb pixels to, row by row.
+     */
+    private static void decodeBc7Mode6(final byte[] data, final int offset, final int[] out) {
+        final int[] position = {0};
+        assertEquals(1 << 6, read(data, offset, position, 7));
+        final int[][] endpoints = new int[2][4];
+        for (int channel = 0; channel < 4; channel++) {
+            endpoints[0][channel] = read(data, offset, position, 7);
+            endpoints[1][channel] = read(data, offset, position, 7);
+        }
+        for (int endpoint = 0; endpoint < 2; endpoint++) {
+            final int pBit = read(data, offset, position, 1);
+            for (int channel = 0; channel < 4; channel++) {
+                endpoints[endpoint][channel] = endpoints[endpoint][channel] << 1 | pBit;
+            }
+        }
+        final int[] weights = {0, 4, 9, 13, 17, 21, 26, 30, 34, 38, 43, 47, 51, 55, 60, 64};
+        for (int i = 0; i < 16; i++) {
+            final int weight = weights[read(data, offset, position, i == 0 ? 3 : 4)];
+            final int[] rgba = new int[4];
+            for (int channel = 0; channel < 4; channel++) {
+                rgba[channel] = ((64 - weight) * endpoints[0][channel] + weight * endpoints[1][channel] + 32) >> 6;
+            }
+            out[i] = rgba[3] << 24 | rgba[0] << 16 | rgba[1] << 8 | rgba[2];
+        }
+        assertEquals(128, position[0]);
+    }
+
+    /**
+     * Reads bits least significant bit first.
+     *
+     * @param data     the block data.
+     * @param offset   the offset of the block.
+     * @param position the bit position, advanced by the read bits.
+     * @param bits     the amount of bits to read.
+     * @return the value.
+     */
+    private static int read(final byte[] data, final int offset, final int[] position, final int bits) {
+        int value = 0;
+        for (int i = 0; i < bits; i++, position[0]++) {
+            value |= ((data[offset + position[0] / 8] >> (position[0] % 8)) & 1) << i;
+        }
+        return value;
+    }
+
+    /**
+     * @param expected the source pixels.
+     * @param actual   the decoded pixels.
+     * @param alpha    states if the alpha channel is compared as well.
+     * @return the largest difference of any channel of any pixel.
+     */
+    static int maxError(final int[] expected, final int[] actual, final boolean alpha) {
+        int error = 0;
+        for (int i = 0; i < expected.length; i++) {
+            for (int shift = 0; shift < (alpha ? 32 : 24); shift += 8) {
+                error = Math.max(error, Math.abs(((expected[i] >>> shift) & 0xFF) - ((actual[i] >>> shift) & 0xFF)));
+            }
+        }
+        return error;
+    }
+
+    /**
+     * @param block the argb pixels of a gradient block.
+     * @return the largest difference of a colour channel between the first and the last pixel.
+     */
+    static int range(final int[] block) {
+        int range = 0;
+        for (int shift = 0; shift < 24; shift += 8) {
+            range = Math.max(range, Math.abs(((block[0] >>> shift) & 0xFF) - ((block[15] >>> shift) & 0xFF)));
+        }
+        return range;
+    }
+
+    /**
+     * @param random the random source.
+     * @param alpha  states if the alpha should vary as well.
+     * @return a block blending between two random colours, the way most block texture blocks look.
+     */
+    static int[] createGradient(final Random random, final boolean alpha) {
+        final int c0 = random.nextInt() | (alpha ? 0 : 0xFF000000);
+        final int c1 = random.nextInt() | (alpha ? 0 : 0xFF000000);
+        final int[] block = new int[16];
+        for (int i = 0; i < 16; i++) {
+            final int weight = (i % 4 + i / 4) * 255 / 6;
+            for (int shift = 0; shift < 32; shift += 8) {
+                block[i] |= ((((c0 >>> shift) & 0xFF) * (255 - weight) + ((c1 >>> shift) & 0xFF) * weight + 127) / 255) << shift;
+            }
+        }
+        return block;
+    }
+
+    @Test
+    public void encodesSolidBc1Block() {
+        final int[] block = new int[16];
+        Arrays.fill(block, 0xFFFF0000);
+        final byte[] out = new byte[8];
+        BcEncoder.encodeBc1(block, out, 0);
+        assertArrayEquals(new byte[]{0x00, (byte) 0xF8, 0x00, (byte) 0xF8, 0, 0, 0, 0}, out);
+        final int[] decoded = new int[16];
+        decodeColor(out, 0, true, decoded);
+        assertArrayEquals(block, decoded);
+    }
+
+    @Test
+    public void encodesBc1Gradients() {
+        final Random random = new Random(1);
+        final byte[] out = new byte[16];
+        final int[] decoded = new int[16];
+        for (int i = 0; i < 200; i++) {
+            final int[] block = createGradient(random, false);
+            BcEncoder.encodeBc1(block, out, 8);
+            decodeColor(out, 8, true, decoded);
+            // Half a step between the 4 palette colours plus the 565 quantization
+            assertTrue(maxError(block, decoded, true) <= range(block) / 6 + 8);
+        }
+    }
+
+    @Test
+    public void encodesBc1Transparency() {
+        final int[] block = createGradient(new Random(2), false);
+        for (int i = 0; i < 16; i += 3) {
+            block[i] = 0x00000000;
+        }
+        final byte[] out = new byte[8];
+        BcEncoder.encodeBc1(block, out, 0);
+        final int[] decoded = new int[16];
+        decodeColor(out, 0, true, decoded);
+        for (int i = 0; i < 16; i++) {
+            assertEquals(block[i] == 0, decoded[i] == 0);
+        }
+    }
+
+    @Test
+    public void encodesBc3Alpha() {
+        final Random random = new Random(3);
+        final byte[] out = new byte[16];
+        final int[] decoded = new int[16];
+        for (int i = 0; i < 200; i++) {
+            final int[] block = createGradient(random, true);
+            BcEncoder.encodeBc3(block, out, 0);
+            decodeBc3(out, 0, decoded);
+            int alphaError = 0;
+            int min = 255;
+            int max = 0;
+            for (int j = 0; j < 16; j++) {
+                min = Math.min(min, block[j] >>> 24);
+                max = Math.max(max, block[j] >>> 24);
+                alphaError = Math.max(alphaError, Math.abs((block[j] >>> 24) - (decoded[j] >>> 24)));
+            }
+            // Half a step between the 8 alpha values plus rounding
+            assertTrue(alphaError <= (max - min) / 14 + 2);
+            assertTrue(maxError(block, decoded, false) <= range(block) / 6 + 8);
+        }
+    }
+
+    @Test
+    public void encodesBc7Gradients() {
+        final Random random = new Random(4);
+        final byte[] out = new byte[32];
+        final int[] decoded = new int[16];
+        for (int i = 0; i < 200; i++) {
+            final int[] block = createGradient(random, true);
+            BcEncoder.encodeBc7(block, out, 16);
+            decodeBc7Mode6(out, 16, decoded);
+            assertTrue(maxError(block, decoded, true) <= 12);
+        }
+    }
+
+    @Test
+    public void encodesSolidBc7Block() {
+        final int[] block = new int[16];
+        Arrays.fill(block, 0x80406080);
+        final byte[] out = new byte[16];
+        BcEncoder.encodeBc7(block, out, 0);
+        final int[] decoded = new int[16];
+        decodeBc7Mode6(out, 0, decoded);
+        assertTrue(maxError(block, decoded, true) <= 1);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.image;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link EtcEncoder}. The blocks are read back with a small reference decoder written from the ETC2 and EAC
+ * format descriptions, covering the individual and differential modes the encoder writes.
+ *
+ * @author Tyler Bucher
+ */
+public class EtcEncoderTest {
+
+    /**
+     * The ETC colour modifier tables.
+     */
+    private static final int[][] COLOR_TABLES = {
+            {2, 8, -2, -8}, {5, 17, -5, -17}, {9, 29, -9, -29}, {13, 42, -13, -42},
+            {18, 60, -18, -60}, {24, 80, -24, -80}, {33, 106, -33, -106}, {47, 183, -47, -183}
+    };
+
+    /**
+     * The EAC alpha modifier tables.
+     */
+    private static final int[][] ALPHA_TABLES = {
+            {-3, -6, -9, -15, 2, 5, 8, 14}, {-3, -7, -10, -13, 2, 6, 9, 12}, {-2, -5, -8, -13, 1, 4, 7, 12},
+            {-2, -4, -6, -13, 1, 3, 5, 12}, {-3, -6, -8, -12, 2, 5, 7, 11}, {-3, -7, -9, -11, 2, 6, 8, 10},
+            {-4, -7, -8, -11, 3, 6, 7, 10}, {-3, -5, -8, -11, 2, 4, 7, 10}, {-2, -6, -8, -10, 1, 5, 7, 9},
+            {-2, -5, -8, -10, 1, 4, 7, 9}, {-2, -4, -8, -10, 1, 3, 7, 9}, {-2, -5, -7, -10, 1, 4, 6, 9},
+            {-3, -4, -7, -10, 2, 3, 6, 9}, {-1, -2, -3, -10, 0, 1, 2, 9}, {-4, -6, -8, -9, 3, 5, 7, 8},
+            {-3, -5, -7, -9, 2, 4, 6, 8}
+    };
+
+    /**
+     * @param data   the block data.
+     * @param offset the offset of the 64 bit value.
+     * @return the big endian 64 bit value.
+     */
+    private static long readLong(final byte[] data, final int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * @param value the channel value.
+     * @return the value clamped to 0 to 255.
+     */
+    private static int clamp(final int value) {
+        return Math.min(255, Math.max(0, value));
+    }
+
+    /**
+     * Decodes an ETC2 RGBA8 block.
+     *
+     * @param data   the block data.
+     * @param offset the offset of the block.
+     * @param out    the array to write the 16 argb pixels to, row by row.
+     */
+    private static void decode(final byte[] data, final int offset, final int[] out) {
+        final long alpha = readLong(data, offset);
+        final long color = readLong(data, offset + 8);
+        final int alphaBase = (int) (alpha >>> 56) & 0xFF;
+        final int multiplier = (int) (alpha >>> 52) & 0xF;
+        final int[] alphaTable = ALPHA_TABLES[(int) (alpha >>> 48) & 0xF];
+        final boolean differential = (color >>> 33 & 1) != 0;
+        final boolean flip = (color >>> 32 & 1) != 0;
+        final int[][] bases = new int[2][3];
+        for (int channel = 0; channel < 3; channel++) {
+            if (differential) {
+                final int base = (int) (color >>> (59 - channel * 8)) & 0x1F;
+                int delta = (int) (color >>> (56 - channel * 8)) & 7;
+                delta = delta >= 4 ? delta - 8 : delta;
+                assertTrue(base + delta >= 0 && base + delta < 32);
+                bases[0][channel] = base << 3 | base >> 2;
+                bases[1][channel] = (base + delta) << 3 | (base + delta) >> 2;
+            } else {
+                bases[0][channel] = ((int) (color >>> (60 - channel * 8)) & 0xF) * 17;
+                bases[1][channel] = ((int) (color >>> (56 - channel * 8)) & 0xF) * 17;
+            }
+        }
+        final int[][] tables = {COLOR_TABLES[(int) (color >>> 37) & 7], COLOR_TABLES[(int) (color >>> 34) & 7]};
+        for (int x = 0; x < 4; x++) {
+            for (int y = 0; y < 4; y++) {
+                // Pixels are numbered column by column
+                final int j = x * 4 + y;
+                final int half = (flip ? y : x) < 2 ? 0 : 1;
+                final int index = (int) (color >>> (16 + j) & 1) << 1 | (int) (color >>> j & 1);
+                final int modifier = tables[half][index];
+                final int a = clamp(alphaBase + alphaTable[(int) (alpha >>> ((15 - j) * 3)) & 7] * multiplier);
+                out[y * 4 + x] = a << 24 | clamp(bases[half][0] + modifier) << 16 | clamp(bases[half][1] + modifier) << 8
+                        | clamp(bases[half][2] + modifier);
+            }
+        }
+    }
+
+    @Test
+    public void encodesSolidBlocks() {
+        final Random random = new Random(1);
+        final byte[] out = new byte[16];
+        final int[] decoded = new int[16];
+        for (int i = 0; i < 200; i++) {
+            final int[] block = new int[16];
+            Arrays.fill(block, random.nextInt());
+            EtcEncoder.encodeRgba8(block, out, 0);
+            decode(out, 0, decoded);
+            for (int j = 0; j < 16; j++) {
+                assertEquals(block[j] >>> 24, decoded[j] >>> 24);
+            }
+            assertTrue(BcEncoderTest.maxError(block, decoded, false) <= 8);
+        }
+    }
+
+    @Test
+    public void encodesLuminanceGradients() {
+        final Random random = new Random(2);
+        final byte[] out = new byte[32];
+        final int[] decoded = new int[16];
+        for (int i = 0; i < 200; i++) {
+            // Etc modifiers shift every channel alike, so gradients of brightness are its best case
+            final int hue = random.nextInt() & 0x3F3F3F;
+            final int step = 1 + random.nextInt(12);
+            final int[] block = new int[16];
+            for (int j = 0; j < 16; j++) {
+                final int light = (j % 4 + j / 4) * step;
+                block[j] = 0xFF000000 | hue + light * 0x010101;
+            }
+            EtcEncoder.encodeRgba8(block, out, 16);
+            decode(out, 16, decoded);
+            assertTrue(BcEncoderTest.maxError(block, decoded, true) <= step + 8);
+        }
+    }
+
+    @Test
+    public void encodesSplitBlocks() {
+        final byte[] out = new byte[16];
+        final int[] decoded = new int[16];
+        for (final boolean horizontal : new boolean[]{false, true}) {
+            // Two flat halves far apart need the individual mode and the matching split
+            final int[] block = new int[16];
+            for (int j = 0; j < 16; j++) {
+                block[j] = (horizontal ? j / 4 : j % 4) < 2 ? 0xFF102030 : 0xFFE0D0C0;
+            }
+            EtcEncoder.encodeRgba8(block, out, 0);
+            // The flip and differential bits are bits 32 and 33 of the colour block, the lowest bits of byte 11
+            assertEquals(horizontal, (out[11] & 1) != 0);
+            assertEquals(0, out[11] & 2);
+            decode(out, 0, decoded);
+            assertTrue(BcEncoderTest.maxError(block, decoded, true) <= 10);
+        }
+    }
+
+    @Test
+    public void encodesAlphaRamps() {
+        final Random random = new Random(3);
+        final byte[] out = new byte[16];
+        final int[] decoded = new int[16];
+        for (int i = 0; i < 200; i++) {
+            final int[] block = BcEncoderTest.createGradient(random, true);
+            final int color = block[0] & 0xFFFFFF;
+            int min = 255;
+            int max = 0;
+            for (int j = 0; j < 16; j++) {
+                block[j] = (block[j] & 0xFF000000) | color;
+                min = Math.min(min, block[j] >>> 24);
+                max = Math.max(max, block[j] >>> 24);
+            }
+            EtcEncoder.encodeRgba8(block, out, 0);
+            decode(out, 0, decoded);
+            int alphaError = 0;
+            for (int j = 0; j < 16; j++) {
+                alphaError = Math.max(alphaError, Math.abs((block[j] >>> 24) - (decoded[j] >>> 24)));
+            }
+            assertTrue(alphaError + " over " + (max - min), alphaError <= (max - min) / 8 + 2);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.image;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link MipmapGenerator}.
+ *
+ * @author Tyler Bucher
+ */
+public class MipmapGeneratorTest {
+
+    /**
+     * @param source the image to read.
+     * @return all argb pixels of the image row by row.
+     */
+    private static int[] read(final PixelSource source) {
+        final int[] pixels = new int[source.getWidth() * source.getHeight()];
+        source.readRows(0, source.getHeight(), pixels);
+        return pixels;
+    }
+
+    @Test
+    public void countsLevels() {
+        assertEquals(1, MipmapGenerator.getLevelCount(1, 1));
+        assertEquals(5, MipmapGenerator.getLevelCount(16, 16));
+        assertEquals(5, MipmapGenerator.getLevelCount(17, 5));
+        assertEquals(3, MipmapGenerator.getLevelCount(1, 7));
+        assertEquals(15, MipmapGenerator.getLevelCount(16384, 16384));
+    }
+
+    @Test
+    public void downsamplesOddSizes() throws IOException {
+        // 5x3 halves to 2x1, the last row and column fall off the way OpenGL sizes mip levels
+        final int[] pixels = new int[5 * 3];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | (i * 10) << 16;
+        }
+        final PixelSource level = new MipmapGenerator(1).downsample(PixelSource.of(pixels, 5, 3));
+        assertEquals(2, level.getWidth());
+        assertEquals(1, level.getHeight());
+        // (0 + 10 + 50 + 60) / 4 and (20 + 30 + 70 + 80) / 4
+        assertArrayEquals(new int[]{0xFF1E0000, 0xFF320000}, read(level));
+    }
+
+    @Test
+    public void repeatsSinglePixelColumns() throws IOException {
+        final int[] pixels = {0xFF000000, 0xFF0000FF, 0xFF00FF00, 0xFF00FFFF};
+        final PixelSource level = new MipmapGenerator(1).downsample(PixelSource.of(pixels, 1, 4));
+        assertEquals(1, level.getWidth());
+        assertEquals(2, level.getHeight());
+        assertArrayEquals(new int[]{0xFF000080, 0xFF00FF80}, read(level));
+    }
+
+    @Test
+    public void reachesOnePixel() throws IOException {
+        final MipmapGenerator generator = new MipmapGenerator(2);
+        PixelSource level = PixelSource.of(new int[7 * 3], 7, 3);
+        for (int i = 1; i < MipmapGenerator.getLevelCount(7, 3); i++) {
+            level = generator.downsample(level);
+        }
+        assertEquals(1, level.getWidth());
+        assertEquals(1, level.getHeight());
+    }
+
+    @Test
+    public void weightsColoursByAlpha() throws IOException {
+        final int[] pixels = {0xFFFF0000, 0x000000FF, 0x000000FF, 0x000000FF};
+        assertArrayEquals(new int[]{0x40FF0000}, read(new MipmapGenerator(1).downsample(PixelSource.of(pixels, 2, 2))));
+        // Fully transparent blocks keep their plain colour average
+        final int[] transparent = {0x00FF0000, 0x00FF0000, 0x000000FF, 0x000000FF};
+        assertArrayEquals(new int[]{0x00800080}, read(new MipmapGenerator(1).downsample(PixelSource.of(transparent, 2, 2))));
+    }
+
+    @Test
+    public void outputIsIndependentOfThreads() throws IOException {
+        final int width = 1000;
+        final int height = 600;
+        final int[] pixels = new int[width * height];
+        final Random random = new Random(1);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        final PixelSource source = PixelSource.of(pixels, width, height);
+        assertArrayEquals(read(new MipmapGenerator(1).downsample(source)), read(new MipmapGenerator(8).downsample(source)));
+    }
+}
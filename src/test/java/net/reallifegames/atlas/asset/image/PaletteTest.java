@@ -0,0 +1,128 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.image;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link Palette}.
+ *
+ * @author Tyler Bucher
+ */
+public class PaletteTest {
+
+    /**
+     * @param colours the amount of distinct colours.
+     * @param seed    the random seed.
+     * @return a 64x64 image of random opaque colours out of a fixed set.
+     */
+    private static int[] createPixels(final int colours, final long seed) {
+        final Random random = new Random(seed);
+        final int[] set = new int[colours];
+        for (int i = 0; i < colours; i++) {
+            set[i] = 0xFF000000 | i * 0x010305;
+        }
+        final int[] pixels = new int[64 * 64];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = set[i < colours ? i : random.nextInt(colours)];
+        }
+        return pixels;
+    }
+
+    @Test
+    public void buildsExactPalette() {
+        final int[] pixels = createPixels(200, 1);
+        pixels[0] = 0x80123456;
+        pixels[1] = 0x00000000;
+        final Palette palette = Palette.build(Collections.singletonList(PixelSource.of(pixels, 64, 64)), 0);
+        assertNotNull(palette);
+        assertEquals(0, palette.getError(), 0);
+        final int[] colours = palette.getColours();
+        // Translucent entries come first
+        assertEquals(0x00000000, colours[0]);
+        assertEquals(0x80123456, colours[1]);
+        for (int i = 2; i < colours.length; i++) {
+            assertEquals(0xFF, colours[i] >>> 24);
+        }
+        for (final int pixel : pixels) {
+            assertEquals(pixel, colours[palette.getIndex(pixel)]);
+        }
+    }
+
+    @Test
+    public void sharesPaletteBetweenImages() {
+        final int[] first = createPixels(100, 2);
+        final int[] second = createPixels(100, 3);
+        for (int i = 0; i < second.length; i++) {
+            second[i] ^= 0x00800000;
+        }
+        final Palette palette = Palette.build(Arrays.asList(PixelSource.of(first, 64, 64), PixelSource.of(second, 64, 64)), 0);
+        assertNotNull(palette);
+        assertEquals(200, palette.getColours().length);
+        for (int i = 0; i < first.length; i++) {
+            assertEquals(first[i], palette.getColours()[palette.getIndex(first[i])]);
+            assertEquals(second[i], palette.getColours()[palette.getIndex(second[i])]);
+        }
+    }
+
+    @Test
+    public void rejectsTooManyColoursWithoutError() {
+        assertNull(Palette.build(Collections.singletonList(PixelSource.of(createPixels(300, 4), 64, 64)), 0));
+    }
+
+    @Test
+    public void reducesColoursWithinError() {
+        final int[] pixels = createPixels(1000, 5);
+        final Palette palette = Palette.build(Collections.singletonList(PixelSource.of(pixels, 64, 64)), 4);
+        assertNotNull(palette);
+        assertEquals(Palette.MAX_COLOURS, palette.getColours().length);
+        assertTrue(palette.getError() > 0 && palette.getError() <= 4);
+        // Measure the error of the mapping independently
+        double squaredError = 0;
+        for (final int pixel : pixels) {
+            final int colour = palette.getColours()[palette.getIndex(pixel)];
+            for (int shift = 0; shift < 32; shift += 8) {
+                final int difference = ((pixel >>> shift) & 0xFF) - ((colour >>> shift) & 0xFF);
+                squaredError += difference * difference;
+            }
+        }
+        assertEquals(palette.getError(), Math.sqrt(squaredError / (pixels.length * 4.0)), 1e-9);
+    }
+
+    @Test
+    public void rejectsReductionAboveError() {
+        final Random random = new Random(6);
+        final int[] pixels = new int[64 * 64];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        assertNull(Palette.build(Collections.singletonList(PixelSource.of(pixels, 64, 64)), 1));
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.image;
+
+import org.junit.Test;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.color.ColorSpace;
+import java.awt.image.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link PngDecoder}.
+ *
+ * @author Tyler Bucher
+ */
+public class PngDecoderTest {
+
+    /**
+     * Encodes an image as png with {@link ImageIO}.
+     *
+     * @param image      the image to encode.
+     * @param interlaced states if the png should use Adam7 interlacing.
+     * @return the png file contents.
+     *
+     * @throws IOException if the image could not be encoded.
+     */
+    private static byte[] encode(final RenderedImage image, final boolean interlaced) throws IOException {
+        final ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (final ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream)) {
+            writer.setOutput(imageOutputStream);
+            final ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setProgressiveMode(interlaced ? ImageWriteParam.MODE_DEFAULT : ImageWriteParam.MODE_DISABLED);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * @param width  the width of the image.
+     * @param height the height of the image.
+     * @return an argb image with random colours and alpha.
+     */
+    private static BufferedImage createArgbImage(final int width, final int height) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final Random random = new Random(width * 31 + height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Asserts that the decoder produces the same argb pixels as {@link ImageIO}.
+     *
+     * @param data the png file contents.
+     * @throws IOException if the png could not be decoded.
+     */
+    private static void assertDecodesLikeImageIO(final byte[] data) throws IOException {
+        final BufferedImage expected = ImageIO.read(new ByteArrayInputStream(data));
+        final BufferedImage actual = PngDecoder.decode(data);
+        assertEquals(BufferedImage.TYPE_INT_ARGB, actual.getType());
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        assertArrayEquals(expected.getRGB(0, 0, expected.getWidth(), expected.getHeight(), null, 0, expected.getWidth()),
+                ((DataBufferInt) actual.getRaster().getDataBuffer()).getData());
+    }
+
+    /**
+     * Creates an image of 16 bit samples.
+     *
+     * @param bands   the amount of samples per pixel, 1 or 2 for gray and 3 or 4 for rgb, with alpha last.
+     * @param width   the width of the image.
+     * @param height  the height of the image.
+     * @param samples the samples of the image row by row, bands per pixel.
+     * @return the image.
+     */
+    private static BufferedImage create16BitImage(final int bands, final int width, final int height, final int[] samples) {
+        final boolean alpha = bands == 2 || bands == 4;
+        final ComponentColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(bands < 3 ?
+                ColorSpace.CS_GRAY : ColorSpace.CS_sRGB), alpha, false, alpha ? Transparency.TRANSLUCENT :
+                Transparency.OPAQUE, DataBuffer.TYPE_USHORT);
+        final WritableRaster raster = colorModel.createCompatibleWritableRaster(width, height);
+        raster.setPixels(0, 0, width, height, samples);
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+
+    /**
+     * Writes a png chunk.
+     *
+     * @param outputStream the stream to write to.
+     * @param type         the chunk type.
+     * @param data         the chunk data.
+     * @throws IOException if the chunk could not be written.
+     */
+    private static void writeChunk(final DataOutputStream outputStream, final String type, final byte[] data) throws IOException {
+        final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        final CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        outputStream.writeInt(data.length);
+        outputStream.write(typeBytes);
+        outputStream.write(data);
+        outputStream.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Builds a single row 16 bit rgb png with a transparency chunk, which {@link ImageIO} can not write.
+     *
+     * @param transparent the 16 bit red, green and blue of the transparent colour.
+     * @param samples     the 16 bit red, green and blue samples of the row.
+     * @return the png file contents.
+     *
+     * @throws IOException if the png could not be written.
+     */
+    private static byte[] create16BitRgbWithTransparency(final int[] transparent, final int[] samples) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+        dataOutputStream.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        final DataOutputStream headerStream = new DataOutputStream(header);
+        headerStream.writeInt(samples.length / 3);
+        headerStream.writeInt(1);
+        headerStream.write(new byte[]{16, 2, 0, 0, 0});
+        writeChunk(dataOutputStream, "IHDR", header.toByteArray());
+        final ByteArrayOutputStream transparency = new ByteArrayOutputStream();
+        final DataOutputStream transparencyStream = new DataOutputStream(transparency);
+        for (final int sample : transparent) {
+            transparencyStream.writeShort(sample);
+        }
+        writeChunk(dataOutputStream, "tRNS", transparency.toByteArray());
+        final ByteArrayOutputStream image = new ByteArrayOutputStream();
+        try (final DataOutputStream imageStream = new DataOutputStream(new DeflaterOutputStream(image))) {
+            imageStream.writeByte(0);
+            for (final int sample : samples) {
+                imageStream.writeShort(sample);
+            }
+        }
+        writeChunk(dataOutputStream, "IDAT", image.toByteArray());
+        writeChunk(dataOutputStream, "IEND", new byte[0]);
+        return outputStream.toByteArray();
+    }
+
+    @Test
+    public void detectsPngSignature() throws IOException {
+        assertTrue(PngDecoder.isPng(encode(createArgbImage(1, 1), false)));
+        assertFalse(PngDecoder.isPng(new byte[]{'G', 'I', 'F', '8', '9', 'a', 0, 0}));
+        assertFalse(PngDecoder.isPng(new byte[0]));
+    }
+
+    @Test
+    public void decodesRgba() throws IOException {
+        assertDecodesLikeImageIO(encode(createArgbImage(37, 23), false));
+    }
+
+    @Test
+    public void decodesInterlacedRgba() throws IOException {
+        // Sizes below 8 leave some Adam7 passes empty
+        for (final int size : new int[]{1, 3, 7, 16, 33}) {
+            assertDecodesLikeImageIO(encode(createArgbImage(size, size + 2), true));
+        }
+    }
+
+    @Test
+    public void decodesRgb() throws IOException {
+        final BufferedImage image = new BufferedImage(29, 17, BufferedImage.TYPE_3BYTE_BGR);
+        image.getGraphics().drawImage(createArgbImage(29, 17), 0, 0, null);
+        assertDecodesLikeImageIO(encode(image, false));
+    }
+
+    @Test
+    public void decodesPalettes() throws IOException {
+        for (final int bits : new int[]{1, 2, 4, 8}) {
+            final int size = 1 << bits;
+            final byte[] red = new byte[size];
+            final byte[] green = new byte[size];
+            final byte[] blue = new byte[size];
+            final byte[] alpha = new byte[size];
+            for (int i = 0; i < size; i++) {
+                red[i] = (byte) (i * 37);
+                green[i] = (byte) (255 - i);
+                blue[i] = (byte) (i * 11);
+                alpha[i] = (byte) (i == 0 ? 0 : 255 - i * 3);
+            }
+            final IndexColorModel colorModel = new IndexColorModel(bits, size, red, green, blue, alpha);
+            final BufferedImage image = new BufferedImage(13, 9, bits == 8 ? BufferedImage.TYPE_BYTE_INDEXED :
+                    BufferedImage.TYPE_BYTE_BINARY, colorModel);
+            final Random random = new Random(bits);
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    image.getRaster().setSample(x, y, 0, random.nextInt(size));
+                }
+            }
+            assertDecodesLikeImageIO(encode(image, false));
+        }
+    }
+
+    @Test
+    public void decodesGray() throws IOException {
+        final BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_BYTE_GRAY);
+        for (int i = 0; i < 256; i++) {
+            image.getRaster().setSample(i % 16, i / 16, 0, i);
+        }
+        final int[] pixels = ((DataBufferInt) PngDecoder.decode(encode(image, false)).getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < 256; i++) {
+            assertEquals(0xFF000000 | i << 16 | i << 8 | i, pixels[i]);
+        }
+    }
+
+    @Test
+    public void decodes16BitRgbLikeImageIO() throws IOException {
+        final Random random = new Random(16);
+        for (final int bands : new int[]{3, 4}) {
+            final int[] samples = new int[64 * 64 * bands];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = random.nextInt(65536);
+            }
+            assertDecodesLikeImageIO(encode(create16BitImage(bands, 64, 64, samples), false));
+        }
+    }
+
+    @Test
+    public void rounds16BitSamples() throws IOException {
+        // 47898 / 257 = 186.37 and 32896 / 257 = 128.0, the high bytes would be 187 and 128
+        final int[] samples = {0, 0xFFFF, 0xFFFF, 0x0000, 47898, 0x8080, 32896, 0x7FFF};
+        final int[] pixels = ((DataBufferInt) PngDecoder.decode(encode(create16BitImage(2, 4, 1, samples), false))
+                .getRaster().getDataBuffer()).getData();
+        assertArrayEquals(new int[]{0xFF000000, 0x00FFFFFF, 0x80BABABA, 0x7F808080}, pixels);
+    }
+
+    @Test
+    public void matches16BitTransparencyOnEveryChannel() throws IOException {
+        // A green of 0x8000 or more must not hide the red sample from the comparison
+        final byte[] data = create16BitRgbWithTransparency(new int[]{0x1234, 0x8000, 0},
+                new int[]{0x1234, 0x8000, 0, 0x5678, 0x8000, 0, 0x1234, 0x8001, 0});
+        final int[] pixels = ((DataBufferInt) PngDecoder.decode(data).getRaster().getDataBuffer()).getData();
+        assertArrayEquals(new int[]{0x00128000, 0xFF568000, 0xFF128000}, pixels);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedData() throws IOException {
+        final byte[] data = encode(createArgbImage(16, 16), false);
+        final byte[] truncated = new byte[data.length / 2];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        PngDecoder.decode(truncated);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.image;
+
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link PngEncoder}.
+ *
+ * @author Tyler Bucher
+ */
+public class PngEncoderTest {
+
+    /**
+     * @param width  the image width.
+     * @param height the image height.
+     * @return argb pixels mixing smooth gradients, which the filters predict well, with random noise.
+     */
+    private static int[] createPixels(final int width, final int height) {
+        final Random random = new Random(width * 31L + height);
+        final int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = (x + y) % 7 == 0 ? random.nextInt() :
+                        (x * 255 / width) << 24 | (y & 0xFF) << 16 | (x & 0xFF) << 8 | ((x ^ y) & 0xFF);
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * @param encoder the encoder to use.
+     * @param pixels  the argb pixels row by row.
+     * @param width   the image width.
+     * @param height  the image height.
+     * @param palette the palette to index the image with or null for rgba.
+     * @return the png file contents.
+     *
+     * @throws IOException if the png could not be written.
+     */
+    private static byte[] encode(final PngEncoder encoder, final int[] pixels, final int width, final int height,
+                                 final Palette palette) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        encoder.encode(PixelSource.of(pixels, width, height), palette, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Asserts that a png decodes to the given pixels with both {@link ImageIO} and {@link PngDecoder}.
+     *
+     * @param pixels the expected argb pixels.
+     * @param width  the image width.
+     * @param height the image height.
+     * @param data   the png file contents.
+     * @throws IOException if the png could not be decoded.
+     */
+    private static void assertDecodesTo(final int[] pixels, final int width, final int height, final byte[] data) throws IOException {
+        final BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+        assertArrayEquals(pixels, image.getRGB(0, 0, width, height, null, 0, width));
+        assertArrayEquals(pixels, ((DataBufferInt) PngDecoder.decode(data).getRaster().getDataBuffer()).getData());
+    }
+
+    @Test
+    public void roundTripsEveryFilter() throws IOException {
+        // Tall enough for several bands
+        final int width = 301;
+        final int height = 700;
+        final int[] pixels = createPixels(width, height);
+        for (final PngEncoder.Filter filter : PngEncoder.Filter.values()) {
+            assertDecodesTo(pixels, width, height, encode(new PngEncoder(Deflater.DEFAULT_COMPRESSION, filter, 4), pixels,
+                    width, height, null));
+        }
+    }
+
+    @Test
+    public void roundTripsTinyImages() throws IOException {
+        for (final int size : new int[]{1, 2, 3}) {
+            final int[] pixels = createPixels(size, size);
+            assertDecodesTo(pixels, size, size, encode(new PngEncoder(Deflater.BEST_SPEED, PngEncoder.Filter.PAETH, 2),
+                    pixels, size, size, null));
+        }
+    }
+
+    @Test
+    public void outputIsIndependentOfThreads() throws IOException {
+        final int width = 256;
+        final int height = 1100;
+        final int[] pixels = createPixels(width, height);
+        final byte[] single = encode(new PngEncoder(6, PngEncoder.Filter.ADAPTIVE, 1), pixels, width, height, null);
+        assertArrayEquals(single, encode(new PngEncoder(6, PngEncoder.Filter.ADAPTIVE, 8), pixels, width, height, null));
+        assertDecodesTo(pixels, width, height, single);
+    }
+
+    @Test
+    public void roundTripsIndexedImages() throws IOException {
+        final int width = 200;
+        final int height = 600;
+        final int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = i % 13 == 0 ? 0 : 0xFF000000 | (i % 97) * 0x020101;
+        }
+        final Palette palette = Palette.build(Collections.singletonList(PixelSource.of(pixels, width, height)), 0);
+        assertNotNull(palette);
+        for (final PngEncoder.Filter filter : PngEncoder.Filter.values()) {
+            final byte[] data = encode(new PngEncoder(Deflater.DEFAULT_COMPRESSION, filter, 3), pixels, width, height, palette);
+            assertDecodesTo(pixels, width, height, data);
+            assertTrue(data.length < encode(new PngEncoder(Deflater.DEFAULT_COMPRESSION, filter, 3), pixels, width, height,
+                    null).length);
+        }
+    }
+
+    @Test
+    public void parsesFilterNames() {
+        assertEquals(PngEncoder.Filter.PAETH, PngEncoder.Filter.fromName("paeth"));
+        assertEquals(PngEncoder.Filter.ADAPTIVE, PngEncoder.Filter.fromName("ADAPTIVE"));
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.asset.source;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link ZipIndex}.
+ *
+ * @author Tyler Bucher
+ */
+public class ZipIndexTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * @param name the entry name.
+     * @return the contents of the test entry with the given name, compressible but not trivially.
+     */
+    private static byte[] contents(final String name) {
+        final Random random = new Random(name.hashCode());
+        final byte[] data = new byte[1000 + random.nextInt(20000)];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (random.nextInt(8) + name.length());
+        }
+        return data;
+    }
+
+    /**
+     * Writes a zip file with deflated entries, a stored entry, a directory entry and an archive comment.
+     *
+     * @param names the names of the deflated entries.
+     * @return the zip file.
+     *
+     * @throws IOException if an I/O error has occurred.
+     */
+    private File createZip(final List<String> names) throws IOException {
+        final File file = temporaryFolder.newFile("test.zip");
+        try (final ZipOutputStream outputStream = new ZipOutputStream(new FileOutputStream(file))) {
+            outputStream.setComment("An archive comment the end of central directory search has to skip.");
+            outputStream.putNextEntry(new ZipEntry("assets/"));
+            outputStream.closeEntry();
+            for (final String name : names) {
+                outputStream.putNextEntry(new ZipEntry(name));
+                outputStream.write(contents(name));
+                outputStream.closeEntry();
+            }
+            final byte[] stored = contents("stored.txt");
+            final CRC32 crc = new CRC32();
+            crc.update(stored);
+            final ZipEntry storedEntry = new ZipEntry("assets/stored.txt");
+            storedEntry.setMethod(ZipEntry.STORED);
+            storedEntry.setSize(stored.length);
+            storedEntry.setCrc(crc.getValue());
+            outputStream.putNextEntry(storedEntry);
+            outputStream.write(stored);
+            outputStream.closeEntry();
+            outputStream.putNextEntry(new ZipEntry("pack.mcmeta"));
+            outputStream.write("{}".getBytes(StandardCharsets.UTF_8));
+            outputStream.closeEntry();
+        }
+        return file;
+    }
+
+    /**
+     * @param count the amount of names.
+     * @return block texture entry names.
+     */
+    private static List<String> createNames(final int count) {
+        final List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            names.add("assets/minecraft/textures/blocks/texture" + i + ".png");
+        }
+        return names;
+    }
+
+    @Test
+    public void readsDeflatedAndStoredEntries() throws IOException {
+        final List<String> names = createNames(20);
+        try (final ZipIndex zipIndex = new ZipIndex(createZip(names).getPath())) {
+            // The directory entry is not indexed
+            assertEquals(names.size() + 2, zipIndex.getEntries().size());
+            assertNull(zipIndex.getEntry("assets/"));
+            for (final String name : names) {
+                assertEquals(ZipEntry.DEFLATED, zipIndex.getEntry(name).method);
+                assertArrayEquals(contents(name), zipIndex.read(name));
+            }
+            assertEquals(ZipEntry.STORED, zipIndex.getEntry("assets/stored.txt").method);
+            assertArrayEquals(contents("stored.txt"), zipIndex.read("assets/stored.txt"));
+            assertEquals("{}", new String(zipIndex.read("pack.mcmeta"), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void indexesOnlyThePrefix() throws IOException {
+        try (final ZipIndex zipIndex = new ZipIndex(createZip(createNames(5)).getPath(), "assets/minecraft/")) {
+            assertEquals(5, zipIndex.getEntries().size());
+            assertNull(zipIndex.getEntry("assets/stored.txt"));
+            assertNull(zipIndex.getEntry("pack.mcmeta"));
+        }
+    }
+
+    @Test
+    public void rejectsCorruptEntries() throws IOException {
+        final File file = createZip(createNames(1));
+        final byte[] archive = Files.readAllBytes(file.toPath());
+        final byte[] stored = contents("stored.txt");
+        // Flip a byte in the middle of the stored entry data, the sizes stay intact
+        int start = -1;
+        for (int i = 0; i + stored.length <= archive.length && start < 0; i++) {
+            int j = 0;
+            while (j < stored.length && archive[i + j] == stored[j]) {
+                j++;
+            }
+            if (j == stored.length) {
+                start = i;
+            }
+        }
+        assertTrue(start >= 0);
+        archive[start + stored.length / 2] ^= 0x10;
+        Files.write(file.toPath(), archive);
+        try (final ZipIndex zipIndex = new ZipIndex(file.getPath())) {
+            zipIndex.read("assets/stored.txt");
+            fail("The corrupt entry was read.");
+        } catch (ZipException e) {
+            assertTrue(e.getMessage().contains("assets/stored.txt"));
+        }
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void rejectsMissingEntries() throws IOException {
+        try (final ZipIndex zipIndex = new ZipIndex(createZip(createNames(1)).getPath())) {
+            zipIndex.read("assets/minecraft/textures/blocks/missing.png");
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsFilesWhichAreNotZips() throws IOException {
+        final File file = temporaryFolder.newFile("notAZip.zip");
+        Files.write(file.toPath(), contents("notAZip"));
+        new ZipIndex(file.getPath()).close();
+    }
+
+    @Test
+    public void readsFromSeveralThreads() throws Exception {
+        final List<String> names = createNames(200);
+        final ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try (final ZipIndex zipIndex = new ZipIndex(createZip(names).getPath())) {
+            final List<Future<byte[]>> futures = new ArrayList<>();
+            for (final String name : names) {
+                futures.add(executorService.submit(()->zipIndex.read(name)));
+            }
+            for (int i = 0; i < names.size(); i++) {
+                assertArrayEquals(contents(names.get(i)), futures.get(i).get());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
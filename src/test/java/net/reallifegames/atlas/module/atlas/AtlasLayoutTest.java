@@ -0,0 +1,170 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.module.atlas;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link AtlasLayout}.
+ *
+ * @author Tyler Bucher
+ */
+public class AtlasLayoutTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * @return textures of mixed sizes, largest first.
+     */
+    private static List<AtlasLayout.Entry> createTextures() {
+        final List<AtlasLayout.Entry> textures = new ArrayList<>();
+        textures.add(new AtlasLayout.Entry("large", "0", 32, 32));
+        for (int i = 0; i < 12; i++) {
+            textures.add(new AtlasLayout.Entry("block" + i, Integer.toString(i), 16, 16));
+        }
+        textures.add(new AtlasLayout.Entry("wide", "1", 16, 4));
+        return textures;
+    }
+
+    /**
+     * Writes a layout to a file and reads it back.
+     *
+     * @param layout the layout to write.
+     * @return the read layout.
+     *
+     * @throws IOException if an I/O error has occurred.
+     */
+    private AtlasLayout roundTrip(final AtlasLayout layout) throws IOException {
+        final File file = temporaryFolder.newFile("layout.json");
+        try (final OutputStream outputStream = new FileOutputStream(file)) {
+            final List<String> pageNames = new ArrayList<>();
+            for (int i = 0; i < layout.getPageCount(); i++) {
+                pageNames.add("atlas_" + i + ".png");
+            }
+            layout.write(outputStream, pageNames, 1, 16, Collections.emptyMap());
+        }
+        return AtlasLayout.read(file);
+    }
+
+    @Test
+    public void packedTexturesDoNotOverlap() {
+        final int gutter = 2;
+        final AtlasLayout layout = AtlasLayout.pack(createTextures(), 16, 128, "maxrects", gutter, 1, null);
+        assertTrue(layout.getSkipped().isEmpty());
+        final List<AtlasLayout.Entry> entries = new ArrayList<>(layout.getEntries());
+        assertEquals(createTextures().size(), entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            final AtlasLayout.Entry a = entries.get(i);
+            assertTrue(a.x >= gutter && a.y >= gutter);
+            assertTrue(a.x + a.width + gutter <= layout.getPageSize() && a.y + a.height + gutter <= layout.getPageSize());
+            for (int j = i + 1; j < entries.size(); j++) {
+                final AtlasLayout.Entry b = entries.get(j);
+                assertFalse(a.id + " overlaps " + b.id, a.page == b.page && a.x - gutter < b.x + b.width + gutter &&
+                        b.x - gutter < a.x + a.width + gutter && a.y - gutter < b.y + b.height + gutter &&
+                        b.y - gutter < a.y + a.height + gutter);
+            }
+        }
+    }
+
+    @Test
+    public void spillsOntoMorePages() {
+        final AtlasLayout layout = AtlasLayout.pack(createTextures(), 16, 64, "skyline", 0, 1, null);
+        assertEquals(64, layout.getPageSize());
+        assertTrue(layout.getPageCount() > 1);
+        assertTrue(layout.getSkipped().isEmpty());
+    }
+
+    @Test
+    public void skipsTexturesLargerThanAPage() {
+        final List<AtlasLayout.Entry> textures = new ArrayList<>(createTextures());
+        textures.add(0, new AtlasLayout.Entry("huge", "2", 256, 256));
+        final AtlasLayout layout = AtlasLayout.pack(textures, 16, 128, "maxrects", 0, 1, null);
+        assertEquals(1, layout.getSkipped().size());
+        assertEquals("huge", layout.getSkipped().get(0).id);
+        assertNull(layout.getEntry("huge"));
+    }
+
+    @Test
+    public void writeAndReadRoundTrip() throws IOException {
+        final AtlasLayout layout = AtlasLayout.pack(createTextures(), 16, 128, "maxrects", 2, 4, null);
+        layout.addAlias("copy", "block0");
+        final AtlasLayout read = roundTrip(layout);
+        assertEquals(layout.getPageSize(), read.getPageSize());
+        assertEquals(layout.getPageCount(), read.getPageCount());
+        assertEquals(layout.getGutter(), read.getGutter());
+        assertEquals(layout.getEntries().size(), read.getEntries().size());
+        for (final AtlasLayout.Entry entry : layout.getEntries()) {
+            final AtlasLayout.Entry readEntry = read.getEntry(entry.id);
+            assertNotNull(readEntry);
+            assertEquals(entry.hash, readEntry.hash);
+            assertEquals(Arrays.asList(entry.page, entry.x, entry.y, entry.width, entry.height),
+                    Arrays.asList(readEntry.page, readEntry.x, readEntry.y, readEntry.width, readEntry.height));
+        }
+        assertNull(read.getEntry("copy"));
+    }
+
+    @Test
+    public void rebuildKeepsUnchangedPlacements() throws IOException {
+        final AtlasLayout previous = roundTrip(AtlasLayout.pack(createTextures(), 16, 128, "maxrects", 2, 1, null));
+        final List<AtlasLayout.Entry> textures = createTextures();
+        textures.set(1, new AtlasLayout.Entry("block0", "changed", 8, 8));
+        textures.add(new AtlasLayout.Entry("new", "3", 8, 8));
+        final AtlasLayout layout = AtlasLayout.pack(textures, 16, 128, "maxrects", 2, 1, previous);
+        assertEquals(textures.size() - 2, layout.getReusedCount());
+        for (final AtlasLayout.Entry texture : createTextures()) {
+            if (texture.id.equals("block0")) {
+                continue;
+            }
+            final AtlasLayout.Entry before = previous.getEntry(texture.id);
+            final AtlasLayout.Entry after = layout.getEntry(texture.id);
+            assertEquals(Arrays.asList(before.page, before.x, before.y), Arrays.asList(after.page, after.x, after.y));
+        }
+        assertNotNull(layout.getEntry("new"));
+        assertEquals(8, layout.getEntry("block0").width);
+    }
+
+    @Test
+    public void rebuildReplacesChangedTextures() throws IOException {
+        final AtlasLayout previous = roundTrip(AtlasLayout.pack(createTextures(), 16, 128, "maxrects", 2, 1, null));
+        final List<AtlasLayout.Entry> textures = createTextures();
+        textures.set(2, new AtlasLayout.Entry("block1", "repainted", 16, 16));
+        final AtlasLayout layout = AtlasLayout.pack(textures, 16, 128, "maxrects", 2, 1, previous);
+        assertEquals(textures.size() - 1, layout.getReusedCount());
+        assertEquals("repainted", layout.getEntry("block1").hash);
+    }
+}
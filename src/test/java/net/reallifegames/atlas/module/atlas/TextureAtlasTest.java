@@ -0,0 +1,61 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.module.atlas;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link TextureAtlas}.
+ *
+ * @author Tyler Bucher
+ */
+public class TextureAtlasTest {
+
+    @Test
+    public void freezeKeepsPlacedTextures() {
+        final TextureAtlas atlas = new TextureAtlas(16, 1, 0);
+        atlas.place("stone", 0, new int[]{0xFF808080, 0xFF808080, 0xFF808080, 0xFF808080}, 4, 8, 2, 2);
+        atlas.trim("stone", 0.25f, 0, 1, 1);
+        atlas.alias("andesite", "stone");
+        atlas.freeze();
+        assertTrue(atlas.isFrozen());
+        assertEquals(1, atlas.getTextureCount());
+        assertEquals(0, atlas.getTextureId("andesite"));
+        assertArrayEquals(new float[]{0.25f, 0.5f, 0.375f, 0.625f}, atlas.getUvs(), 0);
+        assertArrayEquals(new float[]{0.25f, 0, 1, 1}, atlas.getTrims(), 0);
+        assertTrue(atlas.isTrimmed(0));
+        assertEquals(0, atlas.getPage(0));
+        assertEquals(AlphaClass.OPAQUE, atlas.getAlphaClass(0));
+        assertEquals(0xFF808080, atlas.getMeanColor(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsTexturesAfterFreeze() {
+        final TextureAtlas atlas = new TextureAtlas(16, 1, 0);
+        atlas.freeze();
+        atlas.place("stone", 0, new int[]{0xFF808080}, 0, 0, 1, 1);
+    }
+}
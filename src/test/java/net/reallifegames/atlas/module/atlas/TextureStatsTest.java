@@ -0,0 +1,84 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.module.atlas;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link TextureStats}.
+ *
+ * @author Tyler Bucher
+ */
+public class TextureStatsTest {
+
+    @Test
+    public void classifiesAlpha() {
+        assertEquals(AlphaClass.OPAQUE, TextureStats.of(new int[]{0xFF000000, 0xFFFFFFFF}, 2).alphaClass);
+        assertEquals(AlphaClass.CUTOUT, TextureStats.of(new int[]{0xFF000000, 0x00FFFFFF}, 2).alphaClass);
+        assertEquals(AlphaClass.TRANSLUCENT, TextureStats.of(new int[]{0x00000000, 0x80FFFFFF}, 2).alphaClass);
+        // Pixels past the count are not part of the texture
+        assertEquals(AlphaClass.OPAQUE, TextureStats.of(new int[]{0xFF000000, 0x80FFFFFF}, 1).alphaClass);
+    }
+
+    @Test
+    public void weightsMeanByAlpha() {
+        final TextureStats stats = TextureStats.of(new int[]{0xFFFF0000, 0x550000FF, 0x00FFFFFF}, 3);
+        // Alpha 340 / 3 pixels, red 255 * 255 / 340 and blue 255 * 85 / 340
+        assertEquals(0x71BF0040, stats.meanColor);
+    }
+
+    @Test
+    public void picksDominantBucket() {
+        final int[] pixels = new int[10];
+        Arrays.fill(pixels, 0xFF102030);
+        pixels[0] = 0xFFFFFFFF;
+        pixels[1] = 0xFF112131;
+        final TextureStats stats = TextureStats.of(pixels, pixels.length);
+        // The bright pixel shifts the mean but not the dominant colour
+        assertEquals(0xFF102030, stats.dominantColor);
+        assertNotEquals(0xFF102030, stats.meanColor);
+    }
+
+    @Test
+    public void givesTransparentTexturesTransparentBlack() {
+        final TextureStats stats = TextureStats.of(new int[]{0x00FF0000, 0x0000FF00}, 2);
+        assertEquals(AlphaClass.CUTOUT, stats.alphaClass);
+        assertEquals(0, stats.meanColor);
+        assertEquals(0, stats.dominantColor);
+    }
+
+    @Test
+    public void doesNotCarryBucketsOver() {
+        final int[] large = new int[256];
+        Arrays.fill(large, 0xFFF0F0F0);
+        TextureStats.of(large, large.length);
+        // A colour of the previous texture must not win the next one
+        assertEquals(0xFF102030, TextureStats.of(new int[]{0xFF102030}, 1).dominantColor);
+        assertEquals(0xFF102030, TextureStats.of(new int[]{0xFF102030, 0xFFF0F0F0}, 1).dominantColor);
+    }
+}
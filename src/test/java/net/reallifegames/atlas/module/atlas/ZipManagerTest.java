@@ -0,0 +1,111 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.module.atlas;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link ZipManager}.
+ *
+ * @author Tyler Bucher
+ */
+public class ZipManagerTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Writes a zip file whose entries hold their own name.
+     *
+     * @param names the entry names.
+     * @return the zip file.
+     *
+     * @throws IOException if an I/O error has occurred.
+     */
+    private File createZip(final String... names) throws IOException {
+        final File file = new File(temporaryFolder.getRoot(), "test.zip");
+        try (final ZipOutputStream outputStream = new ZipOutputStream(new FileOutputStream(file))) {
+            for (final String name : names) {
+                outputStream.putNextEntry(new ZipEntry(name));
+                outputStream.write(name.getBytes(StandardCharsets.UTF_8));
+                outputStream.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void extractsOnlyPipelinePrefixes() throws IOException {
+        final File zip = createZip("assets/minecraft/textures/blocks/stone.png", "assets/minecraft/sounds/step.ogg",
+                "assets/minecraft/models/block/stone.json", "assets/minecraft/lang/en_us.lang");
+        final File location = temporaryFolder.newFolder("out");
+        final ZipManager.ExtractionReport report = ZipManager.extractZip(zip.getPath(), location.getPath() + File.separator);
+        assertEquals(2, report.entries);
+        final File stone = new File(location, "assets/minecraft/textures/blocks/stone.png");
+        assertEquals("assets/minecraft/textures/blocks/stone.png", new String(Files.readAllBytes(stone.toPath()), StandardCharsets.UTF_8));
+        assertTrue(new File(location, "assets/minecraft/models/block/stone.json").isFile());
+        assertFalse(new File(location, "assets/minecraft/sounds").exists());
+        assertFalse(new File(location, "assets/minecraft/lang").exists());
+    }
+
+    @Test
+    public void extractsInParallel() throws IOException {
+        final String[] names = new String[64];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "assets/minecraft/textures/blocks/texture" + i + ".png";
+        }
+        final File location = temporaryFolder.newFolder("out");
+        final ZipManager.ExtractionReport report = ZipManager.extractZip(createZip(names).getPath(), location.getPath(),
+                Collections.singletonList("assets/"), 4);
+        assertEquals(names.length, report.entries);
+        for (final String name : names) {
+            assertEquals(name, new String(Files.readAllBytes(new File(location, name).toPath()), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void rejectsEntriesOutsideOfTheLocation() throws IOException {
+        final File zip = createZip("assets/minecraft/textures/blocks/../../../../../evil.txt");
+        final File location = temporaryFolder.newFolder("out");
+        try {
+            ZipManager.extractZip(zip.getPath(), location.getPath(), Collections.singletonList("assets/"), 1);
+            fail("The entry escaping the location was extracted.");
+        } catch (IOException e) {
+            assertFalse(new File(temporaryFolder.getRoot(), "evil.txt").exists());
+        }
+    }
+}
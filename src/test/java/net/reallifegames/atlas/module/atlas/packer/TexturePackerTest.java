@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.atlas.module.atlas.packer;
+
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link TexturePacker} strategies.
+ *
+ * @author Tyler Bucher
+ */
+public class TexturePackerTest {
+
+    /**
+     * The names of every packing strategy.
+     */
+    private static final String[] STRATEGIES = {MaxRectsPacker.NAME, SkylinePacker.NAME};
+
+    /**
+     * Asserts that a rectangle is inside of the atlas and does not overlap any earlier rectangle.
+     *
+     * @param packer     the packer the rectangle was placed by.
+     * @param rectangles the earlier rectangles.
+     * @param rectangle  the new rectangle.
+     */
+    private static void assertFree(final TexturePacker packer, final List<Rectangle> rectangles, final Rectangle rectangle) {
+        assertTrue(packer.getName() + " placed " + rectangle + " outside of the atlas", rectangle.x >= 0 && rectangle.y >= 0 &&
+                rectangle.x + rectangle.width <= packer.getWidth() && rectangle.y + rectangle.height <= packer.getHeight());
+        for (final Rectangle other : rectangles) {
+            assertFalse(packer.getName() + " placed " + rectangle + " over " + other, rectangle.intersects(other));
+        }
+    }
+
+    @Test
+    public void createsPackersByName() {
+        for (final String strategy : STRATEGIES) {
+            final TexturePacker packer = TexturePacker.create(strategy, 64, 32);
+            assertEquals(strategy, packer.getName());
+            assertEquals(64, packer.getWidth());
+            assertEquals(32, packer.getHeight());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownStrategies() {
+        TexturePacker.create("guillotine", 64, 64);
+    }
+
+    @Test
+    public void fillsAtlasWithEqualSquares() {
+        for (final String strategy : STRATEGIES) {
+            final TexturePacker packer = TexturePacker.create(strategy, 64, 64);
+            final List<Rectangle> rectangles = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                final Point point = packer.pack(16, 16);
+                assertNotNull(strategy + " could not place square " + i, point);
+                final Rectangle rectangle = new Rectangle(point.x, point.y, 16, 16);
+                assertFree(packer, rectangles, rectangle);
+                rectangles.add(rectangle);
+            }
+            assertNull(packer.pack(1, 1));
+            assertEquals(64 * 64, packer.getUsedArea());
+            assertEquals(1.0, packer.getEfficiency(), 0);
+        }
+    }
+
+    @Test
+    public void packsMixedSizesWithoutOverlap() {
+        for (final String strategy : STRATEGIES) {
+            final TexturePacker packer = TexturePacker.create(strategy, 256, 256);
+            final Random random = new Random(7);
+            final List<Rectangle> rectangles = new ArrayList<>();
+            long area = 0;
+            for (int i = 0; i < 400; i++) {
+                final int width = 1 + random.nextInt(40);
+                final int height = 1 + random.nextInt(40);
+                final Point point = packer.pack(width, height);
+                if (point != null) {
+                    final Rectangle rectangle = new Rectangle(point.x, point.y, width, height);
+                    assertFree(packer, rectangles, rectangle);
+                    rectangles.add(rectangle);
+                    area += width * height;
+                }
+            }
+            assertEquals(area, packer.getUsedArea());
+            assertTrue(strategy + " only filled " + packer.getEfficiency(), packer.getEfficiency() > 0.7);
+        }
+    }
+
+    @Test
+    public void rejectsRectanglesLargerThanTheAtlas() {
+        for (final String strategy : STRATEGIES) {
+            final TexturePacker packer = TexturePacker.create(strategy, 32, 32);
+            assertNull(packer.pack(33, 1));
+            assertNull(packer.pack(1, 33));
+            assertNotNull(packer.pack(32, 32));
+        }
+    }
+
+    @Test
+    public void packsAroundReservedRectangles() {
+        for (final String strategy : STRATEGIES) {
+            final TexturePacker packer = TexturePacker.create(strategy, 64, 64);
+            final List<Rectangle> rectangles = new ArrayList<>();
+            rectangles.add(new Rectangle(0, 0, 32, 32));
+            rectangles.add(new Rectangle(32, 32, 16, 16));
+            for (final Rectangle rectangle : rectangles) {
+                packer.reserve(rectangle.x, rectangle.y, rectangle.width, rectangle.height);
+            }
+            Point point;
+            while ((point = packer.pack(16, 16)) != null) {
+                final Rectangle rectangle = new Rectangle(point.x, point.y, 16, 16);
+                assertFree(packer, rectangles, rectangle);
+                rectangles.add(rectangle);
+            }
+            assertEquals(strategy, 32 * 32 + 16 * 16 + (rectangles.size() - 2) * 16 * 16, packer.getUsedArea());
+        }
+    }
+}